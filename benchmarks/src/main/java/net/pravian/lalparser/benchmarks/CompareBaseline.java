@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares JMH CSV results against a baseline and reports regressions.
+ *
+ * Results are compared by their unit. Throughput results (ops per time) regress when they drop below the baseline,
+ * and results per operation, such as the average time or the normalized allocation, regress when they rise above it.
+ * Other results, such as the raw allocation rate, depend on throughput and are not compared.
+ *
+ * Results without a baseline are reported as NEW, and baseline entries without a result as MISSING. Both fail the
+ * comparison, so new benchmarks are never silently left ungated, unless --allow-missing is given, for example when
+ * only some of the benchmarks were run.
+ *
+ * <pre>
+ * java -cp benchmarks.jar net.pravian.lalparser.benchmarks.CompareBaseline [--allow-missing] baseline.csv results.csv [threshold]
+ * </pre>
+ *
+ * The threshold defaults to 0.1, a 10% change. The exit code is 1 if any result regressed or is missing.
+ *
+ * @since 1.1
+ */
+public class CompareBaseline {
+
+    public static void main(String[] args) throws IOException {
+        final boolean allowMissing = args.length > 0 && args[0].equals("--allow-missing");
+        if (allowMissing) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length < 2) {
+            System.err.println("Usage: CompareBaseline [--allow-missing] <baseline.csv> <results.csv> [threshold]");
+            System.exit(2);
+        }
+
+        final double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        final Map<String, Result> baseline = read(args[0]);
+        final Map<String, Result> results = read(args[1]);
+        int regressions = 0;
+        int missing = 0;
+
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            final String key = entry.getKey();
+            final Result result = entry.getValue();
+            final Result expected = baseline.get(key);
+
+            if (!result.isCompared()) {
+                continue;
+            }
+
+            if (expected == null) {
+                missing++;
+                System.out.printf("%-10s %8s  %s%n", "NEW", "", key);
+                continue;
+            }
+
+            if (expected.score == 0) {
+                continue;
+            }
+
+            final double change = (result.score - expected.score) / expected.score;
+            final boolean regressed = result.isLowerBetter() ? change > threshold : change < -threshold;
+            if (regressed) {
+                regressions++;
+            }
+
+            System.out.printf("%-10s %+7.1f%%  %s%n", regressed ? "REGRESSED" : "ok", change * 100, key);
+        }
+
+        for (Map.Entry<String, Result> entry : baseline.entrySet()) {
+            if (entry.getValue().isCompared() && !results.containsKey(entry.getKey())) {
+                missing++;
+                System.out.printf("%-10s %8s  %s%n", "MISSING", "", entry.getKey());
+            }
+        }
+
+        System.out.println(regressions + " regression(s), " + missing + " new or missing result(s)");
+        System.exit(regressions == 0 && (missing == 0 || allowMissing) ? 0 : 1);
+    }
+
+    private static Map<String, Result> read(String file) throws IOException {
+        final List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        final Map<String, Result> scores = new LinkedHashMap<>();
+
+        if (lines.isEmpty()) {
+            return scores;
+        }
+
+        final List<String> header = split(lines.get(0));
+        final int benchmark = header.indexOf("Benchmark");
+        final int score = header.indexOf("Score");
+        final int unit = header.indexOf("Unit");
+
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            final List<String> fields = split(line);
+            final StringBuilder key = new StringBuilder(fields.get(benchmark));
+
+            // Parameters follow the fixed columns, and are empty for benchmarks which do not have them
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                }
+            }
+
+            scores.put(key.toString(), new Result(Double.parseDouble(fields.get(score)), fields.get(unit)));
+        }
+
+        return scores;
+    }
+
+    private static List<String> split(String line) {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Represents the score of a single benchmark result.
+     */
+    private static class Result {
+
+        private final double score;
+        private final String unit;
+
+        Result(double score, String unit) {
+            this.score = score;
+            this.unit = unit;
+        }
+
+        boolean isLowerBetter() {
+            return unit.endsWith("/op");
+        }
+
+        boolean isCompared() {
+            return isLowerBetter() || unit.startsWith("ops/");
+        }
+    }
+
+}
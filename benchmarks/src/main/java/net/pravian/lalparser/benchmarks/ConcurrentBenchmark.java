@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.pravian.lalparser.ConcurrentLALParser;
+import net.pravian.lalparser.LALParser;
+import net.pravian.lalparser.Login;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks reads from a {@link ConcurrentLALParser} against a synchronized list, with and without a concurrent
+ * reload.
+ *
+ * Run with {@code -t 1}, {@code -t 2}, {@code -t 4} and so on to see how read throughput scales with the amount of
+ * reader threads.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentBenchmark {
+
+    @Benchmark
+    public Login readConcurrent(Shared shared, Cursor cursor) {
+        return shared.concurrent.get(cursor.next(shared.size));
+    }
+
+    @Benchmark
+    public Login readSynchronized(Shared shared, Cursor cursor) {
+        return shared.synchronizedList.get(cursor.next(shared.size));
+    }
+
+    @Benchmark
+    @Group("reload")
+    @GroupThreads(3)
+    public Login reloadRead(Shared shared, Cursor cursor) {
+        return shared.concurrent.get(cursor.next(shared.size));
+    }
+
+    @Benchmark
+    @Group("reload")
+    @GroupThreads(1)
+    public void reloadWrite(Shared shared) {
+        shared.concurrent.load(shared.document);
+    }
+
+    /**
+     * Represents the parsers shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"10000"})
+        public int size;
+
+        public String document;
+        public ConcurrentLALParser concurrent;
+        public List<Login> synchronizedList;
+
+        @Setup
+        public void setUp() {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                sb.append("user").append(i).append(":pass").append(i).append('\n');
+            }
+            document = sb.toString();
+
+            concurrent = new ConcurrentLALParser();
+            concurrent.load(document);
+
+            final LALParser parser = new LALParser();
+            parser.load(document);
+            synchronizedList = Collections.synchronizedList(parser);
+        }
+    }
+
+    /**
+     * Represents the read position of a single thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index = 0;
+
+        int next(int size) {
+            index = index + 1 == size ? 0 : index + 1;
+            return index;
+        }
+    }
+
+}
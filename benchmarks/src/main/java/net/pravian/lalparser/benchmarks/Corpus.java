@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.pravian.lalparser.LALParser;
+import net.pravian.lalparser.Login;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Represents a synthetic LAL corpus of configurable size and field mix.
+ *
+ * <ul>
+ * <li>plain: login and password only</li>
+ * <li>comments: every fourth line is a comment</li>
+ * <li>invalid: every other line is marked invalid with a leading "."</li>
+ * <li>full: every optional field is present</li>
+ * <li>long-passwords: passwords of 64 to 256 characters</li>
+ * <li>mixed: all of the above, picked at random</li>
+ * </ul>
+ *
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    private static final String PASSWORD_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%^&*<>?|-_.";
+
+    @Param({"100000"})
+    public int lines;
+
+    @Param({"plain", "comments", "invalid", "full", "long-passwords", "mixed"})
+    public String mix;
+
+    public String[] text;
+    public String document;
+    public byte[] bytes;
+    public List<Login> logins;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(lines);
+        final StringBuilder sb = new StringBuilder();
+
+        text = new String[lines];
+        logins = new ArrayList<>(lines);
+
+        for (int i = 0; i < lines; i++) {
+            text[i] = line(random, i, "mixed".equals(mix) ? random.nextInt(5) : kind());
+            sb.append(text[i]).append('\n');
+
+            final Login login = LALParser.parse(text[i]);
+            if (login == null) {
+                throw new IllegalStateException("Generated an invalid line: " + text[i]);
+            }
+            logins.add(login);
+        }
+
+        document = sb.toString();
+        bytes = document.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int kind() {
+        switch (mix) {
+            case "plain":
+                return 0;
+            case "comments":
+                return 1;
+            case "invalid":
+                return 2;
+            case "full":
+                return 3;
+            case "long-passwords":
+                return 4;
+            default:
+                throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+    }
+
+    private static String line(Random random, int i, int kind) {
+        final String user = "user" + i;
+
+        switch (kind) {
+            case 1:
+                return i % 4 == 0 ? "// Generated comment " + i : user + ":" + password(random, 8, 16);
+            case 2:
+                return (i % 2 == 0 ? "." : "") + user + ":" + password(random, 8, 16);
+            case 3:
+                return user + ":" + password(random, 8, 16) + " (Display_" + i + ") {" + user + "@example.com} [" + password(random, 8, 16) + "]";
+            case 4:
+                return user + ":" + password(random, 64, 256);
+            default:
+                return user + ":" + password(random, 8, 16);
+        }
+    }
+
+    private static String password(Random random, int min, int max) {
+        final int length = min + random.nextInt(max - min + 1);
+        final char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = PASSWORD_CHARS.charAt(random.nextInt(PASSWORD_CHARS.length()));
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.pravian.lalparser.BloomFilter;
+import net.pravian.lalparser.LALParser;
+import net.pravian.lalparser.Login;
+import net.pravian.lalparser.LoginField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks credential presence checks with a {@link BloomFilter} against {@link LALParser#contains(Object)}.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Benchmark
+    public boolean filter(Shared shared, Cursor cursor) {
+        final Login login = shared.probes[cursor.next(shared.probes.length)];
+        return shared.filter.mightContain(login.getLogin(), login.getPassword());
+    }
+
+    @Benchmark
+    public boolean contains(Shared shared, Cursor cursor) {
+        return shared.parser.contains(shared.probes[cursor.next(shared.probes.length)]);
+    }
+
+    /**
+     * Represents the corpus, its filter and the logins to check, half of which are present.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"100000"})
+        public int size;
+
+        public LALParser parser;
+        public BloomFilter filter;
+        public Login[] probes;
+
+        @Setup
+        public void setUp() {
+            parser = new LALParser();
+            for (int i = 0; i < size; i++) {
+                parser.add(new Login("user" + i, "pass" + i));
+            }
+            filter = parser.toFilter(0.01, LoginField.LOGIN, LoginField.PASSWORD);
+
+            probes = new Login[1024];
+            for (int i = 0; i < probes.length; i++) {
+                final int user = (int) ((long) i * 7919 % size);
+                probes[i] = new Login("user" + user, "pass" + (i % 2 == 0 ? user : user + 1));
+            }
+        }
+    }
+
+    /**
+     * Represents the probe position of a single thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index = 0;
+
+        int next(int size) {
+            index = index + 1 == size ? 0 : index + 1;
+            return index;
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.pravian.lalparser.LALParser;
+import net.pravian.lalparser.Login;
+import net.pravian.lalparser.LoginStore;
+import net.pravian.lalparser.OffHeapStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks garbage collection pauses while a corpus is held in an ArrayList, a {@link LoginStore} or an
+ * {@link OffHeapStore}.
+ *
+ * {@link #fullGc(Retained)} measures a full collection, which has to mark every object the corpus is made of.
+ * {@link #churn(Retained)} parses lines into garbage next to the retained corpus, and is meant to be run with
+ * {@code -prof gc} to compare the time spent in young collections.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class GcBenchmark {
+
+    @Benchmark
+    public void fullGc(Retained retained) {
+        System.gc();
+    }
+
+    @Benchmark
+    public int churn(Retained retained) {
+        int parsed = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (LALParser.parse("user" + i + ":password" + i + " (Display) {user" + i + "@example.com}") != null) {
+                parsed++;
+            }
+        }
+        return parsed + retained.logins.size();
+    }
+
+    /**
+     * Represents the corpus held for the duration of the benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class Retained {
+
+        @Param({"2000000"})
+        public int size;
+
+        @Param({"array-list", "login-store", "off-heap"})
+        public String store;
+
+        public List<Login> logins;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            switch (store) {
+                case "array-list":
+                    logins = new ArrayList<>(size);
+                    break;
+                case "login-store":
+                    logins = new LoginStore(size);
+                    break;
+                case "off-heap":
+                    logins = new OffHeapStore();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown store: " + store);
+            }
+
+            for (int i = 0; i < size; i++) {
+                logins.add(new Login("user" + i, Integer.toHexString(i * 0x9E3779B9), "Display " + i, "user" + i + "@example.com", null, false));
+            }
+            System.gc();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (logins instanceof OffHeapStore) {
+                ((OffHeapStore) logins).close();
+            }
+        }
+    }
+
+}
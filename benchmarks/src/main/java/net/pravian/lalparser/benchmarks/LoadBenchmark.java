@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import net.pravian.lalparser.LALParser;
+import net.pravian.lalparser.Metrics;
+import net.pravian.lalparser.LoginStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link LALParser#load(java.io.Reader)}, {@link LALParser#load(Path)} on gzip files,
+ * {@link LALParser#loadAsync(Path, java.util.concurrent.Executor)}, {@link LALParser#loadSnapshot(Path)},
+ * {@link LALParser#write(Writer)} and {@link LALParser#write(OutputStream)} over a whole corpus.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    private static final Metrics METRICS = new Metrics();
+
+    @Benchmark
+    public LALParser load(Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.load(new StringReader(corpus.document));
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadMetered(Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.setListener(METRICS);
+        parser.load(new StringReader(corpus.document));
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadSnapshot(Snapshotted snapshot, Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.loadSnapshot(snapshot.file);
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadSnapshotStore(Snapshotted snapshot, Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser(new LoginStore());
+        parser.loadSnapshot(snapshot.file);
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadFile(Written written, Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.load(written.file);
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadAsync(Written written, Corpus corpus, ByteCounter counter) {
+        final LALParser parser = LALParser.loadAsync(written.file, ForkJoinPool.commonPool()).join();
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadGzip(Compressed compressed, Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.load(compressed.file);
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public LALParser loadGzipInline(Compressed compressed, Corpus corpus, ByteCounter counter) throws IOException {
+        // The baseline: decompression and parsing take turns on the same thread
+        final LALParser parser = new LALParser();
+        final InputStream stream = new GZIPInputStream(Files.newInputStream(compressed.file), 1 << 16);
+        parser.load(stream);
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    public void write(Loaded loaded, Corpus corpus, ByteCounter counter) {
+        loaded.parser.write(new NullWriter());
+        counter.bytes += corpus.bytes.length;
+    }
+
+    @Benchmark
+    public void writeStream(Loaded loaded, Corpus corpus, ByteCounter counter) {
+        loaded.parser.write(new NullOutputStream());
+        counter.bytes += corpus.bytes.length;
+    }
+
+    /**
+     * Represents a parser loaded with the corpus.
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded {
+
+        public LALParser parser;
+
+        @Setup(Level.Trial)
+        public void setUp(Corpus corpus) {
+            parser = new LALParser();
+            parser.addAll(corpus.logins);
+        }
+    }
+
+    /**
+     * Represents a snapshot of the corpus in a temporary file.
+     */
+    @State(Scope.Benchmark)
+    public static class Snapshotted {
+
+        public Path file;
+
+        @Setup(Level.Trial)
+        public void setUp(Loaded loaded) throws IOException {
+            file = Files.createTempFile("lalparser-benchmark", ".snapshot");
+            loaded.parser.saveSnapshot(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Represents the corpus in a temporary file.
+     */
+    @State(Scope.Benchmark)
+    public static class Written {
+
+        public Path file;
+
+        @Setup(Level.Trial)
+        public void setUp(Loaded loaded) throws IOException {
+            file = Files.createTempFile("lalparser-benchmark", ".lal");
+            loaded.parser.write(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Represents the corpus gzip compressed in a temporary file.
+     */
+    @State(Scope.Benchmark)
+    public static class Compressed {
+
+        public Path file;
+
+        @Setup(Level.Trial)
+        public void setUp(Loaded loaded) throws IOException {
+            file = Files.createTempFile("lalparser-benchmark", ".lal.gz");
+            loaded.parser.write(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Represents a Writer which discards everything.
+     */
+    private static class NullWriter extends Writer {
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+        }
+
+        @Override
+        public void write(String str) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Represents an OutputStream which discards everything.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+        }
+    }
+
+}
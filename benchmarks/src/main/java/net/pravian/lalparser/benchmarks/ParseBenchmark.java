@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import net.pravian.lalparser.LALParser;
+import net.pravian.lalparser.Login;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link LALParser#parse(String)}, {@link LALParser#compile(Login)} and {@link LALParser#load(ByteBuffer)}
+ * over a whole corpus.
+ *
+ * The byte scan is measured with the default scalar search and with the word-at-a-time line and comment terminator
+ * search, the latter in forks started with {@code -Dnet.pravian.lalparser.swar=true}. Both use two forks, as the
+ * difference between them is close to the noise of a single fork.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Benchmark
+    public void parse(Corpus corpus, ByteCounter counter, Blackhole blackhole) {
+        for (String line : corpus.text) {
+            blackhole.consume(LALParser.parse(line));
+        }
+        counter.bytes += corpus.bytes.length;
+    }
+
+    @Benchmark
+    public void compile(Corpus corpus, ByteCounter counter, Blackhole blackhole) {
+        for (Login login : corpus.logins) {
+            blackhole.consume(LALParser.compile(login));
+        }
+        counter.bytes += corpus.bytes.length;
+    }
+
+    @Benchmark
+    @Fork(2)
+    public LALParser scan(Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.load(ByteBuffer.wrap(corpus.bytes));
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = "-Dnet.pravian.lalparser.swar=true")
+    public LALParser scanWords(Corpus corpus, ByteCounter counter) {
+        final LALParser parser = new LALParser();
+        parser.load(ByteBuffer.wrap(corpus.bytes));
+        counter.bytes += corpus.bytes.length;
+        return parser;
+    }
+
+}
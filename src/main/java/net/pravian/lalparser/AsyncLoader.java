@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents an asynchronous, pipelined load of a LAL file.
+ *
+ * The load runs in three stages. The reader cuts the file into batches of complete lines, workers parse the batches
+ * in parallel and the appender adds the parsed batches to the parser in file order. At most {@link #WINDOW} batches
+ * are between the reader and the appender at any time, so a slow stage holds back the reader instead of buffering
+ * the file in memory.
+ *
+ * No stage ever blocks a thread while waiting for another stage. Stages are scheduled on the executor as work becomes
+ * available, so the load makes progress on any executor, including one with a single thread.
+ *
+ * @since 1.1
+ */
+final class AsyncLoader {
+
+    public static final int BATCH_SIZE = 1 << 20;
+    public static final int WINDOW = Runtime.getRuntime().availableProcessors() * 2;
+    //
+    private final InputStream input;
+    private final Executor executor;
+    private final LALParser parser = new LALParser();
+    private final CompletableFuture<LALParser> result = new CompletableFuture<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean reading = new AtomicBoolean();
+    // Only accessed by the reader, which never runs concurrently with itself
+    private CompletableFuture<Void> appended = CompletableFuture.completedFuture(null);
+    private byte[] buffer = new byte[BATCH_SIZE];
+    private int buffered = 0;
+    private volatile boolean finished = false;
+
+    private AsyncLoader(InputStream input, Executor executor) {
+        this.input = input;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts loading a file.
+     *
+     * @param path The file to load, which may be gzip compressed.
+     * @param executor The executor to run the stages on.
+     * @return The future of the loaded parser.
+     */
+    public static CompletableFuture<LALParser> load(Path path, Executor executor) {
+        final InputStream input;
+        try {
+            input = GzipInput.open(path);
+        } catch (IOException | RuntimeException ex) {
+            final CompletableFuture<LALParser> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        final AsyncLoader loader = new AsyncLoader(input, executor);
+        loader.scheduleRead();
+        return loader.result;
+    }
+
+    private void scheduleRead() {
+        if (!finished && inFlight.get() < WINDOW && reading.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::read);
+            } catch (RuntimeException ex) {
+                // Rejected by the executor
+                fail(ex);
+                close();
+                reading.set(false);
+            }
+        }
+    }
+
+    private void read() {
+        try {
+            if (result.isDone()) {
+                // Failed or cancelled
+                close();
+                return;
+            }
+
+            final byte[] batch = readBatch();
+
+            if (batch == null) {
+                close();
+                appended.whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        fail(ex);
+                    } else {
+                        result.complete(parser);
+                    }
+                });
+                return;
+            }
+
+            inFlight.incrementAndGet();
+
+            final CompletableFuture<List<Login>> parsed = CompletableFuture.supplyAsync(() -> parse(batch), executor);
+            parsed.whenComplete((logins, ex) -> {
+                if (ex != null) {
+                    fail(ex);
+                }
+            });
+
+            // Chaining every append to the previous one keeps file order and never appends concurrently
+            appended = appended.thenAcceptBoth(parsed, (ignored, logins) -> parser.addAll(logins));
+            appended.whenComplete((ignored, ex) -> {
+                inFlight.decrementAndGet();
+                scheduleRead();
+            });
+        } catch (IOException | RuntimeException ex) {
+            fail(ex);
+            close();
+        } finally {
+            reading.set(false);
+        }
+
+        scheduleRead();
+    }
+
+    private byte[] readBatch() throws IOException {
+        int searched = 0;
+
+        while (true) {
+            if (buffered == buffer.length) {
+                for (int i = buffered - 1; i >= searched; i--) {
+                    if (buffer[i] == '\n') {
+                        final byte[] batch = Arrays.copyOf(buffer, i + 1);
+                        buffered -= i + 1;
+                        System.arraycopy(buffer, i + 1, buffer, 0, buffered);
+                        return batch;
+                    }
+                }
+
+                // A single line longer than the buffer
+                searched = buffered;
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            final int read = input.read(buffer, buffered, buffer.length - buffered);
+            if (read < 0) {
+                if (buffered == 0) {
+                    return null;
+                }
+
+                final byte[] batch = Arrays.copyOf(buffer, buffered);
+                buffered = 0;
+                return batch;
+            }
+            buffered += read;
+        }
+    }
+
+    private List<Login> parse(byte[] batch) {
+        // Batches end on a newline, which is never part of a multi-byte character
+        return ChunkedLoader.parseChunk(new String(batch, StandardCharsets.UTF_8));
+    }
+
+    private void fail(Throwable ex) {
+        result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+    }
+
+    private void close() {
+        finished = true;
+        buffer = null;
+        try {
+            input.close();
+        } catch (IOException ex) {
+        }
+    }
+
+}
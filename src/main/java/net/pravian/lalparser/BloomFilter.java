@@ -0,0 +1,384 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Represents a Bloom filter over a key of one or more login fields.
+ *
+ * The filter answers whether a key might have been added, using a few bits per key and never producing false
+ * negatives. The key is hashed directly from the field characters without allocating. Logins which lack any of the
+ * key fields, such as comments, are not added.
+ *
+ * A filter can be written to a file and memory-mapped, so it is available instantly and shared between processes
+ * through the page cache. The file starts with a header of the magic number, the format version, the amount of hash
+ * functions, the key fields, the amount of bits and the amount of keys added, followed by the bits as big-endian
+ * longs.
+ *
+ * <b>Note</b>: Adding keys is not thread-safe. Checking keys is, once the filter is no longer modified.
+ *
+ * @since 1.1
+ */
+public class BloomFilter {
+
+    public static final int MAGIC = 0x4C414C42; // "LALB"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final long MAX_BITS = (Integer.MAX_VALUE - HEADER_SIZE) / 64 * 64L * 8;
+    //
+    private final LoginField[] keys;
+    private final int hashes;
+    private final long bits;
+    private final ByteBuffer data;
+    private long count;
+
+    /**
+     * Creates a new, empty BloomFilter.
+     *
+     * @param expected The expected amount of keys.
+     * @param fpp The desired false positive probability once the expected amount of keys has been added.
+     * @param keys The fields which make up the key, such as {@link LoginField#LOGIN} and {@link LoginField#PASSWORD}.
+     */
+    public BloomFilter(long expected, double fpp, LoginField... keys) {
+        Validate.not(expected < 0, "Expected amount may not be negative");
+        Validate.not(!(fpp > 0 && fpp < 1), "False positive probability must be between 0 and 1");
+        this.keys = checkKeys(keys);
+
+        final double optimal = -Math.max(1, expected) * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        Validate.not(optimal > MAX_BITS, "Filter too large, use a higher false positive probability");
+
+        this.bits = Math.max(64, ((long) Math.ceil(optimal) + 63) / 64 * 64);
+        this.hashes = (int) Math.max(1, Math.min(32, Math.round((double) bits / Math.max(1, expected) * Math.log(2))));
+        this.data = ByteBuffer.allocate((int) (bits / 8));
+        this.count = 0;
+    }
+
+    private BloomFilter(LoginField[] keys, int hashes, long bits, long count, ByteBuffer data) {
+        this.keys = keys;
+        this.hashes = hashes;
+        this.bits = bits;
+        this.count = count;
+        this.data = data;
+    }
+
+    /**
+     * Builds a filter of all logins in a file.
+     *
+     * The file is read twice: once to count the lines and once to add the logins, which are never held in memory.
+     * Gzip compressed files are decompressed.
+     *
+     * @param path The file to read.
+     * @param fpp The desired false positive probability.
+     * @param keys The fields which make up the key.
+     * @return The filter.
+     * @throws RuntimeException if the file could not be read from.
+     */
+    public static BloomFilter build(Path path, double fpp, LoginField... keys) {
+        Validate.notNull(path, "Path may not be null");
+
+        long lines = 0;
+        try (InputStream input = GzipInput.open(path)) {
+            final byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        final BloomFilter filter = new BloomFilter(lines + 1, fpp, keys);
+        try (Stream<Login> logins = LALParser.stream(path)) {
+            filter.addAll(logins.iterator());
+        }
+        return filter;
+    }
+
+    /**
+     * Memory-maps a filter written by {@link #write(Path)}.
+     *
+     * The mapped filter is read-only.
+     *
+     * @param path The file to map.
+     * @return The filter.
+     * @throws RuntimeException if the file could not be read from, or is not a valid filter.
+     */
+    public static BloomFilter map(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Validate.not(channel.size() < HEADER_SIZE, "File is not an LAL Bloom filter");
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+            Validate.not(header.getInt() != MAGIC, "File is not an LAL Bloom filter");
+            final int version = header.getInt();
+            Validate.not(version != VERSION, "Unsupported Bloom filter version: " + version);
+
+            final int hashes = header.getInt();
+            final LoginField[] keys = unpackKeys(header.getInt());
+            final long bits = header.getLong();
+            final long count = header.getLong();
+
+            Validate.not(hashes < 1 || bits < 64 || bits % 64 != 0 || bits > MAX_BITS, "Corrupt Bloom filter header");
+            Validate.not(channel.size() != HEADER_SIZE + bits / 8, "Corrupt Bloom filter: unexpected file size");
+
+            final ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, bits / 8);
+            return new BloomFilter(keys, hashes, bits, count, data);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Writes this filter to a file, replacing it if it exists.
+     *
+     * @param path The file to write to.
+     * @throws RuntimeException if the file could not be written to.
+     */
+    public void write(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(hashes).putInt(packKeys(keys)).putLong(bits).putLong(count).flip();
+
+            final ByteBuffer body = data.duplicate();
+            body.clear();
+
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Adds the key of a login.
+     *
+     * @param login The login to add.
+     * @return True if the login contains all key fields and was added.
+     */
+    public boolean add(Login login) {
+        Validate.notNull(login, "Login may not be null");
+        Validate.not(data.isReadOnly(), "Filter is read-only");
+
+        if (!hasKey(login)) {
+            return false;
+        }
+
+        final long hash = hash(login);
+        final long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+        long combined = hash;
+        for (int i = 0; i < hashes; i++) {
+            final long bit = (combined & Long.MAX_VALUE) % bits;
+            final int index = (int) (bit >>> 6) << 3;
+            data.putLong(index, data.getLong(index) | 1L << bit);
+            combined += h2;
+        }
+
+        count++;
+        return true;
+    }
+
+    /**
+     * Adds the keys of all logins.
+     *
+     * @param logins The logins to add.
+     * @return The amount of logins added.
+     */
+    public long addAll(Iterator<Login> logins) {
+        Validate.notNull(logins, "Logins may not be null");
+
+        long added = 0;
+        while (logins.hasNext()) {
+            if (add(logins.next())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Returns true if the key of a login might have been added.
+     *
+     * @param login The login to check.
+     * @return False if the key has definitely not been added, or the login lacks a key field.
+     */
+    public boolean mightContain(Login login) {
+        Validate.notNull(login, "Login may not be null");
+
+        return hasKey(login) && test(hash(login));
+    }
+
+    /**
+     * Returns true if a key might have been added.
+     *
+     * @param values The value of every key field, in the order of the key fields.
+     * @return False if the key has definitely not been added.
+     */
+    public boolean mightContain(String... values) {
+        Validate.notNull(values, "Values may not be null");
+        Validate.not(values.length != keys.length, "Expected " + keys.length + " values");
+
+        long hash = 0xCBF29CE484222325L;
+        for (String value : values) {
+            Validate.notNull(value, "Value may not be null");
+            hash = hash(hash, value);
+        }
+        return test(mix(hash));
+    }
+
+    /**
+     * Returns the fields which make up the key.
+     *
+     * @return The key fields.
+     */
+    public LoginField[] getKeys() {
+        return keys.clone();
+    }
+
+    /**
+     * Returns the amount of keys added.
+     *
+     * @return The amount of keys.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the size of this filter.
+     *
+     * @return The amount of bits.
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * Returns the amount of bits set per key.
+     *
+     * @return The amount of hash functions.
+     */
+    public int getHashes() {
+        return hashes;
+    }
+
+    /**
+     * Returns the expected false positive probability for the amount of keys added.
+     *
+     * @return The false positive probability.
+     */
+    public double getFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashes * count / bits), hashes);
+    }
+
+    private boolean test(long hash) {
+        final long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+        long combined = hash;
+        for (int i = 0; i < hashes; i++) {
+            final long bit = (combined & Long.MAX_VALUE) % bits;
+            if ((data.getLong((int) (bit >>> 6) << 3) & 1L << bit) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    private boolean hasKey(Login login) {
+        for (LoginField key : keys) {
+            if (key.get(login) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long hash(Login login) {
+        long hash = 0xCBF29CE484222325L;
+        for (LoginField key : keys) {
+            hash = hash(hash, key.get(login));
+        }
+        return mix(hash);
+    }
+
+    private static long hash(long hash, String value) {
+        // FNV-1a over the characters, followed by the length so keys of several fields are unambiguous
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return (hash ^ value.length()) * 0x100000001B3L;
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static LoginField[] checkKeys(LoginField[] keys) {
+        Validate.notNull(keys, "Keys may not be null");
+        Validate.not(keys.length == 0 || keys.length > 7, "Between 1 and 7 keys are required");
+        for (LoginField key : keys) {
+            Validate.notNull(key, "Key may not be null");
+        }
+        return keys.clone();
+    }
+
+    private static int packKeys(LoginField[] keys) {
+        int packed = 0;
+        for (int i = 0; i < keys.length; i++) {
+            packed |= (keys[i].ordinal() + 1) << (i * 4);
+        }
+        return packed;
+    }
+
+    private static LoginField[] unpackKeys(int packed) {
+        final LoginField[] fields = LoginField.values();
+        final LoginField[] keys = new LoginField[8];
+        int length = 0;
+
+        while (packed != 0) {
+            final int ordinal = (packed & 0xF) - 1;
+            Validate.not(ordinal < 0 || ordinal >= fields.length, "Corrupt Bloom filter: unknown key field");
+            keys[length++] = fields[ordinal];
+            packed >>>= 4;
+        }
+
+        return checkKeys(Arrays.copyOf(keys, length));
+    }
+
+}
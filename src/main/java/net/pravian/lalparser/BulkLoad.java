@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Represents the result of loading all matching LAL files in a directory tree.
+ *
+ * Files are loaded concurrently, on virtual threads when the runtime supports them and on a thread pool otherwise. A
+ * file which fails to load is reported with its failure and does not abort the others. The logins of all files are
+ * merged into one parser in path order, and the file each login came from can be looked up by its index.
+ *
+ * @since 1.1
+ */
+public class BulkLoad {
+
+    public static final int DEFAULT_CONCURRENCY = 64;
+    //
+    private final LALParser parser;
+    private final List<FileResult> files;
+    private final Map<Path, List<Login>> logins;
+    private final int[] starts;
+
+    private BulkLoad(List<FileResult> files, List<List<Login>> loaded) {
+        this.files = Collections.unmodifiableList(files);
+        this.parser = new LALParser();
+        this.starts = new int[files.size()];
+
+        final Map<Path, List<Login>> map = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            starts[i] = parser.size();
+            parser.addAll(loaded.get(i));
+            map.put(files.get(i).getPath(), Collections.unmodifiableList(loaded.get(i)));
+        }
+        this.logins = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns the parser containing the logins of all files, in path order.
+     *
+     * @return The merged parser.
+     */
+    public LALParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Returns the logins of every file, in path order. Files which failed to load map to an empty list.
+     *
+     * @return The logins per file.
+     */
+    public Map<Path, List<Login>> getLogins() {
+        return logins;
+    }
+
+    /**
+     * Returns the result of every file, in path order.
+     *
+     * @return The file results.
+     */
+    public List<FileResult> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the results of the files which failed to load.
+     *
+     * @return The failed file results.
+     */
+    public List<FileResult> getFailures() {
+        return files.stream().filter(FileResult::isFailed).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the file a login in the merged parser came from.
+     *
+     * <b>Note</b>: The index refers to the merged parser as returned by {@link #getParser()}, before it is modified.
+     *
+     * @param index The index of the login in the merged parser.
+     * @return The file the login was loaded from.
+     */
+    public Path getSource(int index) {
+        if (index < 0 || starts.length == 0 || index >= parser.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + parser.size());
+        }
+
+        int file = Arrays.binarySearch(starts, index);
+        if (file < 0) {
+            file = -file - 2;
+        } else {
+            // Skip files without logins which start at the same index
+            while (file + 1 < starts.length && starts[file + 1] == index) {
+                file++;
+            }
+        }
+        return files.get(file).getPath();
+    }
+
+    /**
+     * Loads all files in a directory tree matching a glob.
+     *
+     * @param directory The directory to search.
+     * @param glob The glob, matched against both the path relative to the directory and the file name.
+     * @param concurrency The maximum amount of files loaded at the same time.
+     * @return The result.
+     * @throws RuntimeException if the directory could not be searched.
+     */
+    static BulkLoad load(Path directory, String glob, int concurrency) {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        final List<Path> paths;
+
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(directory.relativize(path)) || matcher.matches(path.getFileName()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        final Semaphore permits = new Semaphore(concurrency);
+        final ExecutorService executor = newExecutor(Math.min(concurrency, Math.max(1, paths.size())));
+        final List<Future<LALParser>> futures = new ArrayList<>(paths.size());
+        final long[] nanos = new long[paths.size()];
+
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                final Path path = paths.get(i);
+                final int file = i;
+
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    final long start = System.nanoTime();
+                    try {
+                        final LALParser loaded = new LALParser();
+                        loaded.load(path);
+                        return loaded;
+                    } finally {
+                        nanos[file] = System.nanoTime() - start;
+                        permits.release();
+                    }
+                }));
+            }
+
+            final List<FileResult> results = new ArrayList<>(paths.size());
+            final List<List<Login>> loaded = new ArrayList<>(paths.size());
+
+            for (int i = 0; i < paths.size(); i++) {
+                List<Login> logins = Collections.emptyList();
+                Throwable failure = null;
+
+                try {
+                    logins = futures.get(i).get();
+                } catch (ExecutionException ex) {
+                    failure = ex.getCause();
+                    if (failure.getClass() == RuntimeException.class && failure.getCause() != null) {
+                        // Unwrap the exception load() wraps checked exceptions in
+                        failure = failure.getCause();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                }
+
+                // The future's completion makes the timing visible
+                results.add(new FileResult(paths.get(i), logins.size(), nanos[i], failure));
+                loaded.add(logins);
+            }
+
+            return new BulkLoad(results, loaded);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            // Java 21+, without requiring it at compile time
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread thread = new Thread(runnable, "LALParser-bulk");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Represents the result of loading a single file.
+     */
+    public static class FileResult {
+
+        private final Path path;
+        private final int count;
+        private final long nanos;
+        private final Throwable failure;
+
+        FileResult(Path path, int count, long nanos, Throwable failure) {
+            this.path = path;
+            this.count = count;
+            this.nanos = nanos;
+            this.failure = failure;
+        }
+
+        /**
+         * Returns the file.
+         *
+         * @return The path of the file.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the amount of logins loaded from the file.
+         *
+         * @return The amount of logins, or 0 if the file failed to load.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the time spent opening and parsing the file, excluding the time spent waiting for a permit.
+         *
+         * @return The time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns true if the file failed to load.
+         *
+         * @return True if the file failed to load.
+         */
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        /**
+         * Returns the reason the file failed to load.
+         *
+         * @return The failure, or null if the file was loaded.
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return "FileResult{path=" + path + ", count=" + count + ", nanos=" + nanos + (failure != null ? ", failure=" + failure : "") + "}";
+        }
+    }
+
+}
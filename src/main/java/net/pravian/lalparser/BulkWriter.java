@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a writer which encodes logins straight into a reusable buffer and flushes it to a channel in large
+ * blocks, without creating a String per login.
+ *
+ * The output for every login is byte-identical to {@link LALParser#compile(Login)} followed by a newline, encoded as
+ * UTF-8.
+ *
+ * @since 1.1
+ */
+class BulkWriter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 18;
+    //
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private int position = 0;
+
+    /**
+     * Creates a new BulkWriter.
+     *
+     * @param channel The channel to write to.
+     */
+    public BulkWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.array = new byte[DEFAULT_BUFFER_SIZE];
+        this.buffer = ByteBuffer.wrap(array);
+    }
+
+    /**
+     * Encodes a login and a trailing newline.
+     *
+     * @param login The login to write.
+     * @throws IOException if the channel could not be written to.
+     * @throws IllegalStateException if the Login does not contain at least a password and username.
+     */
+    public void write(Login login) throws IOException {
+        Validate.notNull(login, "Login may not be null");
+
+        if (login.isComment()) {
+            put(login.getComment());
+            put((byte) '\n');
+            return;
+        }
+
+        final String user = login.getLogin();
+        final String password = login.getPassword();
+
+        // Validate before writing anything, like LALParser.compile
+        Validate.notEmpty(user, "Login must contain at least a password and a username");
+        Validate.noneEmpty(password, "Login must contain at least a password and a username");
+
+        if (login.isInvalid()) {
+            put((byte) '.');
+        }
+
+        put(user);
+        put((byte) ':');
+        put(password);
+
+        putOptional((byte) '(', login.getDisplayName(), (byte) ')');
+        putOptional((byte) '{', login.getEmail(), (byte) '}');
+        putOptional((byte) '[', login.getOldPassword(), (byte) ']');
+
+        put((byte) '\n');
+    }
+
+    /**
+     * Writes all buffered bytes to the channel.
+     *
+     * @throws IOException if the channel could not be written to.
+     */
+    public void flush() throws IOException {
+        buffer.clear();
+        buffer.limit(position);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    private void putOptional(byte open, String value, byte close) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        put((byte) ' ');
+        put(open);
+        put(value);
+        put(close);
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == array.length) {
+            flush();
+        }
+        array[position++] = b;
+    }
+
+    private void put(String value) throws IOException {
+        final int length = value.length();
+
+        if (length > array.length - position) {
+            flush();
+            if (length > array.length) {
+                put(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            if (c >= 0x80) {
+                // Leave non-ASCII text to the JDK, which replaces malformed surrogates like OutputStreamWriter
+                put(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            array[position++] = (byte) c;
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            if (position == array.length) {
+                flush();
+            }
+
+            final int length = Math.min(array.length - position, bytes.length - offset);
+            System.arraycopy(bytes, offset, array, position, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Represents a parser which works directly on UTF-8 encoded bytes.
+ *
+ * Lines are split and trimmed like {@link LALParser#load(java.io.Reader)}, but no characters are decoded while
+ * parsing. The parsed logins only store field offsets into the buffer and decode a field when it is first requested.
+ *
+ * @since 1.1
+ */
+class ByteParser {
+
+    /**
+     * The size of each mapping when parsing a file, small enough to stay clear of the 2 GB mapping limit.
+     */
+    public static final long MAPPING_SIZE = 1L << 30;
+
+    private ByteParser() {
+    }
+
+    /**
+     * Parses the bytes between the position and limit of a buffer.
+     *
+     * @param buffer The buffer to parse.
+     * @param logins The list to add the logins to.
+     */
+    public static void parse(ByteBuffer buffer, List<Login> logins) {
+        parse(buffer, logins, Swar.ENABLED, null);
+    }
+
+    /**
+     * Parses the bytes between the position and limit of a buffer, counting the lines.
+     *
+     * @param buffer The buffer to parse.
+     * @param logins The list to add the logins to.
+     * @param meter The meter to count the lines with, or null.
+     */
+    static void parse(ByteBuffer buffer, List<Login> logins, Meter meter) {
+        parse(buffer, logins, Swar.ENABLED, meter);
+    }
+
+    /**
+     * Parses the bytes between the position and limit of a buffer.
+     *
+     * @param buffer The buffer to parse.
+     * @param logins The list to add the logins to.
+     * @param words If line breaks and comment terminators should be scanned for eight bytes at a time.
+     * @param meter The meter to count the lines with, or null.
+     * @see Swar
+     */
+    static void parse(ByteBuffer buffer, List<Login> logins, boolean words, Meter meter) {
+        final int limit = buffer.limit();
+        int[] bounds = LineScanner.newBounds();
+        int lineStart = buffer.position();
+
+        while (lineStart < limit) {
+            final int lineEnd = Swar.indexOfLineBreak(buffer, lineStart, limit, words);
+
+            final Login login = parse(buffer, lineStart, lineEnd, bounds, words);
+            if (meter != null) {
+                meter.line(login);
+            }
+            if (login != null) {
+                logins.add(login);
+                bounds = LineScanner.newBounds();
+            }
+
+            lineStart = lineEnd + 1;
+            if (lineEnd < limit && buffer.get(lineEnd) == '\r' && lineStart < limit && buffer.get(lineStart) == '\n') {
+                lineStart++;
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a file and parses it.
+     *
+     * @param file The file to parse.
+     * @param logins The list to add the logins to.
+     * @throws IOException if the file could not be read from.
+     */
+    public static void parse(File file, List<Login> logins) throws IOException {
+        parse(file, logins, null);
+    }
+
+    /**
+     * Memory-maps a file and parses it, counting the lines and bytes.
+     *
+     * Splitting and mapping the file is timed as the read phase.
+     *
+     * @param file The file to parse.
+     * @param logins The list to add the logins to.
+     * @param meter The meter to count with, or null.
+     * @throws IOException if the file could not be read from.
+     */
+    static void parse(File file, List<Login> logins, Meter meter) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long begin = System.nanoTime();
+            final long[] chunks = ChunkedLoader.split(channel, MAPPING_SIZE);
+
+            for (int i = 0; i < chunks.length - 1; i++) {
+                final ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunks[i], chunks[i + 1] - chunks[i]);
+                if (meter != null) {
+                    meter.readNanos += System.nanoTime() - begin;
+                    meter.bytes += chunk.remaining();
+                }
+
+                parse(chunk, logins, Swar.ENABLED, meter);
+                begin = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Parses a single line.
+     *
+     * @param buffer The buffer containing the line.
+     * @param start The start of the line, inclusive.
+     * @param end The end of the line, exclusive.
+     * @param bounds The bounds array to use for the parsed login.
+     * @param words If comment terminators should be scanned for eight bytes at a time.
+     * @return The parsed login, or null if the line is not in the correct format.
+     */
+    private static Login parse(ByteBuffer buffer, int start, int end, int[] bounds, boolean words) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+
+        Validate.not(start == end, "Line may not be empty");
+
+        // Start hack
+        final boolean invalid = buffer.get(start) == '.';
+        if (invalid) {
+            start++;
+        }
+        // End hack
+
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+
+        if (!LineScanner.scan(buffer, start, end, bounds, words)) {
+            return null;
+        }
+
+        return new LoginView(buffer, bounds, invalid && bounds[LineScanner.COMMENT * 2] == -1);
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Represents a loader which parses memory-mapped chunks of a LAL file in parallel.
+ *
+ * Chunks are split on newline boundaries and the parsed chunks are stitched together in file order, so the result is
+ * identical to a sequential {@link LALParser#load(File)}.
+ *
+ * @since 1.1
+ */
+class ChunkedLoader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final int parallelism;
+    private final int chunkSize;
+    private final Interner interner;
+    private final MetricsListener listener;
+
+    public ChunkedLoader(int parallelism, int chunkSize, Interner interner, MetricsListener listener) {
+        Validate.not(parallelism < 1, "Parallelism must be positive");
+        Validate.not(chunkSize < 1, "Chunk size must be positive");
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.interner = interner;
+        this.listener = listener;
+    }
+
+    /**
+     * Parses a file and adds all parsed logins to a list in file order.
+     *
+     * @param file The file to parse.
+     * @param logins The list to add the logins to.
+     * @throws IOException if the file could not be read from.
+     */
+    public void load(File file, List<Login> logins) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            final long[] bounds = split(channel, chunkSize);
+            final int chunks = bounds.length - 1;
+
+            final List<List<Login>> results = new ArrayList<>(Collections.nCopies(chunks, (List<Login>) null));
+
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new ChunkTask(channel, bounds, results, 0, chunks));
+            } finally {
+                pool.shutdown();
+            }
+
+            for (List<Login> result : results) {
+                logins.addAll(result);
+            }
+        }
+    }
+
+    /**
+     * Splits a file into chunks which start directly after a newline.
+     *
+     * @param channel The file to split.
+     * @param chunkSize The approximate size of each chunk in bytes.
+     * @return The chunk offsets. Chunk i spans offsets i to i + 1.
+     * @throws IOException if the file could not be read from.
+     */
+    static long[] split(FileChannel channel, long chunkSize) throws IOException {
+        final long size = channel.size();
+        final List<Long> bounds = new ArrayList<>();
+        final ByteBuffer window = ByteBuffer.allocate(4096);
+
+        long start = 0;
+        bounds.add(start);
+
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+
+            // Extend the chunk up to and including the next newline
+            search:
+            while (end < size) {
+                window.clear();
+                final int read = channel.read(window, end - 1);
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        end += i;
+                        break search;
+                    }
+                }
+                end += read;
+            }
+
+            end = Math.min(end, size);
+            Validate.not(end - start > Integer.MAX_VALUE, "Line too long to be mapped");
+            bounds.add(end);
+            start = end;
+        }
+
+        final long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Parses a chunk of text containing complete lines.
+     *
+     * Lines are split like {@link java.io.BufferedReader#readLine()} and trimmed like {@link LALParser#load(java.io.Reader)}.
+     */
+    static List<Login> parseChunk(String text) {
+        return parseChunk(text, null);
+    }
+
+    /**
+     * Parses a chunk of text containing complete lines, interning repeated field values.
+     *
+     * @see #parseChunk(String)
+     */
+    static List<Login> parseChunk(String text, Interner interner) {
+        return parseChunk(text, interner, null);
+    }
+
+    /**
+     * Parses a chunk of text containing complete lines, counting every line.
+     *
+     * @param meter The meter to count the lines with, or null.
+     * @see #parseChunk(String, Interner)
+     */
+    static List<Login> parseChunk(String text, Interner interner, Meter meter) {
+        final List<Login> logins = new ArrayList<>();
+        final int length = text.length();
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            int start = lineStart;
+            int end = lineEnd;
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+
+            Validate.not(start == end, "Line may not be empty");
+
+            final Login login = LALParser.parse(text, start, end, interner);
+            if (meter != null) {
+                meter.line(login);
+            }
+            if (login != null) {
+                logins.add(login);
+            }
+
+            lineStart = lineEnd + 1;
+            if (lineEnd < length && text.charAt(lineEnd) == '\r' && lineStart < length && text.charAt(lineStart) == '\n') {
+                lineStart++;
+            }
+        }
+
+        return logins;
+    }
+
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final List<List<Login>> results;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, long[] bounds, List<List<Login>> results, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, bounds, results, from, mid), new ChunkTask(channel, bounds, results, mid, to));
+                return;
+            }
+
+            if (to == from) {
+                return;
+            }
+
+            final Meter meter = listener == null ? null : new Meter(listener);
+            final ByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[from], bounds[from + 1] - bounds[from]);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+
+            final String text = StandardCharsets.UTF_8.decode(buffer).toString();
+            if (meter == null) {
+                results.set(from, parseChunk(text, interner));
+                return;
+            }
+
+            meter.readNanos = meter.elapsed();
+            try {
+                results.set(from, parseChunk(text, interner, meter));
+            } finally {
+                listener.count(MetricsListener.Counter.BYTES_READ, bounds[from + 1] - bounds[from]);
+                meter.reportLoad();
+            }
+        }
+    }
+
+}
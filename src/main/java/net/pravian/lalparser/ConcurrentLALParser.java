@@ -0,0 +1,403 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Represents a thread-safe LAL parser whose readers never block.
+ *
+ * The logins are held in an immutable snapshot which is replaced atomically. Reads use the current snapshot without
+ * locking, and iterators keep using the snapshot they started with, so they never fail or observe a partial update.
+ * Writes through the List API copy the snapshot, like {@link java.util.concurrent.CopyOnWriteArrayList}, and are
+ * serialized by a lock.
+ *
+ * Loads parse into a private {@link LALParser} off to the side and then publish the result in a single step, so
+ * readers see either the old or the new contents, never an empty or partially loaded list.
+ *
+ * <b>Note</b>: Separate calls such as {@link #size()} and {@link #get(int)} may observe different snapshots. Use
+ * {@link #snapshot()} for reads which must be consistent with each other.
+ *
+ * @since 1.1
+ */
+public class ConcurrentLALParser extends AbstractList<Login> implements RandomAccess {
+
+    private static final Login[] EMPTY = new Login[0];
+    //
+    private final Object lock = new Object();
+    private volatile Login[] logins = EMPTY;
+    private volatile Interner interner = null;
+    private volatile MetricsListener listener = null;
+
+    /**
+     * Sets the interner used while loading.
+     *
+     * @param interner The interner to use, or null to disable interning.
+     * @see LALParser#setInterner(Interner)
+     */
+    public void setInterner(Interner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Returns the interner used while loading.
+     *
+     * @return The interner, or null if interning is disabled.
+     */
+    public Interner getInterner() {
+        return interner;
+    }
+
+    /**
+     * Sets the listener which receives load and write metrics.
+     *
+     * @param listener The listener to report to, or null to disable metrics.
+     * @see LALParser#setListener(MetricsListener)
+     */
+    public void setListener(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the listener which receives load and write metrics.
+     *
+     * @return The listener, or null if metrics are disabled.
+     */
+    public MetricsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns the current contents as an immutable list.
+     *
+     * @return The snapshot.
+     */
+    public List<Login> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList(logins));
+    }
+
+    /**
+     * Loads new contents using a private parser and publishes them atomically.
+     *
+     * The parser passed to the loader is empty and only visible to the loader. If the loader throws, the current
+     * contents are kept.
+     *
+     * @param loader The loader which fills the parser.
+     */
+    public void reload(Consumer<LALParser> loader) {
+        Validate.notNull(loader, "Loader may not be null");
+
+        final LALParser staging = new LALParser();
+        staging.setInterner(interner);
+        staging.setListener(listener);
+        loader.accept(staging);
+
+        final Login[] loaded = staging.toArray(EMPTY);
+        synchronized (lock) {
+            publish(loaded);
+        }
+    }
+
+    /**
+     * Attempts to parse a file and publishes the parsed body.
+     *
+     * @param file The file to parse.
+     * @throws RuntimeException if the file could not be found.
+     * @see LALParser#load(File)
+     */
+    public void load(File file) {
+        reload(parser -> parser.load(file));
+    }
+
+    /**
+     * Attempts to parse a file in parallel and publishes the parsed body.
+     *
+     * @param file The file to parse.
+     * @throws RuntimeException if the file could not be read from.
+     * @see LALParser#loadParallel(File)
+     */
+    public void loadParallel(File file) {
+        reload(parser -> parser.loadParallel(file));
+    }
+
+    /**
+     * Loads a snapshot file and publishes its logins.
+     *
+     * @param path The snapshot to load.
+     * @throws RuntimeException if the snapshot could not be read from, or is corrupt.
+     * @see LALParser#loadSnapshot(Path)
+     */
+    public void loadSnapshot(Path path) {
+        reload(parser -> parser.loadSnapshot(path));
+    }
+
+    /**
+     * Attempts to parse a String and publishes the parsed body.
+     *
+     * @param string The String to parse.
+     * @see LALParser#load(String)
+     */
+    public void load(String string) {
+        reload(parser -> parser.load(string));
+    }
+
+    /**
+     * Attempts to parse a Reader and publishes the parsed body.
+     *
+     * @param reader The Reader to parse.
+     * @see LALParser#load(Reader)
+     */
+    public void load(Reader reader) {
+        reload(parser -> parser.load(reader));
+    }
+
+    /**
+     * Writes the current contents to an OutputStream.
+     *
+     * @param stream The OutputStream to write to.
+     * @see LALParser#write(OutputStream)
+     */
+    public void write(OutputStream stream) {
+        writer().write(stream);
+    }
+
+    /**
+     * Writes the current contents to a file.
+     *
+     * @param path The path of the file to write to.
+     * @see LALParser#write(Path)
+     */
+    public void write(Path path) {
+        writer().write(path);
+    }
+
+    /**
+     * Writes the current contents to a binary snapshot file.
+     *
+     * @param path The path of the file to write to.
+     * @see LALParser#saveSnapshot(Path)
+     */
+    public void saveSnapshot(Path path) {
+        new LALParser(snapshot()).saveSnapshot(path);
+    }
+
+    @Override
+    public Login get(int index) {
+        return logins[index];
+    }
+
+    @Override
+    public int size() {
+        return logins.length;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return logins.clone();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array) {
+        return snapshot().toArray(array);
+    }
+
+    @Override
+    public Iterator<Login> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public ListIterator<Login> listIterator() {
+        return snapshot().listIterator();
+    }
+
+    @Override
+    public ListIterator<Login> listIterator(int index) {
+        return snapshot().listIterator(index);
+    }
+
+    @Override
+    public List<Login> subList(int from, int to) {
+        return snapshot().subList(from, to);
+    }
+
+    @Override
+    public boolean add(Login login) {
+        synchronized (lock) {
+            final Login[] current = logins;
+            final Login[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = login;
+            publish(updated);
+            return true;
+        }
+    }
+
+    @Override
+    public void add(int index, Login login) {
+        synchronized (lock) {
+            final Login[] current = logins;
+            if (index < 0 || index > current.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+            }
+
+            final Login[] updated = new Login[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            updated[index] = login;
+            System.arraycopy(current, index, updated, index + 1, current.length - index);
+            publish(updated);
+        }
+    }
+
+    @Override
+    public Login set(int index, Login login) {
+        synchronized (lock) {
+            final Login[] updated = logins.clone();
+            final Login old = updated[index];
+            updated[index] = login;
+            publish(updated);
+            return old;
+        }
+    }
+
+    @Override
+    public Login remove(int index) {
+        synchronized (lock) {
+            final Login[] current = logins;
+            final Login old = current[index];
+
+            final Login[] updated = new Login[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            publish(updated);
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        synchronized (lock) {
+            final int index = indexOf(o);
+            if (index == -1) {
+                return false;
+            }
+
+            remove(index);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Login> added) {
+        final Object[] elements = added.toArray();
+        if (elements.length == 0) {
+            return false;
+        }
+
+        synchronized (lock) {
+            final Login[] current = logins;
+            final Login[] updated = Arrays.copyOf(current, current.length + elements.length);
+            System.arraycopy(elements, 0, updated, current.length, elements.length);
+            publish(updated);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Login> added) {
+        final Object[] elements = added.toArray();
+
+        synchronized (lock) {
+            final Login[] current = logins;
+            if (index < 0 || index > current.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+            }
+            if (elements.length == 0) {
+                return false;
+            }
+
+            final Login[] updated = new Login[current.length + elements.length];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(elements, 0, updated, index, elements.length);
+            System.arraycopy(current, index, updated, index + elements.length, current.length - index);
+            publish(updated);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> removed) {
+        return filter(removed, false);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> retained) {
+        return filter(retained, true);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            publish(EMPTY);
+        }
+    }
+
+    private boolean filter(Collection<?> logins, boolean retain) {
+        Validate.notNull(logins, "Logins may not be null");
+
+        synchronized (lock) {
+            final Login[] current = this.logins;
+            final Login[] updated = new Login[current.length];
+            int size = 0;
+
+            for (Login login : current) {
+                if (logins.contains(login) == retain) {
+                    updated[size++] = login;
+                }
+            }
+
+            if (size == current.length) {
+                return false;
+            }
+
+            publish(Arrays.copyOf(updated, size));
+            return true;
+        }
+    }
+
+    private LALParser writer() {
+        final LALParser writer = new LALParser(snapshot());
+        writer.setListener(listener);
+        return writer;
+    }
+
+    private void publish(Login[] updated) {
+        logins = updated;
+        modCount++;
+    }
+
+}
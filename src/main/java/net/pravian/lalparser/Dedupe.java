@@ -0,0 +1,422 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Represents a deduplication stage for logins.
+ *
+ * Logins are keyed on a 64-bit fingerprint of the fields compared by {@link Login#strictEquals(Login)}, which is kept
+ * in a primitive hash map. Every unique login is retained so fingerprint collisions can be verified with
+ * {@link Login#strictEquals(Login)}. The retained logins are kept in a {@link LoginStore} until an optional memory cap
+ * is exceeded, after which they are spilled to a temporary file. The fingerprints always stay in memory.
+ *
+ * Spilled logins are written in blocks of {@link #SPILL_BUFFER_SIZE} bytes. Logins which have not been written yet are
+ * verified from memory, and written logins are read a page at a time, so verifying a collision only reads from the
+ * file if the login is outside the last page read, and then with a single read.
+ *
+ * <b>Note</b>: A Dedupe which may spill should be closed to delete its temporary file.
+ *
+ * @since 1.1
+ */
+public class Dedupe implements Closeable {
+
+    /**
+     * The size of the blocks written to and read from the spill file.
+     */
+    public static final int SPILL_BUFFER_SIZE = 1 << 16;
+    private static final int PAGE_SIZE = 4096;
+    private static final long SEED = 0x243F6A8885A308D3L;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final long memoryCap;
+    private final ToLongFunction<Login> fingerprinter;
+    private final LongIntMap heads = new LongIntMap();
+    private final LoginStore memory = new LoginStore();
+    private final byte[][] scratch = new byte[][]{new byte[256]};
+    private int[] chain = new int[16]; // Next record with the same fingerprint
+    private int records = 0;
+    private long duplicates = 0;
+    private int spilled = 0; // Records below this number live in the spill file
+    private File spillFile = null;
+    private FileChannel spillChannel = null;
+    private Tail spillTail = null; // Spilled records which have not been written yet
+    private DataOutputStream spillOutput = null;
+    private long[] spillOffsets = null;
+    private long spillSize = 0;
+    private long spillWritten = 0;
+    private ByteBuffer window = null;
+    private long windowStart = 0;
+
+    /**
+     * Creates a new Dedupe which keeps all unique logins in memory.
+     */
+    public Dedupe() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new Dedupe with a memory cap.
+     *
+     * @param memoryCap The amount of bytes the retained logins may occupy before they are spilled to disk.
+     */
+    public Dedupe(long memoryCap) {
+        this(memoryCap, Dedupe::fingerprint);
+    }
+
+    Dedupe(long memoryCap, ToLongFunction<Login> fingerprinter) {
+        Validate.not(memoryCap < 0, "Memory cap may not be negative");
+        this.memoryCap = memoryCap;
+        this.fingerprinter = fingerprinter;
+    }
+
+    /**
+     * Adds a login to this Dedupe.
+     *
+     * @param login The login to add.
+     * @return True if no strictly equal login was added before.
+     * @throws RuntimeException if the spill file could not be accessed.
+     */
+    public boolean add(Login login) {
+        Validate.notNull(login, "Login may not be null");
+
+        final long fingerprint = fingerprinter.applyAsLong(login);
+        final int head = heads.get(fingerprint);
+
+        for (int record = head; record != LongIntMap.ABSENT; record = chain[record]) {
+            if (record(record).strictEquals(login)) {
+                duplicates++;
+                return false;
+            }
+        }
+
+        final int record = records++;
+        if (record == chain.length) {
+            chain = Arrays.copyOf(chain, chain.length * 2);
+        }
+        chain[record] = head;
+        heads.put(fingerprint, record);
+        store(login);
+        return true;
+    }
+
+    /**
+     * Returns the amount of unique logins added to this Dedupe.
+     *
+     * @return The amount of unique logins.
+     */
+    public int size() {
+        return records;
+    }
+
+    /**
+     * Returns the amount of duplicate logins added to this Dedupe.
+     *
+     * @return The amount of duplicates.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns true if the retained logins have been spilled to disk.
+     *
+     * @return True if the logins have been spilled.
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Returns an iterator over the logins of another iterator which have not been added to this Dedupe before.
+     *
+     * @param logins The logins to filter.
+     * @return The filtered iterator.
+     */
+    public Iterator<Login> filter(final Iterator<Login> logins) {
+        Validate.notNull(logins, "Logins may not be null");
+
+        return new Iterator<Login>() {
+            private Login next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && logins.hasNext()) {
+                    final Login login = logins.next();
+                    if (add(login)) {
+                        next = login;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Login next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final Login login = next;
+                next = null;
+                return login;
+            }
+        };
+    }
+
+    /**
+     * Returns a stream of the logins of another stream which have not been added to this Dedupe before.
+     *
+     * @param logins The logins to filter.
+     * @return The filtered stream.
+     */
+    public Stream<Login> filter(Stream<Login> logins) {
+        Validate.notNull(logins, "Logins may not be null");
+
+        return logins.filter(this::add);
+    }
+
+    /**
+     * Releases the spill file, if any.
+     */
+    @Override
+    public void close() {
+        try {
+            if (spillChannel != null) {
+                spillChannel.close();
+            }
+        } catch (Exception ex) {
+        } finally {
+            spillChannel = null;
+            spillTail = null;
+            spillOutput = null;
+            window = null;
+
+            if (spillFile != null) {
+                spillFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Computes a 64-bit fingerprint of the fields compared by {@link Login#strictEquals(Login)}.
+     *
+     * Strictly equal logins always have the same fingerprint.
+     *
+     * @param login The login to fingerprint.
+     * @return The fingerprint.
+     */
+    public static long fingerprint(Login login) {
+        Validate.notNull(login, "Login may not be null");
+
+        long hash = SEED;
+
+        if (login.isComment()) {
+            hash = hash(hash, login.getComment());
+            return mix(hash ^ 1);
+        }
+
+        hash = hash(hash, login.getLogin());
+        hash = hash(hash, login.getPassword());
+        hash = hash(hash, login.getDisplayName());
+        hash = hash(hash, login.getEmail());
+        hash = hash(hash, login.getOldPassword());
+        return mix(hash ^ (login.isInvalid() ? 2 : 3));
+    }
+
+    /**
+     * Removes all logins which are strictly equal to an earlier login in a list, keeping the order of the rest.
+     *
+     * Unlike an instance, only the fingerprints and the index of the last unique login per fingerprint are kept beside
+     * the list. Fingerprint collisions are verified against the logins in the list itself.
+     *
+     * @param logins The list to remove the duplicates from. Null elements are kept.
+     * @return The amount of removed logins.
+     */
+    static int removeDuplicates(List<Login> logins) {
+        final int size = logins.size();
+        final LongIntMap heads = new LongIntMap();
+        int[] chain = new int[16]; // Next kept login with the same fingerprint
+        int kept = 0;
+
+        search:
+        for (int i = 0; i < size; i++) {
+            final Login login = logins.get(i);
+
+            if (login != null) {
+                final long fingerprint = fingerprint(login);
+                final int head = heads.get(fingerprint);
+
+                for (int index = head; index != LongIntMap.ABSENT; index = chain[index]) {
+                    if (login.strictEquals(logins.get(index))) {
+                        continue search;
+                    }
+                }
+
+                if (kept == chain.length) {
+                    chain = Arrays.copyOf(chain, chain.length * 2);
+                }
+                chain[kept] = head;
+                heads.put(fingerprint, kept);
+            }
+
+            if (kept != i) {
+                logins.set(kept, login);
+            }
+            kept++;
+        }
+
+        // Remove from the end, which does not shift any logins
+        for (int i = size - 1; i >= kept; i--) {
+            logins.remove(i);
+        }
+        return size - kept;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFFL) * MULTIPLIER;
+        }
+
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            hash = Long.rotateLeft((hash ^ value.charAt(i)) * MULTIPLIER, 31);
+        }
+        return (hash ^ length) * MULTIPLIER;
+    }
+
+    private static long mix(long hash) {
+        // MurmurHash3 finalizer
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private Login record(int record) {
+        if (record >= spilled) {
+            return memory.get(record - spilled);
+        }
+
+        final long offset = spillOffsets[record];
+        final long end = record + 1 < spilled ? spillOffsets[record + 1] : spillSize;
+
+        // Records are written whole, so a record is either in the file or in the tail
+        if (offset >= spillWritten) {
+            return LoginCodec.read(ByteBuffer.wrap(spillTail.buffer(), (int) (offset - spillWritten), (int) (end - offset)), scratch);
+        }
+
+        if (window == null || offset < windowStart || end > windowStart + window.limit()) {
+            try {
+                readWindow(offset, (int) (end - offset));
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        window.position((int) (offset - windowStart));
+        return LoginCodec.read(window, scratch);
+    }
+
+    private void readWindow(long offset, int length) throws IOException {
+        if (window == null || window.capacity() < length) {
+            window = ByteBuffer.allocate(Math.max(PAGE_SIZE, length));
+        }
+
+        window.clear();
+        window.limit((int) Math.min(window.capacity(), spillWritten - offset));
+        while (window.hasRemaining()) {
+            Validate.not(spillChannel.read(window, offset + window.position()) < 0, "Spill file is truncated");
+        }
+        window.flip();
+        windowStart = offset;
+    }
+
+    private void store(Login login) {
+        try {
+            if (spillFile != null) {
+                spill(login);
+                return;
+            }
+
+            memory.add(login);
+
+            if (memory.heapSize() + heads.heapSize() > memoryCap) {
+                spillFile = File.createTempFile("lalparser-dedupe", ".bin");
+                spillFile.deleteOnExit();
+                spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                spillTail = new Tail();
+                spillOutput = new DataOutputStream(spillTail);
+                spillOffsets = new long[Math.max(16, records * 2)];
+
+                for (Login retained : memory) {
+                    spill(retained);
+                }
+                memory.clear();
+                memory.trimToSize();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void spill(Login login) throws IOException {
+        if (spilled == spillOffsets.length) {
+            spillOffsets = Arrays.copyOf(spillOffsets, spillOffsets.length * 2);
+        }
+        spillOffsets[spilled++] = spillSize;
+        spillSize += LoginCodec.write(spillOutput, login);
+
+        if (spillTail.size() >= SPILL_BUFFER_SIZE) {
+            final ByteBuffer buffer = ByteBuffer.wrap(spillTail.buffer(), 0, spillTail.size());
+            while (buffer.hasRemaining()) {
+                spillChannel.write(buffer, spillWritten + buffer.position());
+            }
+            spillWritten += spillTail.size();
+            spillTail.reset();
+        }
+    }
+
+    /**
+     * Represents the spilled records which have not been written to the file yet.
+     */
+    private static class Tail extends ByteArrayOutputStream {
+
+        Tail() {
+            super(SPILL_BUFFER_SIZE + (SPILL_BUFFER_SIZE >> 2));
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.Arrays;
+
+/**
+ * Represents the lines rejected while loading or validating logins.
+ *
+ * Every rejection is stored as a line number and a reason code in primitive arrays, so recording it costs no more
+ * than an array store and no exception is created. At most {@link #getLimit()} rejections are stored. Rejections past
+ * the limit are still counted per reason, so the totals are always exact.
+ *
+ * @since 1.1
+ */
+public class Diagnostics {
+
+    public static final int NONE = 0;
+    /**
+     * The line is empty or only contains whitespace.
+     */
+    public static final int EMPTY_LINE = 1;
+    /**
+     * The line contains no ':' separating the login from the password.
+     */
+    public static final int MISSING_SEPARATOR = 2;
+    /**
+     * The login in front of the separator is missing or contains illegal characters.
+     */
+    public static final int MISSING_LOGIN = 3;
+    /**
+     * Nothing follows the separator.
+     */
+    public static final int MISSING_PASSWORD = 4;
+    /**
+     * The password or one of the optional fields contains illegal characters or is not closed.
+     */
+    public static final int MALFORMED_FIELDS = 5;
+    /**
+     * The login to validate is null.
+     */
+    public static final int NULL_LOGIN = 6;
+    public static final int REASONS = 7;
+    public static final int DEFAULT_LIMIT = 1 << 16;
+    //
+    private static final String[] DESCRIPTIONS = {
+        "None",
+        "Empty line",
+        "Missing ':' separator",
+        "Missing or illegal login",
+        "Missing password",
+        "Malformed password or optional field",
+        "Null login"
+    };
+    //
+    private final int limit;
+    private final long[] counts = new long[REASONS];
+    private int[] lines = new int[16];
+    private byte[] reasons = new byte[16];
+    private int size = 0;
+
+    /**
+     * Creates new Diagnostics which store up to {@link #DEFAULT_LIMIT} rejections.
+     */
+    public Diagnostics() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates new Diagnostics.
+     *
+     * @param limit The maximum amount of rejections to store.
+     */
+    public Diagnostics(int limit) {
+        Validate.not(limit < 0, "Limit may not be negative");
+        this.limit = limit;
+    }
+
+    /**
+     * Records a rejection.
+     *
+     * @param line The line number.
+     * @param reason The reason code.
+     */
+    public void record(int line, int reason) {
+        Validate.not(reason <= NONE || reason >= REASONS, "Invalid reason: " + reason);
+
+        counts[reason]++;
+
+        if (size == limit) {
+            return;
+        }
+
+        if (size == lines.length) {
+            final int capacity = (int) Math.min(limit, size * 2L);
+            lines = Arrays.copyOf(lines, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+        }
+
+        lines[size] = line;
+        reasons[size] = (byte) reason;
+        size++;
+    }
+
+    /**
+     * Returns the amount of stored rejections.
+     *
+     * @return The amount of stored rejections, at most the limit.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum amount of rejections stored.
+     *
+     * @return The limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns true if rejections were counted but not stored because the limit was reached.
+     *
+     * @return True if the stored rejections are incomplete.
+     */
+    public boolean isTruncated() {
+        return getCount() > size;
+    }
+
+    /**
+     * Returns the total amount of rejections, including those past the limit.
+     *
+     * @return The amount of rejections.
+     */
+    public long getCount() {
+        long count = 0;
+        for (long c : counts) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the amount of rejections for a reason, including those past the limit.
+     *
+     * @param reason The reason code.
+     * @return The amount of rejections.
+     */
+    public long getCount(int reason) {
+        Validate.not(reason < NONE || reason >= REASONS, "Invalid reason: " + reason);
+        return counts[reason];
+    }
+
+    /**
+     * Returns the line number of a stored rejection.
+     *
+     * @param index The index of the rejection.
+     * @return The line number.
+     */
+    public int getLine(int index) {
+        checkIndex(index);
+        return lines[index];
+    }
+
+    /**
+     * Returns the reason code of a stored rejection.
+     *
+     * @param index The index of the rejection.
+     * @return The reason code.
+     */
+    public int getReason(int index) {
+        checkIndex(index);
+        return reasons[index];
+    }
+
+    /**
+     * Returns the line numbers of all stored rejections, in the order they were recorded.
+     *
+     * @return A copy of the line numbers.
+     */
+    public int[] getLines() {
+        return Arrays.copyOf(lines, size);
+    }
+
+    /**
+     * Returns the reason codes of all stored rejections, in the order they were recorded.
+     *
+     * @return A copy of the reason codes.
+     */
+    public byte[] getReasons() {
+        return Arrays.copyOf(reasons, size);
+    }
+
+    /**
+     * Removes all rejections and resets the counts.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * Returns a description of a reason code.
+     *
+     * @param reason The reason code.
+     * @return The description.
+     */
+    public static String describe(int reason) {
+        Validate.not(reason < NONE || reason >= REASONS, "Invalid reason: " + reason);
+        return DESCRIPTIONS[reason];
+    }
+
+    /**
+     * Returns the reason a line was rejected by {@link LALParser#parse(String)}.
+     *
+     * @param line The rejected line.
+     * @return The reason code.
+     */
+    static int classify(String line) {
+        int start = 0;
+        int end = line.length();
+
+        if (start < end && line.charAt(start) == '.') {
+            start++;
+        }
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return EMPTY_LINE;
+        }
+
+        // Only the last colon can start a match, see LineScanner
+        final int colon = line.lastIndexOf(':', end - 1);
+        if (colon < start) {
+            return MISSING_SEPARATOR;
+        }
+        if (colon == start || !LineScanner.isUserChar(line.charAt(colon - 1))) {
+            return MISSING_LOGIN;
+        }
+        if (colon == end - 1) {
+            return MISSING_PASSWORD;
+        }
+        return MALFORMED_FIELDS;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("Diagnostics{count=").append(getCount());
+
+        for (int reason = NONE + 1; reason < REASONS; reason++) {
+            if (counts[reason] != 0) {
+                sb.append(", ").append(DESCRIPTIONS[reason]).append('=').append(counts[reason]);
+            }
+        }
+
+        return sb.append('}').toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Represents a streaming diff between two LAL files, keyed by login.
+ *
+ * Logins which only occur in the new file are added, logins which only occur in the old file are removed, and logins
+ * whose other fields differ are changed. Logins which occur several times are matched up: strictly equal logins
+ * cancel out, and the remaining old and new logins are paired as changes in field order. Comments are ignored.
+ *
+ * Inputs sorted by login, such as the output of an {@link ExternalSort} on {@link LoginField#LOGIN}, are diffed with a
+ * single merge pass after {@link #setSorted(boolean)}. Other inputs are diffed with a hash join: both inputs are
+ * partitioned by the hash of the login into temporary files until every partition fits in the memory budget, and
+ * each partition is then diffed in memory. Changes are reported in login order when merging and in login order per
+ * partition when joining.
+ *
+ * Patches written by {@link #diff(Path, Path, Path)} contain one LAL line per login, prefixed with a marker and a
+ * space: {@code +} for added logins, {@code -} for removed logins, and {@code <} followed by {@code >} for the old and
+ * new version of a changed login.
+ *
+ * @since 1.1
+ */
+public class Diff {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    /**
+     * The maximum amount of partitions an input is split into at once.
+     */
+    public static final int MAX_PARTITIONS = 256;
+    private static final int MAX_DEPTH = 4;
+    // Heap bytes per byte of encoded login, including the map entries of the join
+    private static final int EXPANSION = 6;
+    private static final Comparator<Login> ORDER = ExternalSort.comparator(LoginField.values()).thenComparing(Login::isInvalid);
+    //
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private boolean sorted = false;
+    private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private long added = 0;
+    private long removed = 0;
+    private long changed = 0;
+    private int partitions = 0;
+
+    /**
+     * Sets the approximate amount of heap memory used to diff a partition.
+     *
+     * @param memoryBudget The memory budget in bytes.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        Validate.not(memoryBudget < 1, "Memory budget must be positive");
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets if the inputs are sorted by login, so they can be merged without partitioning.
+     *
+     * @param sorted True if both inputs are sorted by login.
+     */
+    public void setSorted(boolean sorted) {
+        this.sorted = sorted;
+    }
+
+    /**
+     * Sets the directory for the temporary partition files.
+     *
+     * @param tempDirectory The directory.
+     */
+    public void setTempDirectory(Path tempDirectory) {
+        Validate.notNull(tempDirectory, "Temporary directory may not be null");
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Returns the amount of logins added by the last diff.
+     *
+     * @return The amount of added logins.
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the amount of logins removed by the last diff.
+     *
+     * @return The amount of removed logins.
+     */
+    public long getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the amount of logins changed by the last diff.
+     *
+     * @return The amount of changed logins.
+     */
+    public long getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the amount of partitions spilled to disk by the last diff.
+     *
+     * @return The amount of partitions, or 0 if the last diff fit in memory or merged sorted inputs.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Diffs two LAL files and writes the changes as a patch.
+     *
+     * @param oldFile The old file, which may be gzip compressed.
+     * @param newFile The new file, which may be gzip compressed.
+     * @param output The file to write the patch to.
+     * @return The amount of changes written.
+     * @throws RuntimeException if a file could not be read from or written to.
+     */
+    public long diff(Path oldFile, Path newFile, Path output) {
+        Validate.notNull(output, "Output may not be null");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            return diff(oldFile, newFile, change -> {
+                try {
+                    write(writer, change);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Diffs two LAL files.
+     *
+     * @param oldFile The old file, which may be gzip compressed.
+     * @param newFile The new file, which may be gzip compressed.
+     * @param consumer The consumer of the changes.
+     * @return The amount of changes.
+     * @throws RuntimeException if a file could not be read from.
+     * @throws IllegalStateException if the inputs are not sorted by login after {@link #setSorted(boolean)}.
+     */
+    public long diff(Path oldFile, Path newFile, Consumer<Change> consumer) {
+        Validate.notNull(oldFile, "Old file may not be null");
+        Validate.notNull(newFile, "New file may not be null");
+        Validate.notNull(consumer, "Consumer may not be null");
+
+        added = 0;
+        removed = 0;
+        changed = 0;
+        partitions = 0;
+
+        try (LoginIterator olds = open(oldFile); LoginIterator news = open(newFile)) {
+            if (sorted) {
+                merge(new Sorted(olds, "Old"), new Sorted(news, "New"), consumer);
+            } else {
+                join(olds, news, estimate(oldFile) + estimate(newFile), 0, consumer);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        return added + removed + changed;
+    }
+
+    /**
+     * Writes a change as patch lines.
+     *
+     * @param writer The writer to write to.
+     * @param change The change to write.
+     * @throws IOException if the writer could not be written to.
+     */
+    public static void write(Writer writer, Change change) throws IOException {
+        Validate.notNull(writer, "Writer may not be null");
+        Validate.notNull(change, "Change may not be null");
+
+        switch (change.getType()) {
+            case ADDED:
+                writer.write("+ " + LALParser.compile(change.getNewLogin()) + "\n");
+                break;
+            case REMOVED:
+                writer.write("- " + LALParser.compile(change.getOldLogin()) + "\n");
+                break;
+            default:
+                writer.write("< " + LALParser.compile(change.getOldLogin()) + "\n");
+                writer.write("> " + LALParser.compile(change.getNewLogin()) + "\n");
+                break;
+        }
+    }
+
+    private void merge(Sorted olds, Sorted news, Consumer<Change> consumer) {
+        while (olds.peek() != null || news.peek() != null) {
+            final String key;
+            if (olds.peek() == null) {
+                key = news.peek().getLogin();
+            } else if (news.peek() == null) {
+                key = olds.peek().getLogin();
+            } else {
+                final String oldKey = olds.peek().getLogin();
+                final String newKey = news.peek().getLogin();
+                key = oldKey.compareTo(newKey) <= 0 ? oldKey : newKey;
+            }
+
+            compare(olds.take(key), news.take(key), consumer);
+        }
+    }
+
+    private void join(Iterator<Login> olds, Iterator<Login> news, long estimate, int depth, Consumer<Change> consumer) throws IOException {
+        if (estimate <= memoryBudget || depth == MAX_DEPTH) {
+            final Map<String, Group> groups = new HashMap<>();
+            while (olds.hasNext()) {
+                final Login login = olds.next();
+                if (!login.isComment()) {
+                    groups.computeIfAbsent(login.getLogin(), key -> new Group()).olds.add(login);
+                }
+            }
+            while (news.hasNext()) {
+                final Login login = news.next();
+                if (!login.isComment()) {
+                    groups.computeIfAbsent(login.getLogin(), key -> new Group()).news.add(login);
+                }
+            }
+
+            final List<String> keys = new ArrayList<>(groups.keySet());
+            Collections.sort(keys);
+            for (String key : keys) {
+                final Group group = groups.remove(key);
+                compare(group.olds, group.news, consumer);
+            }
+            return;
+        }
+
+        final int count = (int) Math.max(2, Math.min(MAX_PARTITIONS, (estimate + memoryBudget - 1) / memoryBudget));
+        final Partitioner oldParts = new Partitioner(count, depth);
+        final Partitioner newParts = new Partitioner(count, depth);
+
+        try {
+            oldParts.split(olds);
+            newParts.split(news);
+            partitions += count;
+
+            for (int i = 0; i < count; i++) {
+                try (Partition oldPart = oldParts.open(i); Partition newPart = newParts.open(i)) {
+                    join(oldPart, newPart, (oldParts.bytes[i] + newParts.bytes[i]) * EXPANSION, depth + 1, consumer);
+                } finally {
+                    oldParts.delete(i);
+                    newParts.delete(i);
+                }
+            }
+        } finally {
+            oldParts.close();
+            newParts.close();
+        }
+    }
+
+    private void compare(List<Login> olds, List<Login> news, Consumer<Change> consumer) {
+        if (olds.size() == 1 && news.size() == 1) {
+            emit(olds.get(0), news.get(0), consumer);
+            return;
+        }
+
+        olds.sort(ORDER);
+        news.sort(ORDER);
+
+        // Cancel out strictly equal logins, which are adjacent after sorting
+        final List<Login> gone = new ArrayList<>();
+        final List<Login> come = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < olds.size() && j < news.size()) {
+            final int result = ORDER.compare(olds.get(i), news.get(j));
+            if (result == 0) {
+                i++;
+                j++;
+            } else if (result < 0) {
+                gone.add(olds.get(i++));
+            } else {
+                come.add(news.get(j++));
+            }
+        }
+        gone.addAll(olds.subList(i, olds.size()));
+        come.addAll(news.subList(j, news.size()));
+
+        for (int k = 0; k < Math.max(gone.size(), come.size()); k++) {
+            emit(k < gone.size() ? gone.get(k) : null, k < come.size() ? come.get(k) : null, consumer);
+        }
+    }
+
+    private void emit(Login oldLogin, Login newLogin, Consumer<Change> consumer) {
+        if (oldLogin == null) {
+            added++;
+            consumer.accept(new Change(null, newLogin));
+        } else if (newLogin == null) {
+            removed++;
+            consumer.accept(new Change(oldLogin, null));
+        } else if (!oldLogin.strictEquals(newLogin)) {
+            changed++;
+            consumer.accept(new Change(oldLogin, newLogin));
+        }
+    }
+
+    private static LoginIterator open(Path path) throws IOException {
+        return new LoginIterator(new InputStreamReader(GzipInput.open(path), StandardCharsets.UTF_8));
+    }
+
+    private static long estimate(Path path) throws IOException {
+        // Compressed LAL files are typically several times smaller than their contents
+        return Files.size(path) * EXPANSION * (GzipInput.isGzip(path) ? 4 : 1);
+    }
+
+    /**
+     * Represents the type of a change.
+     */
+    public enum Type {
+
+        ADDED,
+        REMOVED,
+        CHANGED
+    }
+
+    /**
+     * Represents an added, removed or changed login.
+     */
+    public static class Change {
+
+        private final Login oldLogin;
+        private final Login newLogin;
+
+        Change(Login oldLogin, Login newLogin) {
+            this.oldLogin = oldLogin;
+            this.newLogin = newLogin;
+        }
+
+        /**
+         * Returns the type of this change.
+         *
+         * @return The type.
+         */
+        public Type getType() {
+            return oldLogin == null ? Type.ADDED : newLogin == null ? Type.REMOVED : Type.CHANGED;
+        }
+
+        /**
+         * Returns the login detail both versions are keyed by.
+         *
+         * @return The login detail.
+         */
+        public String getKey() {
+            return oldLogin != null ? oldLogin.getLogin() : newLogin.getLogin();
+        }
+
+        /**
+         * Returns the old version of the login.
+         *
+         * @return The old login, or null if it was added.
+         */
+        public Login getOldLogin() {
+            return oldLogin;
+        }
+
+        /**
+         * Returns the new version of the login.
+         *
+         * @return The new login, or null if it was removed.
+         */
+        public Login getNewLogin() {
+            return newLogin;
+        }
+
+        /**
+         * Returns the fields which differ between the versions.
+         *
+         * <b>Note</b>: The set is empty if only the validness differs, and for added and removed logins.
+         *
+         * @return The changed fields.
+         */
+        public Set<LoginField> getFields() {
+            final Set<LoginField> fields = EnumSet.noneOf(LoginField.class);
+            if (getType() == Type.CHANGED) {
+                for (LoginField field : LoginField.values()) {
+                    if (!Objects.equals(field.get(oldLogin), field.get(newLogin))) {
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields;
+        }
+
+        @Override
+        public String toString() {
+            return getType() + " " + getKey() + (getType() == Type.CHANGED ? " " + getFields() : "");
+        }
+    }
+
+    /**
+     * Represents the logins of both inputs with the same login detail.
+     */
+    private static class Group {
+
+        private final List<Login> olds = new ArrayList<>(1);
+        private final List<Login> news = new ArrayList<>(1);
+    }
+
+    /**
+     * Represents a sorted input, without comments, which verifies its order.
+     */
+    private static class Sorted {
+
+        private final Iterator<Login> logins;
+        private final String name;
+        private Login next;
+        private long index = 0;
+
+        Sorted(Iterator<Login> logins, String name) {
+            this.logins = logins;
+            this.name = name;
+            advance();
+        }
+
+        Login peek() {
+            return next;
+        }
+
+        List<Login> take(String key) {
+            final List<Login> taken = new ArrayList<>(1);
+            while (next != null && next.getLogin().equals(key)) {
+                taken.add(next);
+                advance();
+            }
+            return taken;
+        }
+
+        private void advance() {
+            final Login previous = next;
+            next = null;
+
+            while (logins.hasNext()) {
+                final Login login = logins.next();
+                index++;
+
+                if (!login.isComment()) {
+                    next = login;
+                    break;
+                }
+            }
+
+            Validate.not(previous != null && next != null && previous.getLogin().compareTo(next.getLogin()) > 0,
+                    name + " input is not sorted by login at login " + index);
+        }
+    }
+
+    /**
+     * Represents the temporary partition files of an input.
+     */
+    private class Partitioner {
+
+        private final int seed;
+        private final Path[] files;
+        private final long[] bytes;
+
+        Partitioner(int count, int seed) {
+            this.seed = seed;
+            this.files = new Path[count];
+            this.bytes = new long[count];
+        }
+
+        void split(Iterator<Login> logins) throws IOException {
+            final DataOutputStream[] outputs = new DataOutputStream[files.length];
+
+            try {
+                for (int i = 0; i < files.length; i++) {
+                    files[i] = Files.createTempFile(tempDirectory, "lalparser-diff", ".part");
+                    outputs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(files[i]), 1 << 13));
+                }
+
+                while (logins.hasNext()) {
+                    final Login login = logins.next();
+                    if (login.isComment()) {
+                        continue;
+                    }
+
+                    final int partition = partition(login.getLogin());
+                    bytes[partition] += LoginCodec.write(outputs[partition], login);
+                }
+            } finally {
+                for (DataOutputStream output : outputs) {
+                    if (output != null) {
+                        output.close();
+                    }
+                }
+            }
+        }
+
+        Partition open(int i) throws IOException {
+            return new Partition(files[i]);
+        }
+
+        void delete(int i) {
+            if (files[i] == null) {
+                return;
+            }
+
+            try {
+                Files.deleteIfExists(files[i]);
+            } catch (IOException ex) {
+            }
+            files[i] = null;
+        }
+
+        void close() {
+            for (int i = 0; i < files.length; i++) {
+                delete(i);
+            }
+        }
+
+        private int partition(String key) {
+            int hash = key.hashCode() ^ (seed * 0x9E3779B9);
+            hash *= 0x9E3779B9;
+            return Math.floorMod(hash ^ (hash >>> 16), files.length);
+        }
+    }
+
+    /**
+     * Represents an iterator over the logins of a partition file.
+     */
+    private static class Partition implements Iterator<Login>, AutoCloseable {
+
+        private final DataInputStream input;
+        private Login next;
+
+        Partition(Path file) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+
+            try {
+                next = LoginCodec.read(input);
+                return true;
+            } catch (EOFException ex) {
+                return false;
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public Login next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final Login login = next;
+            next = null;
+            return login;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Represents an external merge sort for LAL files which do not fit in memory.
+ *
+ * The input is parsed into runs of at most the memory budget, which are sorted in parallel and spilled to temporary
+ * files. The runs are then merged into the output, in several passes if there are more than {@link #MAX_FAN_IN}.
+ * Input which fits in a single run is sorted in memory without temporary files.
+ *
+ * Logins are ordered by the selected key fields, with absent fields first. Logins with equal keys are ordered by all
+ * of their fields, so the output is deterministic and strictly equal logins are adjacent. Lines which are not in the
+ * correct format are skipped and empty lines are rejected, like {@link LALParser#load(java.io.Reader)}.
+ *
+ * @since 1.1
+ */
+public class ExternalSort {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    /**
+     * The maximum amount of runs merged at once.
+     */
+    public static final int MAX_FAN_IN = 64;
+    //
+    private final Comparator<Login> comparator;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private boolean distinct = false;
+    private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private int runs = 0;
+
+    /**
+     * Creates a new ExternalSort.
+     *
+     * @param keys The fields to sort by, in order of significance.
+     */
+    public ExternalSort(LoginField... keys) {
+        Validate.notNull(keys, "Keys may not be null");
+        Validate.not(keys.length == 0, "At least one key is required");
+
+        this.comparator = comparator(keys).thenComparing(comparator(LoginField.values())).thenComparing(Login::isInvalid);
+    }
+
+    /**
+     * Sets the approximate amount of heap memory used for a single run.
+     *
+     * @param memoryBudget The memory budget in bytes.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        Validate.not(memoryBudget < 1, "Memory budget must be positive");
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets if strictly equal logins should be written only once.
+     *
+     * @param distinct True to drop duplicates.
+     */
+    public void setDistinct(boolean distinct) {
+        this.distinct = distinct;
+    }
+
+    /**
+     * Sets the directory for the temporary run files.
+     *
+     * @param tempDirectory The directory.
+     */
+    public void setTempDirectory(Path tempDirectory) {
+        Validate.notNull(tempDirectory, "Temporary directory may not be null");
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Returns the amount of runs spilled to disk by the last sort.
+     *
+     * @return The amount of runs, or 0 if the last sort fit in memory.
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * Sorts an LAL file.
+     *
+     * @param input The file to sort, which may be gzip compressed.
+     * @param output The file to write the sorted logins to. May not be the input.
+     * @return The amount of logins written.
+     * @throws RuntimeException if a file could not be read from or written to.
+     */
+    public long sort(Path input, Path output) {
+        Validate.notNull(input, "Input may not be null");
+        Validate.notNull(output, "Output may not be null");
+
+        try {
+            Validate.not(Files.exists(output) && Files.isSameFile(input, output), "Output may not be the input");
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        try (LoginIterator logins = new LoginIterator(new InputStreamReader(GzipInput.open(input), StandardCharsets.UTF_8))) {
+            return sort(logins, output);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Sorts logins into an LAL file.
+     *
+     * @param logins The logins to sort.
+     * @param output The file to write the sorted logins to.
+     * @return The amount of logins written.
+     * @throws RuntimeException if a file could not be read from or written to.
+     */
+    public long sort(Iterator<Login> logins, Path output) {
+        Validate.notNull(logins, "Logins may not be null");
+        Validate.notNull(output, "Output may not be null");
+
+        final List<Path> files = new ArrayList<>();
+        runs = 0;
+
+        try {
+            Login[] run = new Login[1024];
+            int size = 0;
+            long used = 0;
+
+            while (logins.hasNext()) {
+                final Login login = logins.next();
+
+                if (size == run.length) {
+                    run = Arrays.copyOf(run, size * 2);
+                }
+                run[size++] = login;
+                used += estimate(login);
+
+                if (used >= memoryBudget && logins.hasNext()) {
+                    files.add(spill(run, size));
+                    Arrays.fill(run, 0, size, null);
+                    size = 0;
+                    used = 0;
+                }
+            }
+
+            if (files.isEmpty()) {
+                Arrays.parallelSort(run, 0, size, comparator);
+                return write(Arrays.asList(run).subList(0, size).iterator(), output);
+            }
+
+            if (size > 0) {
+                files.add(spill(run, size));
+            }
+            run = null;
+            runs = files.size();
+
+            // Reduce the runs until they can be merged in one pass
+            while (files.size() > MAX_FAN_IN) {
+                final List<Path> group = new ArrayList<>(files.subList(0, MAX_FAN_IN));
+                files.subList(0, MAX_FAN_IN).clear();
+
+                final Path merged = Files.createTempFile(tempDirectory, "lalparser-sort", ".run");
+                try (DataOutputStream out = runOutput(merged)) {
+                    merge(group, login -> LoginCodec.write(out, login));
+                } finally {
+                    delete(group);
+                }
+                files.add(merged);
+            }
+
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final BulkWriter writer = new BulkWriter(channel);
+                final long written = merge(files, writer::write);
+                writer.flush();
+                return written;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            delete(files);
+        }
+    }
+
+    /**
+     * Returns a comparator which orders logins by fields, with absent fields first.
+     *
+     * @param fields The fields to compare, in order of significance.
+     * @return The comparator.
+     */
+    public static Comparator<Login> comparator(LoginField... fields) {
+        Validate.notNull(fields, "Fields may not be null");
+
+        final LoginField[] keys = fields.clone();
+        return (a, b) -> {
+            for (LoginField key : keys) {
+                final String x = key.get(a);
+                final String y = key.get(b);
+
+                if (x != y) {
+                    if (x == null) {
+                        return -1;
+                    }
+                    if (y == null) {
+                        return 1;
+                    }
+
+                    final int result = x.compareTo(y);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+            }
+            return 0;
+        };
+    }
+
+    private Path spill(Login[] run, int size) throws IOException {
+        Arrays.parallelSort(run, 0, size, comparator);
+
+        final Path file = Files.createTempFile(tempDirectory, "lalparser-sort", ".run");
+        try (DataOutputStream out = runOutput(file)) {
+            Login previous = null;
+            for (int i = 0; i < size; i++) {
+                if (!distinct || previous == null || !previous.strictEquals(run[i])) {
+                    LoginCodec.write(out, run[i]);
+                }
+                previous = run[i];
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        return file;
+    }
+
+    private long merge(List<Path> files, Sink sink) throws IOException {
+        final PriorityQueue<Cursor> queue = new PriorityQueue<>(files.size(), (a, b) -> comparator.compare(a.head, b.head));
+        final List<Cursor> cursors = new ArrayList<>(files.size());
+
+        try {
+            for (Path file : files) {
+                final Cursor cursor = new Cursor(file);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            long written = 0;
+            Login previous = null;
+
+            while (!queue.isEmpty()) {
+                final Cursor cursor = queue.poll();
+                final Login login = cursor.head;
+
+                if (!distinct || previous == null || !previous.strictEquals(login)) {
+                    sink.accept(login);
+                    written++;
+                }
+                previous = login;
+
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            return written;
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.input.close();
+            }
+        }
+    }
+
+    private long write(Iterator<Login> logins, Path output) throws IOException {
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final BulkWriter writer = new BulkWriter(channel);
+            long written = 0;
+            Login previous = null;
+
+            while (logins.hasNext()) {
+                final Login login = logins.next();
+
+                if (!distinct || previous == null || !previous.strictEquals(login)) {
+                    writer.write(login);
+                    written++;
+                }
+                previous = login;
+            }
+
+            writer.flush();
+            return written;
+        }
+    }
+
+    private static DataOutputStream runOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    private static void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    private static long estimate(Login login) {
+        // Login object and reference, plus a compact String per present field
+        long bytes = 48 + 8;
+        for (LoginField field : LoginField.values()) {
+            final String value = field.get(login);
+            if (value != null) {
+                bytes += 40 + value.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Represents the receiver of merged logins.
+     */
+    private interface Sink {
+
+        void accept(Login login) throws IOException;
+    }
+
+    /**
+     * Represents the read position in a run file.
+     */
+    private static class Cursor {
+
+        private final DataInputStream input;
+        private Login head;
+
+        Cursor(Path file) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                head = LoginCodec.read(input);
+                return true;
+            } catch (EOFException ex) {
+                head = null;
+                return false;
+            }
+        }
+    }
+
+}
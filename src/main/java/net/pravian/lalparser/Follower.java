@@ -0,0 +1,360 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Represents a follower which parses the lines appended to an LAL file.
+ *
+ * Every call to {@link #poll()} parses the complete lines appended since the previous call and passes the parsed
+ * logins to a listener. A line is complete once it is terminated by a newline. The position of the follower is kept
+ * as a {@link Checkpoint}, which can be saved so a restarted process resumes where it left off. The checkpoint moves
+ * past each login as soon as the listener has accepted it, so if the listener throws, the logins it already accepted
+ * are not passed to it again.
+ *
+ * If the file is truncated or replaced by a new file (rotated), the follower starts over at the beginning of the file.
+ * A file is considered replaced if its file key changes, or if the bytes it already parsed from the start of the file
+ * have changed.
+ *
+ * <b>Note</b>: Unlike {@link LALParser#load(java.io.Reader)}, empty lines are skipped rather than rejected, so a
+ * single empty line does not stop the follower for good.
+ *
+ * @since 1.1
+ */
+public class Follower {
+
+    /**
+     * The maximum amount of bytes from the start of the file which are used to detect rotation.
+     */
+    public static final int HEAD_SIZE = 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+    //
+    private final Path file;
+    private final Consumer<Login> listener;
+    private Checkpoint checkpoint;
+    private byte[] pending = new byte[BUFFER_SIZE];
+
+    /**
+     * Creates a new Follower which starts at the beginning of a file.
+     *
+     * @param file The file to follow.
+     * @param listener The listener to pass the parsed logins to.
+     */
+    public Follower(Path file, Consumer<Login> listener) {
+        this(file, listener, new Checkpoint(0, null, 0, 0));
+    }
+
+    /**
+     * Creates a new Follower which resumes at a checkpoint.
+     *
+     * @param file The file to follow.
+     * @param listener The listener to pass the parsed logins to.
+     * @param checkpoint The checkpoint to resume at.
+     */
+    public Follower(Path file, Consumer<Login> listener, Checkpoint checkpoint) {
+        Validate.notNull(file, "File may not be null");
+        Validate.notNull(listener, "Listener may not be null");
+        Validate.notNull(checkpoint, "Checkpoint may not be null");
+        this.file = file;
+        this.listener = listener;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Returns the file this follower follows.
+     *
+     * @return The file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the current position of this follower.
+     *
+     * @return The checkpoint.
+     */
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Parses the complete lines appended to the file since the previous poll.
+     *
+     * If the file does not exist (for example, in the middle of a rotation) nothing is parsed.
+     *
+     * If the listener throws, the exception is rethrown and the checkpoint points just past the last login the listener
+     * accepted. The next poll starts with the login the listener failed on.
+     *
+     * @return The amount of logins passed to the listener.
+     * @throws RuntimeException if the file could not be read from, or if the listener throws.
+     */
+    public int poll() {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+            final long size = channel.size();
+
+            if (isReset(channel, fileKey, size)) {
+                checkpoint = new Checkpoint(0, fileKey, 0, 0);
+            }
+
+            int parsed = 0;
+            long offset = checkpoint.getOffset();
+            int length = 0;
+
+            while (offset + length < size) {
+                if (length == pending.length) {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                }
+
+                final int read = channel.read(ByteBuffer.wrap(pending, length, pending.length - length), offset + length);
+                if (read <= 0) {
+                    break;
+                }
+                length += read;
+
+                int complete = length;
+                while (complete > 0 && pending[complete - 1] != '\n') {
+                    complete--;
+                }
+                if (complete == 0) {
+                    continue;
+                }
+
+                int lineStart = 0;
+                for (int i = 0; i < complete; i++) {
+                    if (pending[i] != '\n' && pending[i] != '\r') {
+                        continue;
+                    }
+
+                    final Login login = parse(lineStart, i);
+                    lineStart = i + 1;
+                    if (login != null) {
+                        listener.accept(login);
+                        parsed++;
+                        advance(channel, fileKey, offset + lineStart);
+                    }
+                }
+                advance(channel, fileKey, offset + complete);
+                offset += complete;
+
+                System.arraycopy(pending, complete, pending, 0, length - complete);
+                length -= complete;
+            }
+
+            return parsed;
+        } catch (NoSuchFileException ex) {
+            return 0;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private boolean isReset(FileChannel channel, String fileKey, long size) throws IOException {
+        if (size < checkpoint.getOffset()) {
+            return true; // Truncated
+        }
+
+        if (checkpoint.getFileKey() != null && fileKey != null && !checkpoint.getFileKey().equals(fileKey)) {
+            return true; // Rotated
+        }
+
+        return checkpoint.getHeadLength() > 0 && head(channel, checkpoint.getHeadLength()) != checkpoint.getHeadHash();
+    }
+
+    private void advance(FileChannel channel, String fileKey, long offset) throws IOException {
+        final int headLength = (int) Math.min(offset, HEAD_SIZE);
+        final long headHash = headLength == checkpoint.getHeadLength() ? checkpoint.getHeadHash() : head(channel, headLength);
+        checkpoint = new Checkpoint(offset, fileKey, headLength, headHash);
+    }
+
+    private Login parse(int start, int end) {
+        // Bytes up to ' ' are always single byte characters in UTF-8
+        while (start < end && (pending[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (pending[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return null;
+        }
+
+        final String line = new String(pending, start, end - start, StandardCharsets.UTF_8);
+        return LALParser.parse(line, 0, line.length());
+    }
+
+    private static long head(FileChannel channel, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer, buffer.position());
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        return crc.getValue();
+    }
+
+    /**
+     * Represents the position of a {@link Follower} in a file.
+     *
+     * @since 1.1
+     */
+    public static final class Checkpoint {
+
+        private final long offset;
+        private final String fileKey;
+        private final int headLength;
+        private final long headHash;
+
+        /**
+         * Creates a new Checkpoint.
+         *
+         * @param offset The offset of the first byte which has not been parsed.
+         * @param fileKey The file key of the file, or null if unknown.
+         * @param headLength The amount of bytes from the start of the file which were hashed.
+         * @param headHash The CRC32 of the hashed bytes.
+         */
+        public Checkpoint(long offset, String fileKey, int headLength, long headHash) {
+            Validate.not(offset < 0, "Offset may not be negative");
+            Validate.not(headLength < 0 || headLength > offset, "Head length must be between 0 and the offset");
+            this.offset = offset;
+            this.fileKey = fileKey;
+            this.headLength = headLength;
+            this.headHash = headHash;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        public int getHeadLength() {
+            return headLength;
+        }
+
+        public long getHeadHash() {
+            return headHash;
+        }
+
+        /**
+         * Saves this checkpoint to a file.
+         *
+         * The checkpoint is written to a temporary file first, which then replaces the file, so a crash never leaves
+         * a partially written checkpoint behind.
+         *
+         * @param path The file to save to.
+         * @throws RuntimeException if the checkpoint could not be written.
+         */
+        public void save(Path path) {
+            Validate.notNull(path, "Path may not be null");
+
+            final Properties properties = new Properties();
+            properties.setProperty("offset", Long.toString(offset));
+            if (fileKey != null) {
+                properties.setProperty("fileKey", fileKey);
+            }
+            properties.setProperty("headLength", Integer.toString(headLength));
+            properties.setProperty("headHash", Long.toString(headHash));
+
+            final Path absolute = path.toAbsolutePath();
+            final Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    properties.store(out, "LALParser follower checkpoint");
+                }
+
+                try {
+                    Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        /**
+         * Loads a checkpoint from a file.
+         *
+         * @param path The file to load from.
+         * @return The checkpoint.
+         * @throws RuntimeException if the checkpoint could not be read.
+         */
+        public static Checkpoint load(Path path) {
+            Validate.notNull(path, "Path may not be null");
+
+            final Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(path)) {
+                properties.load(in);
+
+                return new Checkpoint(
+                        Long.parseLong(properties.getProperty("offset")),
+                        properties.getProperty("fileKey"),
+                        Integer.parseInt(properties.getProperty("headLength")),
+                        Long.parseLong(properties.getProperty("headHash")));
+            } catch (IOException | NumberFormatException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Checkpoint)) {
+                return false;
+            }
+
+            final Checkpoint other = (Checkpoint) obj;
+            return offset == other.offset
+                    && headLength == other.headLength
+                    && headHash == other.headHash
+                    && (fileKey == null ? other.fileKey == null : fileKey.equals(other.fileKey));
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (offset ^ (offset >>> 32)) * 31 + (int) headHash;
+        }
+
+        @Override
+        public String toString() {
+            return "Checkpoint{offset=" + offset + ", fileKey=" + fileKey + ", headLength=" + headLength + "}";
+        }
+    }
+
+}
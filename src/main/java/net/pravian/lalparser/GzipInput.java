@@ -0,0 +1,635 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Represents a gzip file decompressed on background threads.
+ *
+ * Every gzip member is inflated by its own task, which hands the decompressed blocks to the reader through a bounded
+ * queue, so decompression runs ahead of parsing without holding the whole file in memory. A task never blocks: it
+ * inflates until its queue is full and is resumed once the reader takes a block, and the reader inflates the member it
+ * is waiting for itself if no thread has picked it up yet. The tasks therefore share one small pool across all
+ * streams, no matter how many are open or in which order they are read.
+ *
+ * The first member is handed to the pool as soon as the file is opened, so even an ordinary single-member file is
+ * inflated ahead of the reader. The file is not scanned for headers though until a second member actually follows the
+ * first one. From then on, members are located speculatively by scanning for gzip headers at most {@link #LOOKAHEAD}
+ * bytes past the member being read, and up to {@link #WINDOW} of them are inflated in parallel. A header found inside
+ * compressed data is discarded once the member before it turns out to end elsewhere, and a member beyond the lookahead
+ * is still found where the one before it ends, so the output is always identical to {@link java.util.zip.GZIPInputStream}.
+ *
+ * Files written by {@link #newOutputStream(Path)} consist of members of {@link #MEMBER_SIZE} bytes, which fit in a
+ * single queue and are therefore inflated fully in parallel.
+ *
+ * @since 1.1
+ */
+final class GzipInput extends InputStream {
+
+    public static final int BLOCK_SIZE = 1 << 16;
+    public static final int MEMBER_SIZE = 1 << 20;
+    public static final int WINDOW = Runtime.getRuntime().availableProcessors() + 1;
+    /**
+     * The maximum distance past the start of the member being read which is scanned for headers.
+     */
+    public static final long LOOKAHEAD = 2L * WINDOW * MEMBER_SIZE;
+    private static final int QUEUE_BLOCKS = MEMBER_SIZE / BLOCK_SIZE + 1;
+    private static final int SCAN_SIZE = 1 << 20;
+    //
+    private static final int ID1 = 0x1F;
+    private static final int ID2 = 0x8B;
+    private static final int DEFLATE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int RESERVED = 0xE0;
+    private static final byte[] END = new byte[0];
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = newExecutor();
+    //
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int RUNNING = 2;
+    private static final int DONE = 3;
+    //
+    private final FileChannel channel;
+    private final long size;
+    private final Deque<Member> scheduled = new ArrayDeque<>();
+    private byte[] scan = null;
+    private long scanPosition = 0;
+    private long scanned = 0;
+    private Member current;
+    private byte[] block = END;
+    private int index = 0;
+    private boolean closed = false;
+
+    private GzipInput(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+
+        try {
+            Validate.not(!isHeaderAt(0), "Not in gzip format");
+            // Other members are only looked for once a second member shows up
+            current = new Member(0);
+            scheduled.addLast(current);
+            current.resume();
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns true if a file starts with the gzip magic number.
+     *
+     * @param path The file to check.
+     * @return True if the file is gzip compressed.
+     * @throws IOException if the file could not be read from.
+     */
+    public static boolean isGzip(Path path) throws IOException {
+        try (InputStream stream = Files.newInputStream(path)) {
+            return stream.read() == ID1 && stream.read() == ID2;
+        }
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it is gzip compressed.
+     *
+     * @param path The file to open.
+     * @return The stream of the (decompressed) contents.
+     * @throws IOException if the file could not be opened.
+     */
+    public static InputStream open(Path path) throws IOException {
+        return isGzip(path) ? new GzipInput(path) : Files.newInputStream(path);
+    }
+
+    /**
+     * Returns true if a file should be written gzip compressed, judging by its name.
+     *
+     * @param path The file to check.
+     * @return True if the file name ends with ".gz".
+     */
+    public static boolean isGzipName(Path path) {
+        final Path name = path.getFileName();
+        return name != null && name.toString().toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * Opens a file for writing as gzip, creating or truncating it.
+     *
+     * The contents are compressed into independent members of {@link #MEMBER_SIZE} bytes, which
+     * {@link GzipInput} inflates in parallel. Closing the stream finishes the last member and closes the file.
+     *
+     * @param path The file to write to.
+     * @return The stream.
+     * @throws IOException if the file could not be opened.
+     */
+    public static OutputStream newOutputStream(Path path) throws IOException {
+        return new MemberOutputStream(Files.newOutputStream(path));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return block[index++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        final int read = Math.min(length, block.length - index);
+        System.arraycopy(block, index, bytes, offset, read);
+        index += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return block.length - index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        for (Member member : scheduled) {
+            member.cancel();
+        }
+        scheduled.clear();
+        current = null;
+        channel.close();
+    }
+
+    /**
+     * Returns the amount of bytes scanned for member headers so far.
+     *
+     * @return The amount of bytes.
+     */
+    long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * Returns the amount of inflated blocks of the current member which the reader has not taken yet.
+     *
+     * @return The amount of blocks.
+     */
+    int getBuffered() {
+        return current == null ? 0 : current.queue.size();
+    }
+
+    private boolean fill() throws IOException {
+        Validate.not(closed, "Stream is closed");
+
+        while (index == block.length) {
+            if (current == null) {
+                return false;
+            }
+
+            final byte[] next = current.next();
+            if (next == END) {
+                if (current.error != null) {
+                    throw new IOException("Corrupt gzip member at offset " + current.offset, current.error);
+                }
+                advance(current.end);
+            } else {
+                block = next;
+                index = 0;
+            }
+        }
+        return true;
+    }
+
+    private void advance(long offset) throws IOException {
+        // Headers found before the next member were inside compressed data
+        while (!scheduled.isEmpty() && scheduled.peekFirst().offset < offset) {
+            scheduled.pollFirst().cancel();
+        }
+
+        Member next = scheduled.peekFirst();
+        if ((next == null || next.offset != offset) && isHeaderAt(offset)) {
+            // Beyond the lookahead, or the first member of a file which turned out to have several
+            next = new Member(offset);
+            scheduled.addFirst(next);
+        }
+
+        if (next == null || next.offset != offset) {
+            // Like GZIPInputStream, anything but a member after the last member is ignored
+            for (Member member : scheduled) {
+                member.cancel();
+            }
+            scheduled.clear();
+            current = null;
+            return;
+        }
+
+        current = next;
+        current.resume();
+        scanPosition = Math.max(scanPosition, offset + 1);
+        schedule();
+    }
+
+    private void schedule() throws IOException {
+        final long limit = Math.min(size, current.offset + LOOKAHEAD);
+
+        while (scheduled.size() < WINDOW) {
+            final long offset = nextHeader(limit);
+            if (offset < 0) {
+                return;
+            }
+
+            final Member member = new Member(offset);
+            scheduled.addLast(member);
+            member.resume();
+        }
+    }
+
+    private long nextHeader(long limit) throws IOException {
+        if (scan == null) {
+            scan = new byte[SCAN_SIZE];
+        }
+
+        while (scanPosition < limit && scanPosition <= size - 4) {
+            // Headers may start before the limit and end after it
+            final int length = (int) Math.min(SCAN_SIZE, Math.min(size, limit + 3) - scanPosition);
+            final ByteBuffer buffer = ByteBuffer.wrap(scan, 0, length);
+            int read = 0;
+            while (buffer.hasRemaining() && read >= 0) {
+                read = channel.read(buffer, scanPosition + buffer.position());
+            }
+            final int filled = buffer.position();
+            scanned += filled;
+
+            for (int i = 0; i <= filled - 4; i++) {
+                if (isHeader(scan, i)) {
+                    final long offset = scanPosition + i;
+                    scanPosition = offset + 1;
+                    return offset;
+                }
+            }
+            if (filled < 4) {
+                return -1;
+            }
+
+            // Keep the last bytes, a header may span the boundary
+            scanPosition += filled - 3;
+        }
+        return -1;
+    }
+
+    private boolean isHeaderAt(long offset) throws IOException {
+        if (offset > size - 4) {
+            return false;
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(4);
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, offset + header.position());
+        }
+        return !header.hasRemaining() && isHeader(header.array(), 0);
+    }
+
+    private static boolean isHeader(byte[] bytes, int i) {
+        return (bytes[i] & 0xFF) == ID1
+                && (bytes[i + 1] & 0xFF) == ID2
+                && bytes[i + 2] == DEFLATE
+                && (bytes[i + 3] & RESERVED) == 0;
+    }
+
+    private static ExecutorService newExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(WINDOW, WINDOW, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "LALParser-gunzip-" + THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Represents the task which inflates a single member, a queue full at a time.
+     *
+     * The task is owned by whichever thread moves its state to RUNNING, either a pool thread or the reader, and only
+     * the owner touches the inflater and input buffer.
+     */
+    private class Member implements Runnable {
+
+        private final long offset;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_BLOCKS + 1);
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        private final byte[] input = new byte[BLOCK_SIZE];
+        private final CRC32 crc = new CRC32();
+        private Inflater inflater = null;
+        private long total = 0;
+        private boolean done = false;
+        private long position;
+        private int start = 0;
+        private int limit = 0;
+        private volatile long end = -1;
+        private volatile Exception error = null;
+        private volatile boolean cancelled = false;
+
+        Member(long offset) {
+            this.offset = offset;
+            this.position = offset;
+        }
+
+        @Override
+        public void run() {
+            if (state.compareAndSet(QUEUED, RUNNING)) {
+                step(QUEUE_BLOCKS);
+                release();
+            }
+        }
+
+        /**
+         * Returns the next block, inflating it on the calling thread if no pool thread is working on it.
+         */
+        byte[] next() throws IOException {
+            byte[] next = queue.poll();
+            if (next == null && (state.compareAndSet(QUEUED, RUNNING) || state.compareAndSet(IDLE, RUNNING))) {
+                // Only inflate what the reader needs now, the pool continues from there
+                step(1);
+                release();
+                next = queue.poll();
+            }
+            if (next == null) {
+                // Another thread owns the task, and only stops once it has filled the queue or finished
+                try {
+                    next = queue.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            resume();
+            return next;
+        }
+
+        void resume() {
+            if (state.compareAndSet(IDLE, QUEUED)) {
+                EXECUTOR.execute(this);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            queue.clear();
+            if (state.compareAndSet(QUEUED, RUNNING) || state.compareAndSet(IDLE, RUNNING)) {
+                release();
+            }
+        }
+
+        private void release() {
+            if (done || cancelled) {
+                if (inflater != null) {
+                    inflater.end();
+                    inflater = null;
+                }
+                state.set(DONE);
+                return;
+            }
+
+            state.set(IDLE);
+            // The reader may have taken a block or cancelled the task while it was running
+            if (cancelled) {
+                if (state.compareAndSet(IDLE, RUNNING)) {
+                    release();
+                }
+            } else if (queue.remainingCapacity() > 1) {
+                resume();
+            }
+        }
+
+        private void step(int blocks) {
+            try {
+                if (inflater == null) {
+                    readHeader();
+                    inflater = new Inflater(true);
+                }
+
+                // One slot is kept for the end marker
+                for (int i = 0; i < blocks && !cancelled && !inflater.finished() && queue.remainingCapacity() > 1; i++) {
+                    final byte[] output = new byte[BLOCK_SIZE];
+                    int length = 0;
+
+                    while (length < output.length && !inflater.finished()) {
+                        if (inflater.needsInput()) {
+                            Validate.not(start == limit && !refill(), "Unexpected end of file");
+                            inflater.setInput(input, start, limit - start);
+                            start = limit;
+                        }
+                        Validate.not(inflater.needsDictionary(), "Preset dictionaries are not supported");
+                        length += inflater.inflate(output, length, output.length - length);
+                    }
+
+                    if (length > 0) {
+                        crc.update(output, 0, length);
+                        total += length;
+                        queue.offer(length == output.length ? output : Arrays.copyOf(output, length));
+                    }
+                }
+
+                if (cancelled || !inflater.finished()) {
+                    return;
+                }
+
+                start = limit - inflater.getRemaining();
+                Validate.not(readInt() != (int) crc.getValue(), "CRC mismatch");
+                Validate.not(readInt() != (int) total, "Size mismatch");
+                end = position - (limit - start);
+            } catch (Exception ex) {
+                error = ex;
+            }
+
+            done = true;
+            queue.offer(END);
+        }
+
+        private void readHeader() throws IOException {
+            Validate.not(read() != ID1 || read() != ID2 || read() != DEFLATE, "Not in gzip format");
+            final int flags = read();
+            Validate.not((flags & RESERVED) != 0, "Reserved flags are set");
+
+            // Modification time, extra flags and operating system
+            skip(6);
+
+            if ((flags & FEXTRA) != 0) {
+                skip(read() | read() << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                while (read() != 0) {
+                    continue;
+                }
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (read() != 0) {
+                    continue;
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                skip(2);
+            }
+        }
+
+        private int readInt() throws IOException {
+            return read() | read() << 8 | read() << 16 | read() << 24;
+        }
+
+        private void skip(int bytes) throws IOException {
+            for (int i = 0; i < bytes; i++) {
+                read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (start == limit) {
+                Validate.not(!refill(), "Unexpected end of file");
+            }
+            return input[start++] & 0xFF;
+        }
+
+        private boolean refill() throws IOException {
+            final int read = channel.read(ByteBuffer.wrap(input), position);
+            if (read <= 0) {
+                return false;
+            }
+
+            start = 0;
+            limit = read;
+            position += read;
+            return true;
+        }
+    }
+
+    /**
+     * Represents a gzip stream which starts a new member every {@link #MEMBER_SIZE} bytes.
+     */
+    private static class MemberOutputStream extends OutputStream {
+
+        private final OutputStream output;
+        private GZIPOutputStream member = null;
+        private int written = 0;
+        private boolean empty = true;
+
+        MemberOutputStream(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (member == null) {
+                    member = new GZIPOutputStream(new ShieldedOutputStream(output), BLOCK_SIZE);
+                    written = 0;
+                    empty = false;
+                }
+
+                final int chunk = Math.min(length, MEMBER_SIZE - written);
+                member.write(bytes, offset, chunk);
+                written += chunk;
+                offset += chunk;
+                length -= chunk;
+
+                if (written == MEMBER_SIZE) {
+                    member.close();
+                    member = null;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (empty) {
+                    // An empty file would not be recognized as gzip
+                    member = new GZIPOutputStream(new ShieldedOutputStream(output), BLOCK_SIZE);
+                }
+                if (member != null) {
+                    member.close();
+                    member = null;
+                }
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Represents a stream which does not close the stream it writes to, so members can be closed individually.
+     */
+    private static class ShieldedOutputStream extends OutputStream {
+
+        private final OutputStream output;
+
+        ShieldedOutputStream(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            output.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            output.write(bytes, offset, length);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a bounded symbol table which lets repeated field values share one String instance.
+ *
+ * The table is set-associative: every value hashes to a set of {@link #WAYS} slots. A value found in its set is
+ * returned without creating a String and moves one slot towards the front of the set. A value which is not found is
+ * inserted at the front, evicting the value in the last slot, so the table never grows past its capacity and rarely
+ * used values are evicted first.
+ *
+ * The table is lock-free and may be shared between parsers and threads. Concurrent updates may occasionally drop or
+ * duplicate an entry, which only costs a missed hit.
+ *
+ * @since 1.1
+ */
+public class Interner {
+
+    /**
+     * The amount of slots in every set.
+     */
+    public static final int WAYS = 4;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_MAX_LENGTH = 64;
+    //
+    private final AtomicReferenceArray<String> table;
+    private final int sets;
+    private final int maxLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Creates a new Interner with the default capacity.
+     */
+    public Interner() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a new Interner.
+     *
+     * @param capacity The maximum amount of values, rounded up to a power of two.
+     * @param maxLength The maximum length of values to intern. Longer values are rarely repeated and are never stored.
+     */
+    public Interner(int capacity, int maxLength) {
+        Validate.not(capacity < 1 || capacity > 1 << 30, "Capacity must be between 1 and 2^30");
+        Validate.not(maxLength < 0, "Maximum length may not be negative");
+
+        final int slots = capacity <= WAYS ? WAYS : Integer.highestOneBit(capacity - 1) << 1;
+        this.sets = slots / WAYS;
+        this.table = new AtomicReferenceArray<>(slots);
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the shared instance of a value.
+     *
+     * @param value The value to intern.
+     * @return The shared instance, or the value itself if it was not interned before.
+     */
+    public String intern(String value) {
+        Validate.notNull(value, "Value may not be null");
+
+        return intern(value, 0, value.length(), value);
+    }
+
+    /**
+     * Returns the shared instance of a region of a String.
+     *
+     * No String is created if the region has been interned before.
+     *
+     * @param source The String containing the value.
+     * @param start The start of the value, inclusive.
+     * @param end The end of the value, exclusive.
+     * @return The shared instance.
+     */
+    public String intern(String source, int start, int end) {
+        Validate.notNull(source, "Source may not be null");
+
+        return intern(source, start, end, null);
+    }
+
+    /**
+     * Returns the amount of lookups which found a shared instance.
+     *
+     * @return The amount of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the amount of lookups which did not find a shared instance, including values which were too long.
+     *
+     * @return The amount of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups which found a shared instance.
+     *
+     * @return The hit rate, between 0 and 1.
+     */
+    public double getHitRate() {
+        final long hit = hits.sum();
+        final long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Returns the amount of values evicted to make room for new values.
+     *
+     * @return The amount of evictions.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns an estimate of the heap memory saved by returning shared instances, in bytes.
+     *
+     * The estimate assumes compact (Latin-1) Strings on a 64-bit JVM with compressed references.
+     *
+     * @return The estimated bytes saved.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Returns the maximum amount of values this Interner holds.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * Removes all values and resets the statistics.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        bytesSaved.reset();
+    }
+
+    private String intern(String source, int start, int end, String value) {
+        final int length = end - start;
+
+        if (length > maxLength) {
+            misses.increment();
+            return value != null ? value : source.substring(start, end);
+        }
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        hash *= 0x9E3779B9;
+        final int set = ((hash ^ (hash >>> 16)) & (sets - 1)) * WAYS;
+
+        for (int way = 0; way < WAYS; way++) {
+            final String entry = table.get(set + way);
+
+            if (entry != null && entry.length() == length && entry.regionMatches(0, source, start, length)) {
+                if (way > 0) {
+                    // Promote, so values which keep hitting are the last to be evicted
+                    table.lazySet(set + way, table.get(set + way - 1));
+                    table.lazySet(set + way - 1, entry);
+                }
+
+                hits.increment();
+                bytesSaved.add(size(length));
+                return entry;
+            }
+        }
+
+        final String created = value != null ? value : source.substring(start, end);
+
+        if (table.get(set + WAYS - 1) != null) {
+            evictions.increment();
+        }
+        for (int way = WAYS - 1; way > 0; way--) {
+            table.lazySet(set + way, table.get(set + way - 1));
+        }
+        table.lazySet(set, created);
+
+        misses.increment();
+        return created;
+    }
+
+    private static long size(int length) {
+        // String header and fields, plus the byte array header and contents, aligned to 8 bytes
+        return 24 + ((16 + length + 7) & ~7);
+    }
+
+}
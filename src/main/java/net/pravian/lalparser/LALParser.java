@@ -17,23 +17,36 @@ package net.pravian.lalparser;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a parser for the LAL format.
@@ -45,11 +58,17 @@ public class LALParser implements List<Login> {
     /**
      * The Pattern for matching LAL lines.
      *
+     * <b>Note</b>: {@link #parse(String)} does not use this pattern, but a single-pass scanner which accepts the
+     * same lines and yields the same groups.
+     *
      * @see java.util.regex.Pattern
      */
     public static final Pattern LOGIN_PATTERN;
 
     private final List<Login> logins;
+    private final Map<LoginField, LoginIndex> indexes = new EnumMap<>(LoginField.class);
+    private Interner interner = null;
+    private MetricsListener listener = null;
 
     static {
         final StringBuilder p = new StringBuilder();
@@ -79,7 +98,65 @@ public class LALParser implements List<Login> {
      * Creates a new empty LAL parser.
      */
     public LALParser() {
-        logins = new ArrayList<>();
+        this(new ArrayList<Login>());
+    }
+
+    /**
+     * Creates a new LAL parser which stores its logins in the supplied list.
+     *
+     * <b>Note</b>: Supply a {@link LoginStore} to keep large documents in a compact, column-oriented form, or an
+     * {@link OffHeapStore} to keep them outside of the Java heap.
+     *
+     * @param logins The list to store the logins in.
+     */
+    public LALParser(List<Login> logins) {
+        Validate.notNull(logins, "Logins may not be null");
+        this.logins = logins;
+    }
+
+    /**
+     * Sets the interner used while loading.
+     *
+     * With an interner, repeated passwords, display names, emails and old passwords share one String instance. The
+     * interner is used by {@link #load(Reader)} and {@link #loadParallel(File, int, int)}, and by the methods which
+     * delegate to them. Logins and comments are never interned.
+     *
+     * @param interner The interner to use, or null to disable interning.
+     */
+    public void setInterner(Interner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Returns the interner used while loading.
+     *
+     * @return The interner, or null if interning is disabled.
+     */
+    public Interner getInterner() {
+        return interner;
+    }
+
+    /**
+     * Sets the listener which receives load and write metrics.
+     *
+     * The listener is reported to by every load and write method. Counters are kept locally and reported once per
+     * load, write or parallel chunk, so the listener is called a handful of times regardless of the size of the input.
+     * Every login in a snapshot counts as a line. Without a listener no metrics are collected.
+     *
+     * @param listener The listener to report to, or null to disable metrics.
+     * @see Metrics
+     */
+    public void setListener(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the listener which receives load and write metrics.
+     *
+     * @return The listener, or null if metrics are disabled.
+     */
+    public MetricsListener getListener() {
+        return listener;
     }
 
     /**
@@ -87,18 +164,176 @@ public class LALParser implements List<Login> {
      *
      * @param file The file to parse.
      * @throws RuntimeException if the file could not be found.
+     * @see #load(Path)
      */
     public void load(File file) {
         Validate.notNull(file, "File may not be null");
-        final FileInputStream stream;
+
+        load(file.toPath());
+    }
+
+    /**
+     * Attempts to parse a file and stores the parsed body in this parser.
+     *
+     * Gzip compressed files are detected by their magic number and decompressed on background threads while the
+     * decompressed text is parsed. The members of multi-member files are decompressed in parallel.
+     *
+     * @param path The file to parse.
+     * @throws RuntimeException if the file could not be opened.
+     */
+    public void load(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        load(open(path));
+    }
+
+    /**
+     * Attempts to parse a file and stores the parsed body in this parser, recording rejected lines.
+     *
+     * @param file The file to parse.
+     * @param diagnostics The diagnostics to record rejected lines in.
+     * @throws RuntimeException if the file could not be found.
+     * @see #load(Reader, Diagnostics)
+     */
+    public void load(File file, Diagnostics diagnostics) {
+        Validate.notNull(file, "File may not be null");
+        Validate.notNull(diagnostics, "Diagnostics may not be null");
+
+        load(new InputStreamReader(count(open(file.toPath())), StandardCharsets.UTF_8), diagnostics);
+    }
+
+    /**
+     * Attempts to parse a file in parallel and stores the parsed body in this parser.
+     *
+     * The file is memory-mapped and split into chunks on line boundaries, which are parsed using all available
+     * processors. The result is identical to {@link #load(File)}. Gzip compressed files cannot be split and are loaded
+     * by {@link #load(Path)} instead.
+     *
+     * @param file The file to parse.
+     * @throws RuntimeException if the file could not be read from.
+     * @see #loadParallel(File, int, int)
+     */
+    public void loadParallel(File file) {
+        loadParallel(file, Runtime.getRuntime().availableProcessors(), ChunkedLoader.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Attempts to parse a file in parallel and stores the parsed body in this parser.
+     *
+     * @param file The file to parse.
+     * @param parallelism The amount of threads to parse with.
+     * @param chunkSize The approximate size of each chunk in bytes.
+     * @throws RuntimeException if the file could not be read from.
+     */
+    public void loadParallel(File file, int parallelism, int chunkSize) {
+        Validate.notNull(file, "File may not be null");
 
         try {
-            stream = new FileInputStream(file);
-        } catch (FileNotFoundException ex) {
+            if (GzipInput.isGzip(file.toPath())) {
+                load(file.toPath());
+                return;
+            }
+        } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
 
-        load(stream);
+        final ChunkedLoader loader = new ChunkedLoader(parallelism, chunkSize, interner, listener);
+
+        clear();
+
+        try {
+            loader.load(file, logins);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            reindex();
+        }
+    }
+
+    /**
+     * Attempts to parse a memory-mapped file and stores the parsed body in this parser.
+     *
+     * The file is parsed without decoding it. The stored logins decode their fields on first access and keep the
+     * mapping alive as long as they are referenced.
+     *
+     * @param file The file to parse.
+     * @throws RuntimeException if the file could not be read from.
+     * @see #load(ByteBuffer)
+     */
+    public void loadMapped(File file) {
+        Validate.notNull(file, "File may not be null");
+
+        clear();
+
+        final Meter meter = listener == null ? null : new Meter(listener);
+        try {
+            ByteParser.parse(file, logins, meter);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            reindex();
+            if (meter != null) {
+                meter.reportLoad();
+            }
+        }
+    }
+
+    /**
+     * Loads a snapshot written by {@link #saveSnapshot(Path)} and stores the logins in this parser.
+     *
+     * The snapshot is memory-mapped and its checksums are verified. No text is parsed.
+     *
+     * @param path The snapshot to load.
+     * @throws RuntimeException if the snapshot could not be read from, or is corrupt.
+     */
+    public void loadSnapshot(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        clear();
+
+        final Meter meter = listener == null ? null : new Meter(listener);
+        try {
+            Snapshot.read(path, logins, meter);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            reindex();
+            if (meter != null) {
+                meter.reportLoad();
+            }
+        }
+    }
+
+    /**
+     * Attempts to parse UTF-8 encoded bytes and stores the parsed body in this parser.
+     *
+     * The bytes between the buffer's position and limit are parsed without decoding them. The stored logins only
+     * hold field offsets into the buffer and decode a field the first time its getter is called, so the buffer
+     * should not be modified afterwards.
+     *
+     * @param buffer The buffer to parse.
+     * @throws RuntimeException if the buffer contains an empty line.
+     */
+    public void load(ByteBuffer buffer) {
+        Validate.notNull(buffer, "Buffer may not be null");
+
+        clear();
+
+        final Meter meter = listener == null ? null : new Meter(listener);
+        if (meter != null) {
+            meter.bytes = buffer.remaining();
+        }
+
+        try {
+            ByteParser.parse(buffer, logins, meter);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            reindex();
+            if (meter != null) {
+                meter.reportLoad();
+            }
+        }
     }
 
     /**
@@ -109,7 +344,7 @@ public class LALParser implements List<Login> {
     public void load(InputStream stream) {
         Validate.notNull(stream, "Stream may not be null");
 
-        load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        load(new InputStreamReader(count(stream), StandardCharsets.UTF_8));
     }
 
     /**
@@ -125,6 +360,20 @@ public class LALParser implements List<Login> {
         load(new StringReader(string));
     }
 
+    /**
+     * Attempts to parse a string and stores the parsed body in this parser, recording rejected lines.
+     *
+     * @param string The string to parse.
+     * @param diagnostics The diagnostics to record rejected lines in.
+     * @see #load(Reader, Diagnostics)
+     */
+    public void load(String string, Diagnostics diagnostics) {
+        Validate.notNull(string, "String may not be null");
+        Validate.notNull(diagnostics, "Diagnostics may not be null");
+
+        load(new StringReader(string), diagnostics);
+    }
+
     /**
      * Attempts to parse a Reader and stores the parsed body in this parser.
      *
@@ -132,21 +381,59 @@ public class LALParser implements List<Login> {
      * @throws RuntimeException if the reader could not be read from.
      */
     public void load(Reader reader) {
+        load(reader, null);
+    }
+
+    /**
+     * Attempts to parse a Reader and stores the parsed body in this parser, recording rejected lines.
+     *
+     * Unlike {@link #load(Reader)}, empty lines do not abort loading. Every line which is not stored is recorded with
+     * its line number, starting at 1, and the reason it was rejected. No exception is created for rejected lines.
+     *
+     * @param reader The reader to parse.
+     * @param diagnostics The diagnostics to record rejected lines in, or null to reject empty lines by throwing.
+     * @throws RuntimeException if the reader could not be read from.
+     */
+    public void load(Reader reader, Diagnostics diagnostics) {
         Validate.notNull(reader, "Reader may not be null");
 
-        logins.clear();
+        clear();
 
-        final BufferedReader input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        final Meter meter = listener == null ? null : new Meter(listener);
+        final BufferedReader input;
+        if (meter != null) {
+            input = new BufferedReader(meter.time(reader));
+        } else {
+            input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
 
         try {
             String line;
+            int number = 0;
 
             while ((line = input.readLine()) != null) {
+                number++;
+
+                line = line.trim();
+                if (diagnostics == null) {
+                    Validate.notEmpty(line, "Line may not be empty");
+                } else if (line.isEmpty()) {
+                    diagnostics.record(number, Diagnostics.EMPTY_LINE);
+                    if (meter != null) {
+                        meter.line(null);
+                    }
+                    continue;
+                }
 
-                final Login login = parse(line.trim());
+                final Login login = parse(line, 0, line.length(), interner);
+                if (meter != null) {
+                    meter.line(login);
+                }
 
                 if (login != null) {
-                    logins.add(login);
+                    add(login);
+                } else if (diagnostics != null) {
+                    diagnostics.record(number, Diagnostics.classify(line));
                 }
             }
         } catch (Exception ex) {
@@ -156,9 +443,235 @@ public class LALParser implements List<Login> {
                 input.close();
             } catch (Exception ex) {
             }
+
+            if (meter != null) {
+                meter.reportLoad();
+            }
         }
     }
 
+    /**
+     * Loads a file into a new parser asynchronously.
+     *
+     * The file is read, parsed and appended in separate pipelined stages on the executor. Batches of lines are parsed
+     * in parallel, so the load uses as many threads as the executor provides, and the calling thread is never
+     * blocked. The result is identical to {@link #load(Path)}. Gzip compressed files are decompressed.
+     *
+     * <b>Note</b>: The future completes exceptionally if the file could not be read from or contains an empty line.
+     * Cancelling the future stops the load.
+     *
+     * @param path The file to load.
+     * @param executor The executor to run the stages on.
+     * @return The future of the loaded parser.
+     */
+    public static CompletableFuture<LALParser> loadAsync(Path path, Executor executor) {
+        Validate.notNull(path, "Path may not be null");
+        Validate.notNull(executor, "Executor may not be null");
+
+        return AsyncLoader.load(path, executor);
+    }
+
+    /**
+     * Loads all files in a directory tree matching a glob, {@link BulkLoad#DEFAULT_CONCURRENCY} at a time.
+     *
+     * @param directory The directory to search.
+     * @param glob The glob, such as "**.lal", matched against both the path relative to the directory and the file
+     * name.
+     * @return The merged logins and the result of every file.
+     * @throws RuntimeException if the directory could not be searched.
+     * @see #loadAll(Path, String, int)
+     */
+    public static BulkLoad loadAll(Path directory, String glob) {
+        return loadAll(directory, glob, BulkLoad.DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Loads all files in a directory tree matching a glob.
+     *
+     * The files are loaded concurrently, on virtual threads if the runtime supports them. A file which fails to load
+     * is reported in the result and does not abort the other files. Gzip compressed files are decompressed.
+     *
+     * @param directory The directory to search.
+     * @param glob The glob, matched against both the path relative to the directory and the file name.
+     * @param concurrency The maximum amount of files loaded at the same time.
+     * @return The merged logins and the result of every file.
+     * @throws RuntimeException if the directory could not be searched.
+     */
+    public static BulkLoad loadAll(Path directory, String glob, int concurrency) {
+        Validate.notNull(directory, "Directory may not be null");
+        Validate.notNull(glob, "Glob may not be null");
+        Validate.not(concurrency < 1, "Concurrency must be positive");
+
+        return BulkLoad.load(directory, glob, concurrency);
+    }
+
+    /**
+     * Returns a lazy iterator over the logins in a Reader.
+     *
+     * Unlike {@link #load(Reader)}, lines are only read and parsed as the iterator is advanced.
+     *
+     * @param reader The reader to parse.
+     * @return The iterator.
+     */
+    public static LoginIterator iterate(Reader reader) {
+        return new LoginIterator(reader);
+    }
+
+    /**
+     * Returns a lazy stream of the logins in a Reader.
+     *
+     * Lines are only read and parsed as the stream is consumed. Closing the stream closes the reader.
+     *
+     * @param reader The reader to parse.
+     * @return The stream.
+     */
+    public static Stream<Login> stream(Reader reader) {
+        final LoginIterator iterator = iterate(reader);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Returns a lazy stream of the logins in a file.
+     *
+     * The stream should be closed to release the file.
+     *
+     * @param path The file to parse.
+     * @return The stream.
+     * @throws RuntimeException if the file could not be opened.
+     */
+    public static Stream<Login> stream(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        try {
+            return stream(new InputStreamReader(GzipInput.open(path), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns a follower which appends the logins appended to a file to this parser.
+     *
+     * Unlike {@link #load(File)}, the current contents of this parser are kept. Call {@link Follower#poll()} to
+     * parse the lines appended since the previous poll.
+     *
+     * @param path The file to follow.
+     * @return The follower.
+     */
+    public Follower follow(Path path) {
+        return new Follower(path, this::add);
+    }
+
+    /**
+     * Enables a hash index on a field of the logins in this parser.
+     *
+     * The index is built from the current contents and kept up to date by all List operations and by every load,
+     * which indexes logins as they are parsed.
+     *
+     * <b>Note</b>: Indexed fields of a login should not be modified while the login is stored in this parser.
+     *
+     * @param field The field to index.
+     * @see #find(LoginField, String)
+     */
+    public void index(LoginField field) {
+        Validate.notNull(field, "Field may not be null");
+
+        if (indexes.containsKey(field)) {
+            return;
+        }
+
+        final LoginIndex index = new LoginIndex(field);
+        for (Login login : logins) {
+            index.add(login);
+        }
+        indexes.put(field, index);
+    }
+
+    /**
+     * Returns true if a field is indexed.
+     *
+     * @param field The field to check.
+     * @return True if the field is indexed.
+     */
+    public boolean isIndexed(LoginField field) {
+        return indexes.containsKey(field);
+    }
+
+    /**
+     * Finds all logins with a specific field value.
+     *
+     * Indexed fields are looked up in constant time, other fields are scanned.
+     *
+     * @param field The field to match.
+     * @param value The value to find.
+     * @return An unmodifiable list of the matching logins.
+     * @see #index(LoginField)
+     */
+    public List<Login> find(LoginField field, String value) {
+        Validate.notNull(field, "Field may not be null");
+
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        final LoginIndex index = indexes.get(field);
+        if (index != null) {
+            return index.find(value);
+        }
+
+        final List<Login> found = new ArrayList<>();
+        for (Login login : logins) {
+            if (login != null && value.equals(field.get(login))) {
+                found.add(login);
+            }
+        }
+        return Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Finds all logins with a specific login detail.
+     *
+     * @param login The login detail to find.
+     * @return An unmodifiable list of the matching logins.
+     * @see #find(LoginField, String)
+     */
+    public List<Login> findByLogin(String login) {
+        return find(LoginField.LOGIN, login);
+    }
+
+    /**
+     * Finds all logins with a specific email detail.
+     *
+     * @param email The email detail to find.
+     * @return An unmodifiable list of the matching logins.
+     * @see #find(LoginField, String)
+     */
+    public List<Login> findByEmail(String email) {
+        return find(LoginField.EMAIL, email);
+    }
+
+    /**
+     * Removes all logins which are strictly equal to an earlier login in this parser.
+     *
+     * The first occurrence of every login is kept and the order of the remaining logins is preserved. The logins are
+     * compacted in place, and only a fingerprint per unique login is kept beside them, see
+     * {@link Dedupe#fingerprint(Login)}.
+     *
+     * @return The amount of removed logins.
+     * @see Dedupe
+     */
+    public int dedupe() {
+        final int removed = Dedupe.removeDuplicates(logins);
+        if (removed == 0) {
+            return 0;
+        }
+
+        reindex();
+        return removed;
+    }
+
     /**
      * Writes the contents of this parser to an OutputStream.
      *
@@ -167,7 +680,33 @@ public class LALParser implements List<Login> {
     public void write(OutputStream stream) {
         Validate.notNull(stream, "Stream may not be null");
 
-        write(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        if (isEmpty()) {
+            return;
+        }
+
+        write(Channels.newChannel(stream));
+    }
+
+    /**
+     * Writes the contents of this parser to a file.
+     *
+     * The file is created or truncated, and written in large blocks through a reusable buffer. Files whose
+     * name ends with ".gz" are gzip compressed, in members which {@link #load(Path)} decompresses in parallel.
+     *
+     * @param path The path of the file to write to.
+     */
+    public void write(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        try {
+            if (GzipInput.isGzipName(path)) {
+                write(Channels.newChannel(GzipInput.newOutputStream(path)));
+                return;
+            }
+            write(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
     /**
@@ -182,6 +721,8 @@ public class LALParser implements List<Login> {
             return;
         }
 
+        final Meter meter = listener == null ? null : new Meter(listener);
+
         try {
             for (Login login : logins) {
                 writer.write(compile(login));
@@ -195,10 +736,60 @@ public class LALParser implements List<Login> {
                 writer.close();
             } catch (Exception ex) {
             }
+
+            if (meter != null) {
+                meter.logins = logins.size();
+                meter.reportWrite();
+            }
         }
 
     }
 
+    /**
+     * Writes the contents of this parser to a binary snapshot file.
+     *
+     * Snapshots store the parsed fields, so {@link #loadSnapshot(Path)} restores them without parsing any text.
+     *
+     * @param path The path of the file to write to.
+     * @throws RuntimeException if the file could not be written to.
+     */
+    public void saveSnapshot(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        try {
+            Snapshot.write(path, logins);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void write(WritableByteChannel channel) {
+        final Meter meter = listener == null ? null : new Meter(listener);
+        if (meter != null) {
+            channel = Meter.count(channel, listener);
+        }
+
+        final BulkWriter writer = new BulkWriter(channel);
+        try {
+            for (Login login : logins) {
+                writer.write(login);
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            try {
+                writer.flush();
+                channel.close();
+            } catch (Exception ex) {
+            }
+
+            if (meter != null) {
+                meter.logins = logins.size();
+                meter.reportWrite();
+            }
+        }
+    }
+
     @Override
     public int size() {
         return logins.size();
@@ -226,12 +817,27 @@ public class LALParser implements List<Login> {
 
     @Override
     public boolean add(Login e) {
-        return logins.add(e);
+        if (!logins.add(e)) {
+            return false;
+        }
+
+        indexAdd(e);
+        return true;
     }
 
     @Override
     public boolean remove(Object o) {
-        return logins.remove(o);
+        if (indexes.isEmpty()) {
+            return logins.remove(o);
+        }
+
+        final int i = logins.indexOf(o);
+        if (i == -1) {
+            return false;
+        }
+
+        remove(i);
+        return true;
     }
 
     @Override
@@ -241,32 +847,58 @@ public class LALParser implements List<Login> {
 
     @Override
     public boolean addAll(Collection<? extends Login> clctn) {
-        return logins.addAll(clctn);
+        if (!logins.addAll(clctn)) {
+            return false;
+        }
+
+        for (Login login : clctn) {
+            indexAdd(login);
+        }
+        return true;
     }
 
     @Override
     public boolean removeAll(Collection<?> clctn) {
-        return logins.removeAll(clctn);
+        final boolean changed = logins.removeAll(clctn);
+        if (changed) {
+            reindex();
+        }
+        return changed;
     }
 
     @Override
     public boolean retainAll(Collection<?> clctn) {
-        return logins.removeAll(clctn);
+        final boolean changed = logins.retainAll(clctn);
+        if (changed) {
+            reindex();
+        }
+        return changed;
     }
 
     @Override
     public Iterator<Login> iterator() {
-        return logins.iterator();
+        return indexes.isEmpty() ? logins.iterator() : listIterator();
     }
 
     @Override
     public void clear() {
         logins.clear();
+
+        for (LoginIndex index : indexes.values()) {
+            index.clear();
+        }
     }
 
     @Override
     public boolean addAll(int i, Collection<? extends Login> clctn) {
-        return logins.addAll(clctn);
+        if (!logins.addAll(i, clctn)) {
+            return false;
+        }
+
+        for (Login login : clctn) {
+            indexAdd(login);
+        }
+        return true;
     }
 
     @Override
@@ -276,17 +908,23 @@ public class LALParser implements List<Login> {
 
     @Override
     public Login set(int i, Login e) {
-        return logins.set(1, e);
+        final Login old = logins.set(i, e);
+        indexRemove(old);
+        indexAdd(e);
+        return old;
     }
 
     @Override
     public void add(int i, Login e) {
         logins.add(i, e);
+        indexAdd(e);
     }
 
     @Override
     public Login remove(int i) {
-        return logins.remove(i);
+        final Login old = logins.remove(i);
+        indexRemove(old);
+        return old;
     }
 
     @Override
@@ -301,17 +939,17 @@ public class LALParser implements List<Login> {
 
     @Override
     public ListIterator<Login> listIterator() {
-        return logins.listIterator();
+        return listIterator(0);
     }
 
     @Override
     public ListIterator<Login> listIterator(int i) {
-        return logins.listIterator(i);
+        return indexes.isEmpty() ? logins.listIterator(i) : new IndexedListIterator(logins.listIterator(i));
     }
 
     @Override
     public List<Login> subList(int i, int i1) {
-        return logins.subList(i, i1);
+        return indexes.isEmpty() ? logins.subList(i, i1) : new IndexedSubList(i, i1);
     }
 
     /**
@@ -323,35 +961,140 @@ public class LALParser implements List<Login> {
     public static Login parse(String line) {
         Validate.notEmpty(line, "Line may not be empty");
 
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses a region of a String to a Login.
+     *
+     * @param line The String containing the line.
+     * @param start The start of the line, inclusive.
+     * @param end The end of the line, exclusive.
+     * @return The parsed login, or null if the line is not in the correct format.
+     */
+    static Login parse(String line, int start, int end) {
+        return parse(line, start, end, null);
+    }
+
+    /**
+     * Parses a region of a String to a Login, interning repeated field values.
+     *
+     * @param line The String containing the line.
+     * @param start The start of the line, inclusive.
+     * @param end The end of the line, exclusive.
+     * @param interner The interner for the password, display name, email and old password, or null.
+     * @return The parsed login, or null if the line is not in the correct format.
+     */
+    static Login parse(String line, int start, int end, Interner interner) {
         // Start hack
         // TODO(JeromSar) Explain hack
-        final boolean invalid = line.startsWith(".");
+        final boolean invalid = start < end && line.charAt(start) == '.';
         if (invalid) {
-            line = line.substring(1);
+            start++;
         }
         // End hack
 
-        final Matcher matcher = LOGIN_PATTERN.matcher(line.trim());
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
 
-        if (!matcher.find()) {
+        final int[] bounds = LineScanner.newBounds();
+
+        if (!LineScanner.scan(line, start, end, bounds)) {
             return null;
         }
 
-        final String comment = matcher.group(1);
+        final String comment = LineScanner.field(line, bounds, LineScanner.COMMENT);
 
-        if (comment != null && !comment.isEmpty()) {
+        if (comment != null) {
             return new Login(comment);
         }
 
         return new Login(
-                matcher.group(2), // Login
-                matcher.group(3), // Password
-                matcher.group(4), // Display name
-                matcher.group(5), // Email
-                matcher.group(6), // Old password
+                LineScanner.field(line, bounds, LineScanner.LOGIN),
+                LineScanner.field(line, bounds, LineScanner.PASSWORD, interner),
+                LineScanner.field(line, bounds, LineScanner.DISPLAY_NAME, interner),
+                LineScanner.field(line, bounds, LineScanner.EMAIL, interner),
+                LineScanner.field(line, bounds, LineScanner.OLD_PASSWORD, interner),
                 invalid);
     }
 
+    /**
+     * Checks if a Login can be compiled, without throwing.
+     *
+     * @param login The login to check.
+     * @return {@link Diagnostics#NONE} if the login can be compiled, otherwise the reason code.
+     * @see #compile(Login)
+     */
+    public static int check(Login login) {
+        if (login == null) {
+            return Diagnostics.NULL_LOGIN;
+        }
+        if (login.isComment()) {
+            return Diagnostics.NONE;
+        }
+        if (login.getLogin() == null || login.getLogin().isEmpty()) {
+            return Diagnostics.MISSING_LOGIN;
+        }
+        if (login.getPassword() == null || login.getPassword().isEmpty()) {
+            return Diagnostics.MISSING_PASSWORD;
+        }
+        return Diagnostics.NONE;
+    }
+
+    /**
+     * Checks if all logins in this parser can be compiled, without throwing.
+     *
+     * Every login which cannot be compiled is recorded with the line number it would be written at, starting at 1.
+     *
+     * @param diagnostics The diagnostics to record the logins in.
+     * @return The amount of logins which cannot be compiled.
+     * @see #check(Login)
+     */
+    public int validate(Diagnostics diagnostics) {
+        Validate.notNull(diagnostics, "Diagnostics may not be null");
+
+        int rejected = 0;
+        for (int i = 0; i < logins.size(); i++) {
+            final int reason = check(logins.get(i));
+
+            if (reason != Diagnostics.NONE) {
+                diagnostics.record(i + 1, reason);
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Builds a sorted index over the login prefixes and email domains in this parser, in parallel.
+     *
+     * <b>Note</b>: The index is a snapshot and does not reflect later modifications to this parser.
+     *
+     * @return The index.
+     * @see PrefixIndex
+     */
+    public PrefixIndex prefixIndex() {
+        return PrefixIndex.build(logins);
+    }
+
+    /**
+     * Builds a Bloom filter over the logins in this parser.
+     *
+     * @param fpp The desired false positive probability.
+     * @param keys The fields which make up the key, such as {@link LoginField#LOGIN} and {@link LoginField#PASSWORD}.
+     * @return The filter.
+     * @see BloomFilter#build(Path, double, LoginField...)
+     */
+    public BloomFilter toFilter(double fpp, LoginField... keys) {
+        final BloomFilter filter = new BloomFilter(logins.size(), fpp, keys);
+        filter.addAll(logins.iterator());
+        return filter;
+    }
+
     /**
      * Compiles a Login to a String.
      *
@@ -392,4 +1135,152 @@ public class LALParser implements List<Login> {
         return sb.toString();
     }
 
+    private InputStream count(InputStream stream) {
+        return listener == null ? stream : Meter.count(stream, listener);
+    }
+
+    private static InputStream open(Path path) {
+        try {
+            return GzipInput.open(path);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void indexAdd(Login login) {
+        for (LoginIndex index : indexes.values()) {
+            index.add(login);
+        }
+    }
+
+    private void indexRemove(Login login) {
+        for (LoginIndex index : indexes.values()) {
+            index.remove(login);
+        }
+    }
+
+    private void reindex() {
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        for (LoginIndex index : indexes.values()) {
+            index.clear();
+        }
+        for (Login login : logins) {
+            indexAdd(login);
+        }
+    }
+
+    private class IndexedListIterator implements ListIterator<Login> {
+
+        private final ListIterator<Login> delegate;
+        private Login last = null;
+
+        IndexedListIterator(ListIterator<Login> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Login next() {
+            return last = delegate.next();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return delegate.hasPrevious();
+        }
+
+        @Override
+        public Login previous() {
+            return last = delegate.previous();
+        }
+
+        @Override
+        public int nextIndex() {
+            return delegate.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return delegate.previousIndex();
+        }
+
+        @Override
+        public void remove() {
+            delegate.remove();
+            indexRemove(last);
+        }
+
+        @Override
+        public void set(Login e) {
+            delegate.set(e);
+            indexRemove(last);
+            indexAdd(e);
+            last = e;
+        }
+
+        @Override
+        public void add(Login e) {
+            delegate.add(e);
+            indexAdd(e);
+        }
+    }
+
+    private class IndexedSubList extends AbstractList<Login> {
+
+        private final int offset;
+        private int size;
+
+        IndexedSubList(int from, int to) {
+            if (from < 0 || to > LALParser.this.size() || from > to) {
+                throw new IndexOutOfBoundsException("From: " + from + ", To: " + to);
+            }
+            this.offset = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public Login get(int i) {
+            checkIndex(i, size);
+            return LALParser.this.get(offset + i);
+        }
+
+        @Override
+        public Login set(int i, Login e) {
+            checkIndex(i, size);
+            return LALParser.this.set(offset + i, e);
+        }
+
+        @Override
+        public void add(int i, Login e) {
+            checkIndex(i, size + 1);
+            LALParser.this.add(offset + i, e);
+            size++;
+        }
+
+        @Override
+        public Login remove(int i) {
+            checkIndex(i, size);
+            size--;
+            return LALParser.this.remove(offset + i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private void checkIndex(int i, int limit) {
+            if (i < 0 || i >= limit) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents a single-pass scanner for LAL lines.
+ *
+ * The scanner accepts exactly the lines matched by {@link LALParser#LOGIN_PATTERN} and reports the same groups, but
+ * runs in linear time without backtracking and without allocating.
+ *
+ * @since 1.1
+ */
+final class LineScanner {
+
+    public static final int COMMENT = 0;
+    public static final int LOGIN = 1;
+    public static final int PASSWORD = 2;
+    public static final int DISPLAY_NAME = 3;
+    public static final int EMAIL = 4;
+    public static final int OLD_PASSWORD = 5;
+    public static final int FIELDS = 6;
+
+    private static final int FAIL = 0;
+    private static final int PASS = 1;
+    private static final int SEPARATOR = 2;
+    private static final int OPTIONAL = 3;
+
+    private static final char[] OPEN = {'(', '{', '['};
+    private static final char[] CLOSE = {')', '}', ']'};
+
+    private static final boolean[] USER_CHARS = new boolean[128];
+    private static final boolean[] COMPLEX_CHARS = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            USER_CHARS[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            USER_CHARS[c] = true;
+            USER_CHARS[Character.toUpperCase(c)] = true;
+        }
+        USER_CHARS['_'] = true;
+
+        System.arraycopy(USER_CHARS, 0, COMPLEX_CHARS, 0, USER_CHARS.length);
+
+        for (char c : "@.-".toCharArray()) {
+            USER_CHARS[c] = true;
+        }
+        for (char c : "@!#$%^&*/(){}[]<>,.?|-".toCharArray()) {
+            COMPLEX_CHARS[c] = true;
+        }
+    }
+
+    private LineScanner() {
+    }
+
+    /**
+     * Creates a new bounds array for use with {@link #scan(CharSequence, int, int, int[])}.
+     *
+     * @return The bounds array.
+     */
+    public static int[] newBounds() {
+        return new int[FIELDS * 2];
+    }
+
+    /**
+     * Scans a trimmed region of a line.
+     *
+     * On success, the start and end offset of every field is stored in the bounds array at {@code field * 2} and
+     * {@code field * 2 + 1}. Absent fields are stored as -1.
+     *
+     * @param line The line to scan.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive. The region may not end with whitespace.
+     * @param bounds The bounds array to fill.
+     * @return True if the region matches the LAL format.
+     */
+    public static boolean scan(CharSequence line, int from, int to, int[] bounds) {
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = -1;
+        }
+
+        // Comments: "//" followed by anything up to the first line terminator
+        if (to - from >= 2 && line.charAt(from) == '/' && line.charAt(from + 1) == '/') {
+            int end = from + 2;
+            while (end < to && !isLineTerminator(line.charAt(end))) {
+                end++;
+            }
+            bounds[COMMENT * 2] = from;
+            bounds[COMMENT * 2 + 1] = end;
+            return true;
+        }
+
+        // The pattern's '$' also matches in front of a final line terminator
+        final int end = to > from && isLineTerminator(line.charAt(to - 1)) ? to - 1 : to;
+
+        // Neither the password nor any optional field may contain a ':', so only the last
+        // colon can start a match. Every colon therefore restarts the state machine.
+        int state = FAIL;
+        int runStart = from; // Start of the current run of login characters
+        int field = PASSWORD;
+        int fieldStart = -1;
+
+        for (int i = from; i < end; i++) {
+            final char c = line.charAt(i);
+
+            if (c == ':') {
+                for (int j = PASSWORD * 2; j < bounds.length; j++) {
+                    bounds[j] = -1;
+                }
+                if (i > runStart) {
+                    bounds[LOGIN * 2] = runStart;
+                    bounds[LOGIN * 2 + 1] = i;
+                    state = PASS;
+                    field = PASSWORD;
+                    fieldStart = i + 1;
+                } else {
+                    state = FAIL;
+                }
+                runStart = i + 1;
+                continue;
+            }
+
+            if (!isUserChar(c)) {
+                runStart = i + 1;
+            }
+
+            switch (state) {
+                case PASS:
+                case OPTIONAL:
+                    if (isComplexChar(c)) {
+                        break;
+                    }
+                    if (c == ' ' && closes(line, field, fieldStart, i)) {
+                        bounds[field * 2] = fieldStart;
+                        bounds[field * 2 + 1] = field == PASSWORD ? i : i - 1;
+                        state = SEPARATOR;
+                        break;
+                    }
+                    state = FAIL;
+                    break;
+                case SEPARATOR:
+                    state = FAIL;
+                    for (int next = field + 1; next <= OLD_PASSWORD; next++) {
+                        if (c == OPEN[next - DISPLAY_NAME]) {
+                            field = next;
+                            fieldStart = i + 1;
+                            state = OPTIONAL;
+                            break;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if ((state != PASS && state != OPTIONAL) || !closes(line, field, fieldStart, end)) {
+            return false;
+        }
+
+        bounds[field * 2] = fieldStart;
+        bounds[field * 2 + 1] = field == PASSWORD ? end : end - 1;
+        return true;
+    }
+
+    /**
+     * Scans a trimmed region of UTF-8 encoded bytes.
+     *
+     * This method behaves exactly like {@link #scan(CharSequence, int, int, int[])} on the decoded region, but the
+     * offsets stored in the bounds array are byte offsets. The buffer's position and limit are not used.
+     *
+     * @param line The buffer containing the line.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive. The region may not end with whitespace.
+     * @param bounds The bounds array to fill.
+     * @return True if the region matches the LAL format.
+     */
+    public static boolean scan(ByteBuffer line, int from, int to, int[] bounds) {
+        return scan(line, from, to, bounds, Swar.ENABLED);
+    }
+
+    /**
+     * Scans a trimmed region of UTF-8 encoded bytes.
+     *
+     * With words, comments are searched for line terminators eight bytes at a time. The result is identical either
+     * way.
+     *
+     * @param line The buffer containing the line.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive. The region may not end with whitespace.
+     * @param bounds The bounds array to fill.
+     * @param words If comments should be scanned eight bytes at a time.
+     * @return True if the region matches the LAL format.
+     * @see Swar
+     */
+    static boolean scan(ByteBuffer line, int from, int to, int[] bounds, boolean words) {
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = -1;
+        }
+
+        if (to - from >= 2 && line.get(from) == '/' && line.get(from + 1) == '/') {
+            int end = Swar.indexOfTerminatorCandidate(line, from + 2, to, words);
+            while (end < to && lineTerminatorLength(line, end, to) == 0) {
+                end = Swar.indexOfTerminatorCandidate(line, end + 1, to, words);
+            }
+            bounds[COMMENT * 2] = from;
+            bounds[COMMENT * 2 + 1] = end;
+            return true;
+        }
+
+        int end = to;
+        for (int length = 1; length <= 3 && length <= to - from; length++) {
+            if (lineTerminatorLength(line, to - length, to) == length) {
+                end = to - length;
+                break;
+            }
+        }
+
+        int state = FAIL;
+        int runStart = from;
+        int field = PASSWORD;
+        int fieldStart = -1;
+
+        for (int i = from; i < end; i++) {
+            final int c = line.get(i) & 0xFF;
+
+            if (c == ':') {
+                for (int j = PASSWORD * 2; j < bounds.length; j++) {
+                    bounds[j] = -1;
+                }
+                if (i > runStart) {
+                    bounds[LOGIN * 2] = runStart;
+                    bounds[LOGIN * 2 + 1] = i;
+                    state = PASS;
+                    field = PASSWORD;
+                    fieldStart = i + 1;
+                } else {
+                    state = FAIL;
+                }
+                runStart = i + 1;
+                continue;
+            }
+
+            if (!isUserChar(c)) {
+                runStart = i + 1;
+            }
+
+            switch (state) {
+                case PASS:
+                case OPTIONAL:
+                    if (isComplexChar(c)) {
+                        break;
+                    }
+                    if (c == ' ' && closes(line, field, fieldStart, i)) {
+                        bounds[field * 2] = fieldStart;
+                        bounds[field * 2 + 1] = field == PASSWORD ? i : i - 1;
+                        state = SEPARATOR;
+                        break;
+                    }
+                    state = FAIL;
+                    break;
+                case SEPARATOR:
+                    state = FAIL;
+                    for (int next = field + 1; next <= OLD_PASSWORD; next++) {
+                        if (c == OPEN[next - DISPLAY_NAME]) {
+                            field = next;
+                            fieldStart = i + 1;
+                            state = OPTIONAL;
+                            break;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if ((state != PASS && state != OPTIONAL) || !closes(line, field, fieldStart, end)) {
+            return false;
+        }
+
+        bounds[field * 2] = fieldStart;
+        bounds[field * 2 + 1] = field == PASSWORD ? end : end - 1;
+        return true;
+    }
+
+    /**
+     * Returns a field from a scanned line.
+     *
+     * @param line The scanned line.
+     * @param bounds The bounds filled by {@link #scan(CharSequence, int, int, int[])}.
+     * @param field The field to return.
+     * @return The field, or null if the field is absent.
+     */
+    public static String field(String line, int[] bounds, int field) {
+        final int start = bounds[field * 2];
+        return start == -1 ? null : line.substring(start, bounds[field * 2 + 1]);
+    }
+
+    public static String field(String line, int[] bounds, int field, Interner interner) {
+        final int start = bounds[field * 2];
+        if (start == -1) {
+            return null;
+        }
+        return interner == null ? line.substring(start, bounds[field * 2 + 1]) : interner.intern(line, start, bounds[field * 2 + 1]);
+    }
+
+    public static boolean isUserChar(int c) {
+        return c < 128 && USER_CHARS[c];
+    }
+
+    public static boolean isComplexChar(int c) {
+        return c < 128 && COMPLEX_CHARS[c];
+    }
+
+    public static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Returns the length of the UTF-8 encoded line terminator at an offset.
+     *
+     * @param line The buffer containing the line.
+     * @param index The offset to check.
+     * @param to The end of the region, exclusive.
+     * @return The length of the line terminator in bytes, or 0 if there is none.
+     */
+    public static int lineTerminatorLength(ByteBuffer line, int index, int to) {
+        final byte b = line.get(index);
+
+        if (b == '\n' || b == '\r') {
+            return 1;
+        }
+
+        // U+0085 is encoded as C2 85, U+2028 and U+2029 as E2 80 A8 and E2 80 A9
+        if (b == (byte) 0xC2) {
+            return index + 1 < to && line.get(index + 1) == (byte) 0x85 ? 2 : 0;
+        }
+
+        if (b == (byte) 0xE2 && index + 2 < to && line.get(index + 1) == (byte) 0x80) {
+            final byte last = line.get(index + 2);
+            return last == (byte) 0xA8 || last == (byte) 0xA9 ? 3 : 0;
+        }
+
+        return 0;
+    }
+
+    private static boolean closes(ByteBuffer line, int field, int fieldStart, int end) {
+        if (field == PASSWORD) {
+            return end > fieldStart;
+        }
+        return end - 1 > fieldStart && line.get(end - 1) == CLOSE[field - DISPLAY_NAME];
+    }
+
+    private static boolean closes(CharSequence line, int field, int fieldStart, int end) {
+        if (field == PASSWORD) {
+            return end > fieldStart;
+        }
+        return end - 1 > fieldStart && line.charAt(end - 1) == CLOSE[field - DISPLAY_NAME];
+    }
+
+}
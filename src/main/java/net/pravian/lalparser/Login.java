@@ -304,15 +304,15 @@ public class Login {
         }
 
         if (isComment()) { // Still unstrict equals for comments
-            return login.isComment() && login.isComment() && comment.equals(login.getComment());
+            return login.isComment() && login.isComment() && getComment().equals(login.getComment());
         }
 
-        return Objects.equals(this.login, login.login)
-                && Objects.equals(this.password, login.password)
-                && Objects.equals(this.displayName, login.displayName)
-                && Objects.equals(this.email, login.email)
-                && Objects.equals(this.oldPassword, login.oldPassword)
-                && this.invalid == login.isInvalid();
+        return Objects.equals(getLogin(), login.getLogin())
+                && Objects.equals(getPassword(), login.getPassword())
+                && Objects.equals(getDisplayName(), login.getDisplayName())
+                && Objects.equals(getEmail(), login.getEmail())
+                && Objects.equals(getOldPassword(), login.getOldPassword())
+                && isInvalid() == login.isInvalid();
     }
 
     @Override
@@ -320,14 +320,14 @@ public class Login {
         int hash = 7;
 
         if (isComment()) {
-            hash = 11 * hash + Objects.hashCode(this.comment);
+            hash = 11 * hash + Objects.hashCode(getComment());
             return hash;
         }
 
         // Equality based on validness, login, password
-        hash = 11 * hash + Objects.hashCode(this.login);
-        hash = 11 * hash + Objects.hashCode(this.password);
-        hash = 11 * hash + (this.invalid ? 1 : 0);
+        hash = 11 * hash + Objects.hashCode(getLogin());
+        hash = 11 * hash + Objects.hashCode(getPassword());
+        hash = 11 * hash + (isInvalid() ? 1 : 0);
         return hash;
     }
 
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the binary encoding of a single login.
+ *
+ * A record starts with a flags byte. Bit 0 is set for invalid logins, bit {@code field + 1} is set for every field
+ * present, using the field numbers of {@link LineScanner}, and bit 7 is set if all fields are ASCII. Each present
+ * field follows in field order as a variable-length length and the UTF-8 bytes of the field.
+ *
+ * @since 1.1
+ */
+final class LoginCodec {
+
+    private static final int INVALID = 1;
+    private static final int ASCII = 0x80;
+
+    private LoginCodec() {
+    }
+
+    /**
+     * Writes a login.
+     *
+     * @param output The output to write to.
+     * @param login The login to write.
+     * @return The amount of bytes written.
+     * @throws IOException if the output could not be written to.
+     */
+    public static int write(DataOutput output, Login login) throws IOException {
+        final String[] fields = fields(login);
+        int flags = (login.isInvalid() ? INVALID : 0) | ASCII;
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            if (fields[field] != null) {
+                flags |= 2 << field;
+
+                if ((flags & ASCII) != 0 && !isAscii(fields[field])) {
+                    flags &= ~ASCII;
+                }
+            }
+        }
+
+        output.writeByte(flags);
+        int written = 1;
+
+        for (String field : fields) {
+            if (field != null) {
+                final byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                written += writeLength(output, bytes.length);
+                output.write(bytes);
+                written += bytes.length;
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Reads a login.
+     *
+     * @param input The input to read from.
+     * @return The login.
+     * @throws IOException if the input could not be read from.
+     */
+    public static Login read(DataInput input) throws IOException {
+        final int flags = input.readUnsignedByte();
+        final String[] fields = new String[LineScanner.FIELDS];
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            if (hasField(flags, field)) {
+                final byte[] bytes = new byte[readLength(input)];
+                input.readFully(bytes);
+                fields[field] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        return login(fields, flags);
+    }
+
+    /**
+     * Reads a login from the position of a buffer, advancing the position past it.
+     *
+     * @param buffer The buffer to read from.
+     * @param scratch A scratch array for the field bytes, which is replaced by a larger one when required.
+     * @return The login.
+     */
+    public static Login read(ByteBuffer buffer, byte[][] scratch) {
+        final int flags = buffer.get() & 0xFF;
+        final Charset charset = (flags & ASCII) != 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+        final String[] fields = new String[LineScanner.FIELDS];
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            if (hasField(flags, field)) {
+                final int length = readLength(buffer);
+                if (length > scratch[0].length) {
+                    scratch[0] = new byte[Math.max(length, scratch[0].length * 2)];
+                }
+
+                buffer.get(scratch[0], 0, length);
+                fields[field] = new String(scratch[0], 0, length, charset);
+            }
+        }
+
+        return login(fields, flags);
+    }
+
+    /**
+     * Returns true if a record with the given flags is invalid.
+     *
+     * @param flags The flags byte of the record.
+     * @return True if the record is invalid.
+     */
+    static boolean isInvalid(int flags) {
+        return (flags & INVALID) != 0;
+    }
+
+    /**
+     * Returns true if a record with the given flags contains a field.
+     *
+     * @param flags The flags byte of the record.
+     * @param field The field, as numbered by {@link LineScanner}.
+     * @return True if the field is present.
+     */
+    static boolean hasField(int flags, int field) {
+        return (flags & (2 << field)) != 0;
+    }
+
+    /**
+     * Reads a field length from the position of a buffer.
+     *
+     * @param buffer The buffer to read from.
+     * @return The length.
+     */
+    static int readLength(ByteBuffer buffer) {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = buffer.get() & 0xFF;
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IllegalStateException("Malformed field length");
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Login login(String[] fields, int flags) {
+        return new Login(
+                fields[LineScanner.LOGIN],
+                fields[LineScanner.PASSWORD],
+                fields[LineScanner.DISPLAY_NAME],
+                fields[LineScanner.EMAIL],
+                fields[LineScanner.OLD_PASSWORD],
+                isInvalid(flags),
+                fields[LineScanner.COMMENT]);
+    }
+
+    private static String[] fields(Login login) {
+        final String[] fields = new String[LineScanner.FIELDS];
+        fields[LineScanner.COMMENT] = login.getComment();
+        fields[LineScanner.LOGIN] = login.getLogin();
+        fields[LineScanner.PASSWORD] = login.getPassword();
+        fields[LineScanner.DISPLAY_NAME] = login.getDisplayName();
+        fields[LineScanner.EMAIL] = login.getEmail();
+        fields[LineScanner.OLD_PASSWORD] = login.getOldPassword();
+        return fields;
+    }
+
+    private static int writeLength(DataOutput output, int length) throws IOException {
+        int written = 1;
+        while ((length & ~0x7F) != 0) {
+            output.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+            written++;
+        }
+        output.writeByte(length);
+        return written;
+    }
+
+    private static int readLength(DataInput input) throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = input.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IOException("Malformed field length");
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+/**
+ * Represents a field of a Login.
+ *
+ * @since 1.1
+ */
+public enum LoginField {
+
+    /**
+     * The login detail.
+     */
+    LOGIN {
+        @Override
+        public String get(Login login) {
+            return login.getLogin();
+        }
+    },
+    /**
+     * The password detail.
+     */
+    PASSWORD {
+        @Override
+        public String get(Login login) {
+            return login.getPassword();
+        }
+    },
+    /**
+     * The display name detail.
+     */
+    DISPLAY_NAME {
+        @Override
+        public String get(Login login) {
+            return login.getDisplayName();
+        }
+    },
+    /**
+     * The email detail.
+     */
+    EMAIL {
+        @Override
+        public String get(Login login) {
+            return login.getEmail();
+        }
+    },
+    /**
+     * The old password detail.
+     */
+    OLD_PASSWORD {
+        @Override
+        public String get(Login login) {
+            return login.getOldPassword();
+        }
+    },
+    /**
+     * The comment.
+     */
+    COMMENT {
+        @Override
+        public String get(Login login) {
+            return login.getComment();
+        }
+    };
+
+    /**
+     * Returns the value of this field in a Login.
+     *
+     * @param login The login to read from.
+     * @return The value, or null if the field is absent.
+     */
+    public abstract String get(Login login);
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a hash index from the value of a field to the logins containing it.
+ *
+ * Keys which occur once map straight to their Login, so unique keys do not cost a list each.
+ *
+ * @since 1.1
+ */
+class LoginIndex {
+
+    private final LoginField field;
+    private final Map<String, Object> entries = new HashMap<>();
+
+    public LoginIndex(LoginField field) {
+        this.field = field;
+    }
+
+    public LoginField getField() {
+        return field;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void add(Login login) {
+        final String key = login == null ? null : field.get(login);
+        if (key == null) {
+            return;
+        }
+
+        final Object entry = entries.get(key);
+
+        if (entry == null) {
+            entries.put(key, login);
+        } else if (entry instanceof Login) {
+            final List<Login> bucket = new ArrayList<>(2);
+            bucket.add((Login) entry);
+            bucket.add(login);
+            entries.put(key, bucket);
+        } else {
+            ((List<Login>) entry).add(login);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void remove(Login login) {
+        final String key = login == null ? null : field.get(login);
+        if (key == null) {
+            return;
+        }
+
+        final Object entry = entries.get(key);
+
+        if (entry instanceof Login) {
+            if (entry == login || ((Login) entry).strictEquals(login)) {
+                entries.remove(key);
+            }
+            return;
+        }
+
+        if (entry == null) {
+            return;
+        }
+
+        final List<Login> bucket = (List<Login>) entry;
+        int index = -1;
+
+        // Prefer the same instance, but fall back to a copy such as those returned by LoginStore
+        for (int i = 0; i < bucket.size() && index == -1; i++) {
+            if (bucket.get(i) == login) {
+                index = i;
+            }
+        }
+        for (int i = 0; i < bucket.size() && index == -1; i++) {
+            if (bucket.get(i).strictEquals(login)) {
+                index = i;
+            }
+        }
+
+        if (index == -1) {
+            return;
+        }
+
+        bucket.remove(index);
+        if (bucket.size() == 1) {
+            entries.put(key, bucket.get(0));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Login> find(String key) {
+        final Object entry = entries.get(key);
+
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+
+        if (entry instanceof Login) {
+            return Collections.singletonList((Login) entry);
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>((List<Login>) entry));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents a lazy iterator over the logins in a LAL document.
+ *
+ * Lines are read and parsed one at a time as the iterator is advanced. Lines which are not in the correct format are
+ * skipped, as in {@link LALParser#load(Reader)}. The underlying reader is closed when the end of the document is
+ * reached or when the iterator is closed.
+ *
+ * @since 1.1
+ */
+public class LoginIterator implements Iterator<Login>, Closeable {
+
+    private final BufferedReader input;
+    private Login next = null;
+    private boolean closed = false;
+
+    /**
+     * Creates a new LoginIterator over a Reader.
+     *
+     * @param reader The reader to parse.
+     */
+    public LoginIterator(Reader reader) {
+        Validate.notNull(reader, "Reader may not be null");
+
+        this.input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Returns true if there is another login in the document.
+     *
+     * @return True if there is another login.
+     * @throws RuntimeException if the reader could not be read from.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+
+        if (closed) {
+            return false;
+        }
+
+        try {
+            String line;
+
+            while ((line = input.readLine()) != null) {
+                next = LALParser.parse(line.trim());
+
+                if (next != null) {
+                    return true;
+                }
+            }
+        } catch (Exception ex) {
+            close();
+            throw new RuntimeException(ex);
+        }
+
+        close();
+        return false;
+    }
+
+    @Override
+    public Login next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final Login login = next;
+        next = null;
+        return login;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the underlying reader.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        next = null;
+
+        try {
+            input.close();
+        } catch (Exception ex) {
+        }
+    }
+
+}
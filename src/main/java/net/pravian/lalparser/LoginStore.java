@@ -0,0 +1,372 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * Represents a compact, column-oriented list of logins.
+ *
+ * The fields of all logins are stored as UTF-8 bytes in one shared buffer, with an offset and length array per
+ * field and bit sets for the invalid and comment flags. Login objects are only created by {@link #get(int)}.
+ *
+ * <b>Note</b>: The logins returned by this store are copies. Changes to a returned login are not stored unless it is
+ * passed to {@link #set(int, Login)}.
+ *
+ * @since 1.1
+ */
+public class LoginStore extends AbstractList<Login> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int ABSENT = -1;
+    private final int[][] offsets = new int[LineScanner.FIELDS][];
+    private final int[][] lengths = new int[LineScanner.FIELDS][];
+    private final BitSet invalid = new BitSet();
+    private final BitSet comments = new BitSet();
+    private byte[] data;
+    private int dataSize = 0;
+    private int wasted = 0;
+    private int size = 0;
+
+    /**
+     * Creates a new empty LoginStore.
+     */
+    public LoginStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty LoginStore.
+     *
+     * @param capacity The initial amount of logins to reserve space for.
+     */
+    public LoginStore(int capacity) {
+        Validate.not(capacity < 0, "Capacity may not be negative");
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            offsets[field] = new int[capacity];
+            lengths[field] = new int[capacity];
+        }
+        data = new byte[capacity * 16];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Login get(int index) {
+        checkIndex(index, size);
+
+        return new Login(
+                field(index, LineScanner.LOGIN),
+                field(index, LineScanner.PASSWORD),
+                field(index, LineScanner.DISPLAY_NAME),
+                field(index, LineScanner.EMAIL),
+                field(index, LineScanner.OLD_PASSWORD),
+                invalid.get(index),
+                field(index, LineScanner.COMMENT));
+    }
+
+    /**
+     * Returns true if the login at an index is a comment, without creating the login.
+     *
+     * @param index The index of the login.
+     * @return True if the login is a comment.
+     */
+    public boolean isComment(int index) {
+        checkIndex(index, size);
+        return comments.get(index);
+    }
+
+    /**
+     * Returns true if the login at an index is invalid, without creating the login.
+     *
+     * @param index The index of the login.
+     * @return True if the login is invalid.
+     */
+    public boolean isInvalid(int index) {
+        checkIndex(index, size);
+        return invalid.get(index);
+    }
+
+    @Override
+    public Login set(int index, Login login) {
+        Validate.notNull(login, "Login may not be null");
+        final Login old = get(index);
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            wasted += Math.max(0, lengths[field][index]);
+        }
+        store(index, login);
+        compactIfWasteful();
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void add(int index, Login login) {
+        Validate.notNull(login, "Login may not be null");
+        checkIndex(index, size + 1);
+
+        if (size == offsets[0].length) {
+            grow();
+        }
+
+        if (index < size) {
+            for (int field = 0; field < LineScanner.FIELDS; field++) {
+                System.arraycopy(offsets[field], index, offsets[field], index + 1, size - index);
+                System.arraycopy(lengths[field], index, lengths[field], index + 1, size - index);
+            }
+            for (int i = size; i > index; i--) {
+                invalid.set(i, invalid.get(i - 1));
+                comments.set(i, comments.get(i - 1));
+            }
+        }
+
+        size++;
+        store(index, login);
+        modCount++;
+    }
+
+    /**
+     * Reserves space for additional logins.
+     *
+     * @param logins The amount of logins to reserve space for.
+     * @param bytes The amount of field bytes to reserve space for.
+     */
+    void ensureCapacity(int logins, int bytes) {
+        final int capacity = size + logins;
+
+        if (capacity > offsets[0].length) {
+            for (int field = 0; field < LineScanner.FIELDS; field++) {
+                offsets[field] = Arrays.copyOf(offsets[field], capacity);
+                lengths[field] = Arrays.copyOf(lengths[field], capacity);
+            }
+        }
+        reserve(bytes);
+    }
+
+    /**
+     * Appends a login encoded by {@link LoginCodec}, copying its fields without creating any objects.
+     *
+     * @param buffer The buffer to read the login from, which is advanced past it.
+     */
+    void addEncoded(ByteBuffer buffer) {
+        if (size == offsets[0].length) {
+            grow();
+        }
+
+        final int index = size;
+        final int flags = buffer.get() & 0xFF;
+        boolean comment = false;
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            if (!LoginCodec.hasField(flags, field)) {
+                offsets[field][index] = 0;
+                lengths[field][index] = ABSENT;
+                continue;
+            }
+
+            final int length = LoginCodec.readLength(buffer);
+            reserve(length);
+            buffer.get(data, dataSize, length);
+
+            offsets[field][index] = dataSize;
+            lengths[field][index] = length;
+            dataSize += length;
+
+            if (field == LineScanner.COMMENT) {
+                comment = length > 0;
+            }
+        }
+
+        invalid.set(index, LoginCodec.isInvalid(flags));
+        comments.set(index, comment);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Login remove(int index) {
+        final Login old = get(index);
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            wasted += Math.max(0, lengths[field][index]);
+            System.arraycopy(offsets[field], index + 1, offsets[field], index, size - index - 1);
+            System.arraycopy(lengths[field], index + 1, lengths[field], index, size - index - 1);
+        }
+        for (int i = index; i < size - 1; i++) {
+            invalid.set(i, invalid.get(i + 1));
+            comments.set(i, comments.get(i + 1));
+        }
+
+        size--;
+        invalid.clear(size);
+        comments.clear(size);
+        compactIfWasteful();
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        dataSize = 0;
+        wasted = 0;
+        invalid.clear();
+        comments.clear();
+        modCount++;
+    }
+
+    /**
+     * Releases unused capacity and the space of removed or replaced logins.
+     */
+    public void trimToSize() {
+        compact();
+        data = Arrays.copyOf(data, dataSize);
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            offsets[field] = Arrays.copyOf(offsets[field], size);
+            lengths[field] = Arrays.copyOf(lengths[field], size);
+        }
+    }
+
+    /**
+     * Returns the approximate amount of heap memory retained by this store in bytes.
+     *
+     * @return The retained heap memory.
+     */
+    public long heapSize() {
+        long bytes = 16 + data.length;
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            bytes += 2 * (16 + 4L * offsets[field].length);
+        }
+
+        bytes += 2 * (40 + invalid.size() / 8);
+        return bytes;
+    }
+
+    private String field(int index, int field) {
+        final int length = lengths[field][index];
+        return length == ABSENT ? null : new String(data, offsets[field][index], length, StandardCharsets.UTF_8);
+    }
+
+    private void store(int index, Login login) {
+        invalid.set(index, login.isInvalid());
+        comments.set(index, login.isComment());
+
+        store(index, LineScanner.COMMENT, login.getComment());
+        store(index, LineScanner.LOGIN, login.getLogin());
+        store(index, LineScanner.PASSWORD, login.getPassword());
+        store(index, LineScanner.DISPLAY_NAME, login.getDisplayName());
+        store(index, LineScanner.EMAIL, login.getEmail());
+        store(index, LineScanner.OLD_PASSWORD, login.getOldPassword());
+    }
+
+    private void store(int index, int field, String value) {
+        if (value == null) {
+            offsets[field][index] = 0;
+            lengths[field][index] = ABSENT;
+            return;
+        }
+
+        final int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+
+        final byte[] bytes = ascii ? null : value.getBytes(StandardCharsets.UTF_8);
+        final int encoded = ascii ? length : bytes.length;
+
+        reserve(encoded);
+
+        if (ascii) {
+            for (int i = 0; i < length; i++) {
+                data[dataSize + i] = (byte) value.charAt(i);
+            }
+        } else {
+            System.arraycopy(bytes, 0, data, dataSize, encoded);
+        }
+
+        offsets[field][index] = dataSize;
+        lengths[field][index] = encoded;
+        dataSize += encoded;
+    }
+
+    private void reserve(int bytes) {
+        final long required = (long) dataSize + bytes;
+        Validate.not(required > Integer.MAX_VALUE - 8, "LoginStore data may not exceed 2 GB");
+
+        if (required > data.length) {
+            data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, data.length * 2L)));
+        }
+    }
+
+    private void grow() {
+        final int capacity = Math.max(DEFAULT_CAPACITY, offsets[0].length + (offsets[0].length >> 1));
+
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            offsets[field] = Arrays.copyOf(offsets[field], capacity);
+            lengths[field] = Arrays.copyOf(lengths[field], capacity);
+        }
+    }
+
+    private void compactIfWasteful() {
+        if (wasted > 4096 && wasted > dataSize / 2) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        if (wasted == 0) {
+            return;
+        }
+
+        final byte[] compacted = new byte[data.length];
+        int position = 0;
+
+        for (int index = 0; index < size; index++) {
+            for (int field = 0; field < LineScanner.FIELDS; field++) {
+                final int length = lengths[field][index];
+                if (length != ABSENT) {
+                    System.arraycopy(data, offsets[field][index], compacted, position, length);
+                    offsets[field][index] = position;
+                    position += length;
+                }
+            }
+        }
+
+        data = compacted;
+        dataSize = position;
+        wasted = 0;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+}
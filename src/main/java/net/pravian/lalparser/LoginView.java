@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a Login backed by the UTF-8 encoded bytes it was parsed from.
+ *
+ * Only the field offsets are stored. Each field is decoded the first time its getter is called, setting a field
+ * replaces the backing bytes for that field.
+ *
+ * Decoding is thread-safe, so a view may be read by several threads once it is published, like a Login whose fields
+ * are not changed. A field is decoded and stored under the view's lock before it is marked as decoded, and a decoded
+ * field is read without locking.
+ *
+ * @since 1.1
+ */
+class LoginView extends Login {
+
+    private final ByteBuffer buffer;
+    private final int[] bounds;
+    private volatile int decoded = 0;
+
+    /**
+     * Creates a new LoginView.
+     *
+     * @param buffer The buffer containing the line.
+     * @param bounds The field bounds, as filled by {@link LineScanner#scan(ByteBuffer, int, int, int[])}.
+     * @param invalid If this Login is invalid or not.
+     */
+    LoginView(ByteBuffer buffer, int[] bounds, boolean invalid) {
+        super(null, null, null, null, null, invalid, null);
+        this.buffer = buffer;
+        this.bounds = bounds;
+    }
+
+    @Override
+    public String getLogin() {
+        if (!isDecoded(LineScanner.LOGIN)) {
+            load(LineScanner.LOGIN);
+        }
+        return super.getLogin();
+    }
+
+    @Override
+    public String getPassword() {
+        if (!isDecoded(LineScanner.PASSWORD)) {
+            load(LineScanner.PASSWORD);
+        }
+        return super.getPassword();
+    }
+
+    @Override
+    public String getDisplayName() {
+        if (!isDecoded(LineScanner.DISPLAY_NAME)) {
+            load(LineScanner.DISPLAY_NAME);
+        }
+        return super.getDisplayName();
+    }
+
+    @Override
+    public String getEmail() {
+        if (!isDecoded(LineScanner.EMAIL)) {
+            load(LineScanner.EMAIL);
+        }
+        return super.getEmail();
+    }
+
+    @Override
+    public String getOldPassword() {
+        if (!isDecoded(LineScanner.OLD_PASSWORD)) {
+            load(LineScanner.OLD_PASSWORD);
+        }
+        return super.getOldPassword();
+    }
+
+    @Override
+    public String getComment() {
+        if (!isDecoded(LineScanner.COMMENT)) {
+            load(LineScanner.COMMENT);
+        }
+        return super.getComment();
+    }
+
+    @Override
+    public boolean isComment() {
+        if (isDecoded(LineScanner.COMMENT)) {
+            return super.isComment();
+        }
+        return bounds[LineScanner.COMMENT * 2] != -1;
+    }
+
+    @Override
+    public void setLogin(String login) {
+        mark(LineScanner.LOGIN);
+        super.setLogin(login);
+    }
+
+    @Override
+    public void setPassword(String password) {
+        mark(LineScanner.PASSWORD);
+        super.setPassword(password);
+    }
+
+    @Override
+    public void setDisplayName(String displayName) {
+        mark(LineScanner.DISPLAY_NAME);
+        super.setDisplayName(displayName);
+    }
+
+    @Override
+    public void setEmail(String email) {
+        mark(LineScanner.EMAIL);
+        super.setEmail(email);
+    }
+
+    @Override
+    public void setOldPassword(String oldPassword) {
+        mark(LineScanner.OLD_PASSWORD);
+        super.setOldPassword(oldPassword);
+    }
+
+    @Override
+    public void setComment(String comment) {
+        mark(LineScanner.COMMENT);
+        super.setComment(comment);
+    }
+
+    /**
+     * Returns true if a field has been decoded or set.
+     *
+     * @param field The field to check.
+     * @return True if the field has been decoded.
+     */
+    boolean isDecoded(int field) {
+        return (decoded & (1 << field)) != 0;
+    }
+
+    /**
+     * Decodes and stores a field, unless it has been decoded or set already.
+     *
+     * @param field The field to decode.
+     */
+    private synchronized void load(int field) {
+        if (isDecoded(field)) {
+            return;
+        }
+
+        final String value = decode(field);
+        switch (field) {
+            case LineScanner.LOGIN:
+                super.setLogin(value);
+                break;
+            case LineScanner.PASSWORD:
+                super.setPassword(value);
+                break;
+            case LineScanner.DISPLAY_NAME:
+                super.setDisplayName(value);
+                break;
+            case LineScanner.EMAIL:
+                super.setEmail(value);
+                break;
+            case LineScanner.OLD_PASSWORD:
+                super.setOldPassword(value);
+                break;
+            default:
+                super.setComment(value);
+                break;
+        }
+        // Only now, so other threads never see the mark before the value
+        decoded |= 1 << field;
+    }
+
+    /**
+     * Marks a field as decoded, before it is set.
+     *
+     * @param field The field to mark.
+     */
+    private synchronized void mark(int field) {
+        decoded |= 1 << field;
+    }
+
+    private String decode(int field) {
+        final int start = bounds[field * 2];
+        if (start == -1) {
+            return field == LineScanner.COMMENT ? "" : null;
+        }
+
+        final byte[] bytes = new byte[bounds[field * 2 + 1] - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+
+        // Only comments may contain non-ASCII characters
+        return new String(bytes, field == LineScanner.COMMENT ? StandardCharsets.UTF_8 : StandardCharsets.US_ASCII);
+    }
+
+}
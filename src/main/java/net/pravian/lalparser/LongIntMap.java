@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+/**
+ * Represents an open-addressing hash map from primitive longs to non-negative ints.
+ *
+ * Keys are expected to be well distributed hashes already, such as {@link Dedupe#fingerprint(Login)}.
+ *
+ * @since 1.1
+ */
+class LongIntMap {
+
+    public static final int ABSENT = -1;
+    private static final float LOAD_FACTOR = 0.6f;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private int zeroValue = ABSENT; // The key 0 marks empty slots, so it is stored separately
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int capacity) {
+        int slots = 16;
+        while (slots * LOAD_FACTOR < capacity) {
+            slots <<= 1;
+        }
+        allocate(slots);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key The key to look up.
+     * @return The value, or {@link #ABSENT} if the key is not present.
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+
+        int slot = slot(key);
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key The key.
+     * @param value The value, which may not be negative.
+     */
+    public void put(long key, int value) {
+        Validate.not(value < 0, "Value may not be negative");
+
+        if (key == 0) {
+            if (zeroValue == ABSENT) {
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+
+        int slot = slot(key);
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash();
+        }
+    }
+
+    public void clear() {
+        allocate(16);
+        size = 0;
+        zeroValue = ABSENT;
+    }
+
+    /**
+     * Returns the approximate amount of heap memory retained by this map in bytes.
+     *
+     * @return The retained heap memory.
+     */
+    public long heapSize() {
+        return 32 + 12L * keys.length;
+    }
+
+    private int slot(long key) {
+        // Fold the high bits in, in case the keys are not well distributed after all
+        return (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+    }
+
+    private void allocate(int slots) {
+        keys = new long[slots];
+        values = new int[slots];
+        mask = slots - 1;
+    }
+
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+
+        Validate.not(oldKeys.length >= 1 << 30, "Map may not exceed 2^30 slots");
+        allocate(oldKeys.length << 1);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (key == 0) {
+                continue;
+            }
+
+            int slot = slot(key);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+
+}
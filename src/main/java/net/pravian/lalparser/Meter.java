@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Represents the counters of a single load, write or chunk, which are reported to a listener in one batch.
+ *
+ * The counters are plain fields, so counting a line costs a few increments and the listener is only called once
+ * per batch. Input and output are timed and counted by wrapping the Reader, stream or channel, which is only called
+ * once per buffer fill or flush.
+ *
+ * @since 1.1
+ */
+final class Meter {
+
+    private final MetricsListener listener;
+    private final long start = System.nanoTime();
+    long lines;
+    long logins;
+    long comments;
+    long invalid;
+    long rejected;
+    long bytes;
+    long readNanos;
+
+    Meter(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Counts a parsed line.
+     *
+     * @param login The parsed login, or null if the line was rejected.
+     */
+    void line(Login login) {
+        if (login == null) {
+            lines++;
+            rejected++;
+            return;
+        }
+
+        line(login.isComment(), login.isInvalid());
+    }
+
+    /**
+     * Counts a line which was stored, without a Login object.
+     *
+     * @param comment If the line is a comment.
+     * @param invalid If the line is an invalid login.
+     */
+    void line(boolean comment, boolean invalid) {
+        lines++;
+        logins++;
+        if (comment) {
+            comments++;
+        } else if (invalid) {
+            this.invalid++;
+        }
+    }
+
+    /**
+     * Returns the time since this meter was created.
+     *
+     * @return The time in nanoseconds.
+     */
+    long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns a Reader whose reads are timed as the read phase.
+     *
+     * @param reader The Reader to time.
+     * @return The timed Reader.
+     */
+    Reader time(Reader reader) {
+        return new FilterReader(reader) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                final long begin = System.nanoTime();
+                try {
+                    return super.read(buffer, offset, length);
+                } finally {
+                    readNanos += System.nanoTime() - begin;
+                }
+            }
+        };
+    }
+
+    /**
+     * Reports the counters, and the time since this meter was created minus the read time as the parse phase.
+     *
+     * The bytes read are only reported if they were counted by this meter, rather than by a counted stream.
+     */
+    void reportLoad() {
+        if (bytes > 0) {
+            listener.count(MetricsListener.Counter.BYTES_READ, bytes);
+        }
+        listener.count(MetricsListener.Counter.LINES, lines);
+        listener.count(MetricsListener.Counter.LOGINS, logins);
+        listener.count(MetricsListener.Counter.COMMENTS, comments);
+        listener.count(MetricsListener.Counter.INVALID, invalid);
+        listener.count(MetricsListener.Counter.REJECTED, rejected);
+        listener.time(MetricsListener.Phase.READ, readNanos);
+        listener.time(MetricsListener.Phase.PARSE, elapsed() - readNanos);
+    }
+
+    /**
+     * Reports the logins written, and the time since this meter was created as the write phase.
+     */
+    void reportWrite() {
+        listener.count(MetricsListener.Counter.LOGINS_WRITTEN, logins);
+        listener.time(MetricsListener.Phase.WRITE, elapsed());
+    }
+
+    /**
+     * Returns a stream which reports the bytes read from it when it is closed.
+     *
+     * @param stream The stream to count.
+     * @param listener The listener to report to.
+     * @return The counted stream.
+     */
+    static InputStream count(InputStream stream, MetricsListener listener) {
+        return new FilterInputStream(stream) {
+            private long bytes = 0;
+            private boolean reported = false;
+
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) {
+                    bytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                final int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                final long skipped = super.skip(n);
+                bytes += skipped;
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!reported) {
+                    reported = true;
+                    listener.count(MetricsListener.Counter.BYTES_READ, bytes);
+                }
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * Returns a channel which reports the bytes written to it when it is closed.
+     *
+     * @param channel The channel to count.
+     * @param listener The listener to report to.
+     * @return The counted channel.
+     */
+    static WritableByteChannel count(WritableByteChannel channel, MetricsListener listener) {
+        return new WritableByteChannel() {
+            private long bytes = 0;
+            private boolean reported = false;
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                final int written = channel.write(source);
+                bytes += written;
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!reported) {
+                    reported = true;
+                    listener.count(MetricsListener.Counter.BYTES_WRITTEN, bytes);
+                }
+                channel.close();
+            }
+        };
+    }
+
+}
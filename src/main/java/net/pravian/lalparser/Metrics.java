@@ -0,0 +1,352 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Represents a listener which accumulates load and write metrics.
+ *
+ * Every counter and phase timing is a {@link LongAdder}, so parallel loads reporting from many threads do not contend.
+ * The totals can be read directly, through JMX after {@link #register(String)}, or as {@link Sample}s, which may be
+ * taken periodically with {@link #schedule(ScheduledExecutorService, long, TimeUnit, Consumer)}.
+ *
+ * @since 1.1
+ */
+public class Metrics implements MetricsListener, MetricsMXBean {
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Phase[] PHASES = Phase.values();
+    //
+    private final LongAdder[] counts = new LongAdder[COUNTERS.length];
+    private final LongAdder[] nanos = new LongAdder[PHASES.length];
+
+    /**
+     * Creates a new Metrics with all counters at zero.
+     */
+    public Metrics() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void count(Counter counter, long amount) {
+        counts[counter.ordinal()].add(amount);
+    }
+
+    @Override
+    public void time(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Returns the total of a counter.
+     *
+     * @param counter The counter.
+     * @return The total.
+     */
+    public long getCount(Counter counter) {
+        Validate.notNull(counter, "Counter may not be null");
+
+        return counts[counter.ordinal()].sum();
+    }
+
+    /**
+     * Returns the total time spent in a phase.
+     *
+     * @param phase The phase.
+     * @return The time in nanoseconds, summed over all threads.
+     */
+    public long getNanos(Phase phase) {
+        Validate.notNull(phase, "Phase may not be null");
+
+        return nanos[phase.ordinal()].sum();
+    }
+
+    @Override
+    public long getLines() {
+        return getCount(Counter.LINES);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return getCount(Counter.BYTES_READ);
+    }
+
+    @Override
+    public long getLogins() {
+        return getCount(Counter.LOGINS);
+    }
+
+    @Override
+    public long getComments() {
+        return getCount(Counter.COMMENTS);
+    }
+
+    @Override
+    public long getInvalid() {
+        return getCount(Counter.INVALID);
+    }
+
+    @Override
+    public long getRejected() {
+        return getCount(Counter.REJECTED);
+    }
+
+    @Override
+    public long getLoginsWritten() {
+        return getCount(Counter.LOGINS_WRITTEN);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return getCount(Counter.BYTES_WRITTEN);
+    }
+
+    @Override
+    public long getReadNanos() {
+        return getNanos(Phase.READ);
+    }
+
+    @Override
+    public long getParseNanos() {
+        return getNanos(Phase.PARSE);
+    }
+
+    @Override
+    public long getWriteNanos() {
+        return getNanos(Phase.WRITE);
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return sample().getLinesPerSecond();
+    }
+
+    @Override
+    public double getBytesReadPerSecond() {
+        return sample().getBytesReadPerSecond();
+    }
+
+    /**
+     * Resets all counters and timings to zero.
+     *
+     * Values reported while resetting may be lost.
+     */
+    @Override
+    public void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+        for (LongAdder time : nanos) {
+            time.reset();
+        }
+    }
+
+    /**
+     * Returns the current totals.
+     *
+     * @return The sample.
+     */
+    public Sample sample() {
+        final long[] sampledCounts = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            sampledCounts[i] = counts[i].sum();
+        }
+
+        final long[] sampledNanos = new long[nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            sampledNanos[i] = nanos[i].sum();
+        }
+
+        return new Sample(System.nanoTime(), 0, sampledCounts, sampledNanos);
+    }
+
+    /**
+     * Delivers a sample of the values reported during every period.
+     *
+     * @param executor The executor to schedule on.
+     * @param period The time between samples.
+     * @param unit The unit of the period.
+     * @param consumer The consumer of the samples, which are the difference with the previous sample.
+     * @return The future of the schedule, which may be cancelled to stop sampling.
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit, Consumer<Sample> consumer) {
+        Validate.notNull(executor, "Executor may not be null");
+        Validate.notNull(unit, "Unit may not be null");
+        Validate.notNull(consumer, "Consumer may not be null");
+        Validate.not(period < 1, "Period must be positive");
+
+        final Sample[] previous = new Sample[]{sample()};
+        return executor.scheduleAtFixedRate(() -> {
+            final Sample current = sample();
+            consumer.accept(current.since(previous[0]));
+            previous[0] = current;
+        }, period, period, unit);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @param name The object name, such as "net.pravian.lalparser:type=Metrics,name=import".
+     * @return The registered object name.
+     * @throws RuntimeException if the name is invalid or already registered.
+     */
+    public ObjectName register(String name) {
+        Validate.notNull(name, "Name may not be null");
+
+        try {
+            final ObjectName objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Unregisters metrics from the platform MBean server.
+     *
+     * @param name The object name returned by {@link #register(String)}.
+     * @throws RuntimeException if the name is not registered.
+     */
+    public static void unregister(ObjectName name) {
+        Validate.notNull(name, "Name may not be null");
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Represents an immutable sample of the counters and timings.
+     */
+    public static class Sample {
+
+        private final long time;
+        private final long elapsed;
+        private final long[] counts;
+        private final long[] nanos;
+
+        Sample(long time, long elapsed, long[] counts, long[] nanos) {
+            this.time = time;
+            this.elapsed = elapsed;
+            this.counts = counts;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the difference between this sample and an earlier sample.
+         *
+         * @param previous The earlier sample.
+         * @return The values reported between the samples.
+         */
+        public Sample since(Sample previous) {
+            Validate.notNull(previous, "Previous sample may not be null");
+
+            final long[] countDelta = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                countDelta[i] = counts[i] - previous.counts[i];
+            }
+
+            final long[] nanoDelta = new long[nanos.length];
+            for (int i = 0; i < nanos.length; i++) {
+                nanoDelta[i] = nanos[i] - previous.nanos[i];
+            }
+
+            return new Sample(time, time - previous.time, countDelta, nanoDelta);
+        }
+
+        /**
+         * Returns the wall-clock time between the samples this sample is the difference of.
+         *
+         * @return The time in nanoseconds, or 0 for a sample of the totals.
+         */
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * Returns a counter.
+         *
+         * @param counter The counter.
+         * @return The value.
+         */
+        public long getCount(Counter counter) {
+            return counts[counter.ordinal()];
+        }
+
+        /**
+         * Returns the time spent in a phase.
+         *
+         * @param phase The phase.
+         * @return The time in nanoseconds, summed over all threads.
+         */
+        public long getNanos(Phase phase) {
+            return nanos[phase.ordinal()];
+        }
+
+        /**
+         * Returns the lines read per second spent reading and parsing.
+         *
+         * @return The rate, or 0 if no time was spent.
+         */
+        public double getLinesPerSecond() {
+            return rate(getCount(Counter.LINES));
+        }
+
+        /**
+         * Returns the bytes read per second spent reading and parsing.
+         *
+         * @return The rate, or 0 if no time was spent.
+         */
+        public double getBytesReadPerSecond() {
+            return rate(getCount(Counter.BYTES_READ));
+        }
+
+        private double rate(long count) {
+            final long spent = getNanos(Phase.READ) + getNanos(Phase.PARSE);
+            return spent <= 0 ? 0 : count * 1e9 / spent;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Sample{");
+            for (Counter counter : COUNTERS) {
+                sb.append(counter.name().toLowerCase(Locale.ROOT)).append('=').append(getCount(counter)).append(", ");
+            }
+            for (Phase phase : PHASES) {
+                sb.append(phase.name().toLowerCase(Locale.ROOT)).append("Nanos=").append(getNanos(phase)).append(", ");
+            }
+            return sb.append("elapsedNanos=").append(elapsed).append('}').toString();
+        }
+    }
+
+}
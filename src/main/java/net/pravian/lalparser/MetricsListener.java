@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+/**
+ * Represents a receiver of load and write metrics.
+ *
+ * Parsers report counters and phase timings in batches: once per load or write, and once per chunk for parallel
+ * loads. A listener may therefore be called concurrently and must be thread-safe. {@link Metrics} is a listener which
+ * accumulates the reported values with striped counters.
+ *
+ * @since 1.1
+ * @see LALParser#setListener(MetricsListener)
+ */
+public interface MetricsListener {
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter The counter.
+     * @param amount The amount to add.
+     */
+    void count(Counter counter, long amount);
+
+    /**
+     * Adds time spent in a phase.
+     *
+     * @param phase The phase.
+     * @param nanos The time spent, in nanoseconds.
+     */
+    void time(Phase phase, long nanos);
+
+    /**
+     * Represents a counted quantity.
+     */
+    enum Counter {
+
+        /**
+         * The lines read. Every login read from a snapshot counts as a line.
+         */
+        LINES,
+        /**
+         * The bytes read from a file, buffer or stream. Not counted when loading from a String or Reader.
+         */
+        BYTES_READ,
+        /**
+         * The lines stored, including comments and invalid logins.
+         */
+        LOGINS,
+        /**
+         * The comments stored.
+         */
+        COMMENTS,
+        /**
+         * The invalid logins stored, which are lines starting with a '.'.
+         */
+        INVALID,
+        /**
+         * The lines which are not in the correct format, or are empty.
+         */
+        REJECTED,
+        /**
+         * The logins written.
+         */
+        LOGINS_WRITTEN,
+        /**
+         * The bytes written to a file, stream or channel, before compression. Not counted when writing to a Writer.
+         */
+        BYTES_WRITTEN
+    }
+
+    /**
+     * Represents a timed phase.
+     */
+    enum Phase {
+
+        /**
+         * Reading and decoding input.
+         */
+        READ,
+        /**
+         * Parsing lines and storing the logins.
+         */
+        PARSE,
+        /**
+         * Encoding and writing output.
+         */
+        WRITE
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+/**
+ * Represents the JMX view of {@link Metrics}.
+ *
+ * Times are in nanoseconds. Rates are per second of time spent in the read and parse phases, summed over all threads.
+ *
+ * @since 1.1
+ */
+public interface MetricsMXBean {
+
+    long getLines();
+
+    long getBytesRead();
+
+    long getLogins();
+
+    long getComments();
+
+    long getInvalid();
+
+    long getRejected();
+
+    long getLoginsWritten();
+
+    long getBytesWritten();
+
+    long getReadNanos();
+
+    long getParseNanos();
+
+    long getWriteNanos();
+
+    double getLinesPerSecond();
+
+    double getBytesReadPerSecond();
+
+    void reset();
+
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Represents a list of logins stored outside of the Java heap.
+ *
+ * Logins are stored as records encoded by {@link LoginCodec} in segments of direct memory, or of a memory-mapped
+ * temporary file. A second set of segments holds the 64-bit address of every record, so neither the amount of logins
+ * nor the size of their fields is limited by the heap or by the 2 GB limit of a single buffer. The heap only holds the
+ * segment tables, so the garbage collector does not scan the stored logins. Login objects are only created by
+ * {@link #get(long)}.
+ *
+ * Direct memory is limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size. A store in
+ * direct memory which should grow past the heap needs a larger limit, otherwise adding a login fails with an
+ * {@link OutOfMemoryError}. A store in a memory-mapped file is only limited by the disk and the address space.
+ *
+ * The memory is released by {@link #close()}, after which the store may no longer be used. Stores with more than
+ * {@link Integer#MAX_VALUE} logins can only be accessed through {@link #longSize()}, {@link #get(long)} and
+ * {@link #iterator()}.
+ *
+ * <b>Note</b>: The logins returned by this store are copies. The space of removed or replaced logins is only reused
+ * after {@link #clear()}. Concurrent reads are safe, but writes and {@link #close()} must not overlap with any other
+ * access.
+ *
+ * @since 1.1
+ */
+public class OffHeapStore extends AbstractList<Login> implements RandomAccess, Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+    private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[][]{new byte[256]});
+    //
+    private final Segments data;
+    private final Segments addresses;
+    private final Encoder encoder = new Encoder();
+    private final DataOutputStream output = new DataOutputStream(encoder);
+    private long size = 0;
+    private long dataSize = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new OffHeapStore in direct memory.
+     *
+     * The store can not grow past {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size. Use
+     * {@link #OffHeapStore(Path)} for stores which may be larger.
+     */
+    public OffHeapStore() {
+        this(null, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new OffHeapStore in a memory-mapped temporary file.
+     *
+     * @param directory The directory to create the temporary files in, which are deleted by {@link #close()}.
+     */
+    public OffHeapStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new OffHeapStore.
+     *
+     * @param directory The directory to create the temporary files in, or null to use direct memory, which is limited by
+     * {@code -XX:MaxDirectMemorySize}.
+     * @param segmentSize The size of each segment in bytes, which must be a power of two of at least 4 KB. A single
+     * login may not be larger than a segment.
+     */
+    public OffHeapStore(Path directory, int segmentSize) {
+        Validate.not(segmentSize < 4096 || Integer.bitCount(segmentSize) != 1, "Segment size must be a power of two of at least 4 KB");
+
+        this.data = new Segments(directory, segmentSize);
+        try {
+            this.addresses = new Segments(directory, segmentSize);
+        } catch (RuntimeException ex) {
+            data.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the amount of logins in this store.
+     *
+     * @return The amount of logins.
+     */
+    public long longSize() {
+        return size;
+    }
+
+    @Override
+    public int size() {
+        Validate.not(size > Integer.MAX_VALUE, "OffHeapStore holds more than 2^31 logins, use longSize()");
+        return (int) size;
+    }
+
+    @Override
+    public Login get(int index) {
+        return get((long) index);
+    }
+
+    /**
+     * Returns the login at an index.
+     *
+     * @param index The index of the login.
+     * @return A copy of the login.
+     */
+    public Login get(long index) {
+        return LoginCodec.read(record(index), SCRATCH.get());
+    }
+
+    /**
+     * Returns true if the login at an index is a comment, without creating the login.
+     *
+     * @param index The index of the login.
+     * @return True if the login is a comment.
+     */
+    public boolean isComment(long index) {
+        final ByteBuffer record = record(index);
+        // The comment is the first field, and empty comments do not make a comment
+        return LoginCodec.hasField(record.get() & 0xFF, LineScanner.COMMENT) && LoginCodec.readLength(record) > 0;
+    }
+
+    /**
+     * Returns true if the login at an index is invalid, without creating the login.
+     *
+     * @param index The index of the login.
+     * @return True if the login is invalid.
+     */
+    public boolean isInvalid(long index) {
+        return LoginCodec.isInvalid(record(index).get() & 0xFF);
+    }
+
+    @Override
+    public boolean add(Login login) {
+        Validate.notNull(login, "Login may not be null");
+        checkOpen();
+
+        setAddress(size, append(login));
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Login login) {
+        Validate.notNull(login, "Login may not be null");
+        checkIndex(index, size + 1);
+
+        final long address = append(login);
+        for (long i = size; i > index; i--) {
+            setAddress(i, getAddress(i - 1));
+        }
+        setAddress(index, address);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Login set(int index, Login login) {
+        Validate.notNull(login, "Login may not be null");
+        final Login old = get(index);
+
+        setAddress(index, append(login));
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public Login remove(int index) {
+        final Login old = get(index);
+
+        for (long i = index; i < size - 1; i++) {
+            setAddress(i, getAddress(i + 1));
+        }
+        size--;
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Removes all logins. The memory is kept for new logins.
+     */
+    @Override
+    public void clear() {
+        checkOpen();
+
+        size = 0;
+        dataSize = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Login> iterator() {
+        return new Iterator<Login>() {
+            private long next = 0;
+            private final int expected = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Login next() {
+                if (expected != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Returns the amount of memory reserved by this store outside of the heap, in bytes.
+     *
+     * @return The reserved memory.
+     */
+    public long offHeapSize() {
+        return data.capacity() + addresses.capacity();
+    }
+
+    /**
+     * Releases the memory of this store and deletes its temporary files.
+     *
+     * The store may not be used afterwards. Closing a closed store has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        size = 0;
+        dataSize = 0;
+
+        try {
+            data.release();
+        } finally {
+            addresses.release();
+        }
+    }
+
+    /**
+     * Returns true if this store has been closed.
+     *
+     * @return True if closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Appends a login encoded by {@link LoginCodec}, copying the record without creating any objects.
+     *
+     * @param buffer The buffer to read the login from, which is advanced past it.
+     */
+    void addEncoded(ByteBuffer buffer) {
+        checkOpen();
+
+        final int start = buffer.position();
+        final int flags = buffer.get() & 0xFF;
+        for (int field = 0; field < LineScanner.FIELDS; field++) {
+            if (LoginCodec.hasField(flags, field)) {
+                final int length = LoginCodec.readLength(buffer);
+                buffer.position(buffer.position() + length);
+            }
+        }
+
+        final int end = buffer.position();
+        final ByteBuffer record = buffer.duplicate();
+        record.position(start).limit(end);
+
+        final long address = reserve(end - start);
+        final ByteBuffer target = data.slice(address);
+        target.put(record);
+
+        setAddress(size, address);
+        size++;
+        modCount++;
+    }
+
+    private ByteBuffer record(long index) {
+        checkIndex(index, size);
+        return data.slice(getAddress(index));
+    }
+
+    private long append(Login login) {
+        encoder.reset();
+        try {
+            LoginCodec.write(output, login);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        final long address = reserve(encoder.size());
+        data.slice(address).put(encoder.array(), 0, encoder.size());
+        return address;
+    }
+
+    private long reserve(int length) {
+        Validate.not(length > data.segmentSize, "Login is larger than a segment");
+
+        long address = dataSize;
+        if (data.offset(address) + length > data.segmentSize) {
+            // Records never straddle segments, so skip the tail of the current segment
+            address = (address | data.mask) + 1;
+        }
+
+        data.ensure(address + length);
+        dataSize = address + length;
+        return address;
+    }
+
+    private long getAddress(long index) {
+        final long position = index << 3;
+        return addresses.segment(position).getLong(addresses.offset(position));
+    }
+
+    private void setAddress(long index, long address) {
+        final long position = index << 3;
+        addresses.ensure(position + 8);
+        addresses.segment(position).putLong(addresses.offset(position), address);
+    }
+
+    private void checkOpen() {
+        Validate.not(closed, "OffHeapStore is closed");
+    }
+
+    private void checkIndex(long index, long limit) {
+        checkOpen();
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Represents the reusable buffer a login is encoded into.
+     */
+    private static class Encoder extends ByteArrayOutputStream {
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Represents a growable sequence of equally sized buffers, addressed with 64-bit positions.
+     */
+    private static final class Segments {
+
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+        //
+        private final int segmentSize;
+        private final long mask;
+        private final int shift;
+        private final Path file;
+        private final FileChannel channel;
+        private ByteBuffer[] buffers = new ByteBuffer[4];
+        private int count = 0;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                final Class<?> type = Class.forName("sun.misc.Unsafe");
+                final Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (Exception ex) {
+                // Java 8, see free(ByteBuffer)
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        Segments(Path directory, int segmentSize) {
+            this.segmentSize = segmentSize;
+            this.mask = segmentSize - 1;
+            this.shift = Integer.numberOfTrailingZeros(segmentSize);
+
+            if (directory == null) {
+                this.file = null;
+                this.channel = null;
+                return;
+            }
+
+            try {
+                this.file = Files.createTempFile(directory, "lalparser-offheap", ".seg");
+                this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        ByteBuffer segment(long position) {
+            return buffers[(int) (position >>> shift)];
+        }
+
+        int offset(long position) {
+            return (int) (position & mask);
+        }
+
+        /**
+         * Returns a buffer positioned at an address, limited to the end of its segment.
+         */
+        ByteBuffer slice(long position) {
+            final ByteBuffer buffer = segment(position).duplicate();
+            buffer.position(offset(position));
+            return buffer;
+        }
+
+        long capacity() {
+            return (long) count * segmentSize;
+        }
+
+        void ensure(long capacity) {
+            while (capacity() < capacity) {
+                if (count == buffers.length) {
+                    buffers = Arrays.copyOf(buffers, count * 2);
+                }
+
+                try {
+                    buffers[count] = channel == null
+                            ? ByteBuffer.allocateDirect(segmentSize)
+                            : channel.map(FileChannel.MapMode.READ_WRITE, capacity(), segmentSize);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                count++;
+            }
+        }
+
+        void release() {
+            for (int i = 0; i < count; i++) {
+                free(buffers[i]);
+                buffers[i] = null;
+            }
+            count = 0;
+
+            if (channel != null) {
+                try {
+                    channel.close();
+                    Files.deleteIfExists(file);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        private static void free(ByteBuffer buffer) {
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                    return;
+                }
+
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (Exception ex) {
+                // The memory is released when the buffer is collected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,613 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a memory-mapped table of password hashes and their occurrence counts.
+ *
+ * The table answers range queries like public breach APIs: given the first hex characters of a hash, it returns the
+ * remaining characters of every matching hash and how often the password occurred, without revealing the password
+ * being checked. The records are sorted by hash, so a range is found with one binary search and read contiguously.
+ *
+ * The file starts with a header of the magic number, the format version, the hash algorithm and the amount of
+ * records, followed by the records. Every record is the hash followed by its count as a big-endian int.
+ *
+ * @since 1.1
+ */
+public class PasswordIndex {
+
+    public static final int MAGIC = 0x4C414C48; // "LALH"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final Comparator<byte[]> ORDER = (a, b) -> {
+        for (int i = 0; i < a.length; i++) {
+            final int result = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    };
+    //
+    private final Algorithm algorithm;
+    private final int recordSize;
+    private final long records;
+    private final int perSegment;
+    private final ByteBuffer[] segments;
+
+    private PasswordIndex(Algorithm algorithm, long records, ByteBuffer[] segments) {
+        this.algorithm = algorithm;
+        this.recordSize = algorithm.length + 4;
+        this.records = records;
+        this.perSegment = SEGMENT_SIZE / recordSize;
+        this.segments = segments;
+    }
+
+    /**
+     * Memory-maps a table written by a {@link Builder}.
+     *
+     * @param path The file to map.
+     * @return The index.
+     * @throws RuntimeException if the file could not be read from, or is not a valid table.
+     */
+    public static PasswordIndex map(Path path) {
+        Validate.notNull(path, "Path may not be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Validate.not(channel.size() < HEADER_SIZE, "File is not an LAL password index");
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+            Validate.not(header.getInt() != MAGIC, "File is not an LAL password index");
+            final int version = header.getInt();
+            Validate.not(version != VERSION, "Unsupported password index version: " + version);
+
+            final int ordinal = header.getInt();
+            Validate.not(ordinal < 0 || ordinal >= Algorithm.values().length, "Corrupt password index: unknown algorithm");
+            final Algorithm algorithm = Algorithm.values()[ordinal];
+            header.getInt();
+            final long records = header.getLong();
+
+            final int recordSize = algorithm.length + 4;
+            Validate.not(records < 0 || channel.size() != HEADER_SIZE + records * recordSize, "Corrupt password index: unexpected file size");
+
+            final long perSegment = SEGMENT_SIZE / recordSize;
+            final ByteBuffer[] segments = new ByteBuffer[(int) ((records + perSegment - 1) / perSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                final long first = i * perSegment;
+                final long length = Math.min(perSegment, records - first) * recordSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize, length);
+            }
+
+            return new PasswordIndex(algorithm, records, segments);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns the hash algorithm of this index.
+     *
+     * @return The algorithm.
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the amount of distinct hashes.
+     *
+     * @return The amount of records.
+     */
+    public long size() {
+        return records;
+    }
+
+    /**
+     * Returns all hashes starting with a hex prefix.
+     *
+     * @param prefix The first hex characters of the hash, typically 5.
+     * @return The matching records in hash order.
+     */
+    public List<Entry> range(String prefix) {
+        Validate.notNull(prefix, "Prefix may not be null");
+        Validate.not(prefix.isEmpty() || prefix.length() > algorithm.length * 2, "Prefix must be 1 to " + algorithm.length * 2 + " hex characters");
+
+        final byte[] nibbles = new byte[prefix.length()];
+        for (int i = 0; i < nibbles.length; i++) {
+            final int nibble = Character.digit(prefix.charAt(i), 16);
+            Validate.not(nibble < 0, "Prefix must be hex");
+            nibbles[i] = (byte) nibble;
+        }
+
+        final long from = lowerBound(nibbles);
+        long to = from;
+        while (to < records && compare(to, nibbles) == 0) {
+            to++;
+        }
+
+        return new Range(nibbles.length, from, (int) (to - from));
+    }
+
+    /**
+     * Returns how often a password occurred.
+     *
+     * @param password The password to look up.
+     * @return The count, or 0 if the password does not occur.
+     */
+    public int getCount(String password) {
+        Validate.notNull(password, "Password may not be null");
+
+        final byte[] hash = algorithm.hash(password);
+        final byte[] nibbles = new byte[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            nibbles[i * 2] = (byte) ((hash[i] >> 4) & 0xF);
+            nibbles[i * 2 + 1] = (byte) (hash[i] & 0xF);
+        }
+
+        final long record = lowerBound(nibbles);
+        return record < records && compare(record, nibbles) == 0 ? count(record) : 0;
+    }
+
+    private long lowerBound(byte[] nibbles) {
+        long low = 0;
+        long high = records;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (compare(mid, nibbles) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(long record, byte[] nibbles) {
+        final ByteBuffer segment = segments[(int) (record / perSegment)];
+        final int offset = (int) (record % perSegment) * recordSize;
+
+        for (int i = 0; i < nibbles.length; i++) {
+            final int b = segment.get(offset + (i >> 1));
+            final int nibble = (i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+            if (nibble != nibbles[i]) {
+                return nibble < nibbles[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private int count(long record) {
+        return segments[(int) (record / perSegment)].getInt((int) (record % perSegment) * recordSize + algorithm.length);
+    }
+
+    private String suffix(long record, int skip) {
+        final ByteBuffer segment = segments[(int) (record / perSegment)];
+        final int offset = (int) (record % perSegment) * recordSize;
+        final char[] chars = new char[algorithm.length * 2 - skip];
+
+        for (int i = skip; i < algorithm.length * 2; i++) {
+            final int b = segment.get(offset + (i >> 1));
+            chars[i - skip] = HEX[(i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Represents a supported hash algorithm.
+     */
+    public enum Algorithm {
+
+        SHA1("SHA-1", 20),
+        SHA256("SHA-256", 32);
+        //
+        private final String name;
+        private final int length;
+        private final ThreadLocal<MessageDigest> digests;
+
+        Algorithm(String name, int length) {
+            this.name = name;
+            this.length = length;
+            this.digests = ThreadLocal.withInitial(() -> {
+                try {
+                    return MessageDigest.getInstance(name);
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+        }
+
+        /**
+         * Returns the length of a hash.
+         *
+         * @return The length in bytes.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Hashes the UTF-8 bytes of a password.
+         *
+         * @param password The password to hash.
+         * @return The hash.
+         */
+        public byte[] hash(String password) {
+            return digests.get().digest(password.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Represents a hash in a range and its occurrence count.
+     */
+    public static class Entry {
+
+        private final String suffix;
+        private final int count;
+
+        Entry(String suffix, int count) {
+            this.suffix = suffix;
+            this.count = count;
+        }
+
+        /**
+         * Returns the hash without the queried prefix.
+         *
+         * @return The remaining hex characters, in upper case.
+         */
+        public String getSuffix() {
+            return suffix;
+        }
+
+        /**
+         * Returns how often the password occurred.
+         *
+         * @return The count.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return suffix + ":" + count;
+        }
+    }
+
+    /**
+     * Represents the records of a range, decoded on access.
+     */
+    private class Range extends AbstractList<Entry> implements RandomAccess {
+
+        private final int skip;
+        private final long from;
+        private final int size;
+
+        Range(int skip, long from, int size) {
+            this.skip = skip;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public Entry get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return new Entry(suffix(from + index, skip), count(from + index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Represents a builder which hashes the passwords of a corpus into a table.
+     *
+     * Passwords are collected into runs of at most the run size, which are hashed and sorted in parallel, counted and
+     * spilled to temporary files. The runs are then merged into the table, adding up the counts of equal hashes, so
+     * memory use is bounded by the run size regardless of the size of the corpus.
+     */
+    public static class Builder {
+
+        public static final int DEFAULT_RUN_SIZE = 1 << 20;
+        /**
+         * The maximum amount of runs merged at once.
+         */
+        public static final int MAX_FAN_IN = 64;
+        //
+        private final Algorithm algorithm;
+        private int runSize = DEFAULT_RUN_SIZE;
+        private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        /**
+         * Creates a new Builder.
+         *
+         * @param algorithm The hash algorithm to use.
+         */
+        public Builder(Algorithm algorithm) {
+            Validate.notNull(algorithm, "Algorithm may not be null");
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * Sets the maximum amount of passwords held in memory at once.
+         *
+         * @param runSize The run size.
+         * @return This builder.
+         */
+        public Builder setRunSize(int runSize) {
+            Validate.not(runSize < 1, "Run size must be positive");
+            this.runSize = runSize;
+            return this;
+        }
+
+        /**
+         * Sets the directory for the temporary run files.
+         *
+         * @param tempDirectory The directory.
+         * @return This builder.
+         */
+        public Builder setTempDirectory(Path tempDirectory) {
+            Validate.notNull(tempDirectory, "Temporary directory may not be null");
+            this.tempDirectory = tempDirectory;
+            return this;
+        }
+
+        /**
+         * Builds a table of the passwords in an LAL file.
+         *
+         * @param input The file to read, which may be gzip compressed.
+         * @param output The file to write the table to.
+         * @return The amount of distinct hashes written.
+         * @throws RuntimeException if a file could not be read from or written to.
+         */
+        public long build(Path input, Path output) {
+            Validate.notNull(input, "Input may not be null");
+
+            try (LoginIterator logins = new LoginIterator(new InputStreamReader(GzipInput.open(input), StandardCharsets.UTF_8))) {
+                return build(logins, output);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        /**
+         * Builds a table of the passwords of logins.
+         *
+         * Comments and logins without a password are skipped.
+         *
+         * @param logins The logins to read.
+         * @param output The file to write the table to.
+         * @return The amount of distinct hashes written.
+         * @throws RuntimeException if a file could not be read from or written to.
+         */
+        public long build(Iterator<Login> logins, Path output) {
+            Validate.notNull(logins, "Logins may not be null");
+            Validate.notNull(output, "Output may not be null");
+
+            final List<Path> files = new ArrayList<>();
+            final String[] passwords = new String[runSize];
+
+            try {
+                while (logins.hasNext()) {
+                    int size = 0;
+                    while (size < runSize && logins.hasNext()) {
+                        final Login login = logins.next();
+                        if (login != null && !login.isComment() && login.getPassword() != null) {
+                            passwords[size++] = login.getPassword();
+                        }
+                    }
+
+                    if (size > 0) {
+                        files.add(spill(passwords, size));
+                    }
+                }
+
+                while (files.size() > MAX_FAN_IN) {
+                    final List<Path> group = new ArrayList<>(files.subList(0, MAX_FAN_IN));
+                    files.subList(0, MAX_FAN_IN).clear();
+
+                    final Path merged = Files.createTempFile(tempDirectory, "lalparser-passwords", ".run");
+                    try (DataOutputStream out = runOutput(merged)) {
+                        merge(group, (hash, count) -> {
+                            out.write(hash);
+                            out.writeInt(count);
+                        });
+                    } finally {
+                        delete(group);
+                    }
+                    files.add(merged);
+                }
+
+                return write(files, output);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                delete(files);
+            }
+        }
+
+        private Path spill(String[] passwords, int size) throws IOException {
+            final byte[][] hashes = new byte[size][];
+            IntStream.range(0, size).parallel().forEach(i -> hashes[i] = algorithm.hash(passwords[i]));
+            Arrays.fill(passwords, 0, size, null);
+
+            Arrays.parallelSort(hashes, ORDER);
+
+            final Path file = Files.createTempFile(tempDirectory, "lalparser-passwords", ".run");
+            try (DataOutputStream out = runOutput(file)) {
+                int i = 0;
+                while (i < size) {
+                    int j = i + 1;
+                    while (j < size && Arrays.equals(hashes[i], hashes[j])) {
+                        j++;
+                    }
+
+                    out.write(hashes[i]);
+                    out.writeInt(j - i);
+                    i = j;
+                }
+            } catch (IOException ex) {
+                Files.deleteIfExists(file);
+                throw ex;
+            }
+            return file;
+        }
+
+        private long write(List<Path> files, Path output) throws IOException {
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_SIZE);
+
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                final long[] records = new long[1];
+                merge(files, (hash, count) -> {
+                    out.write(hash);
+                    out.writeInt(count);
+                    records[0]++;
+                });
+                out.flush();
+
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(algorithm.ordinal()).putInt(0).putLong(records[0]).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                return records[0];
+            }
+        }
+
+        private void merge(List<Path> files, Sink sink) throws IOException {
+            final PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, files.size()), (a, b) -> ORDER.compare(a.hash, b.hash));
+            final List<Cursor> cursors = new ArrayList<>(files.size());
+
+            try {
+                for (Path file : files) {
+                    final Cursor cursor = new Cursor(file, algorithm.length);
+                    cursors.add(cursor);
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+
+                while (!queue.isEmpty()) {
+                    final Cursor first = queue.poll();
+                    final byte[] hash = first.hash.clone();
+                    long count = first.count;
+
+                    if (first.advance()) {
+                        queue.add(first);
+                    }
+                    while (!queue.isEmpty() && Arrays.equals(queue.peek().hash, hash)) {
+                        final Cursor next = queue.poll();
+                        count += next.count;
+                        if (next.advance()) {
+                            queue.add(next);
+                        }
+                    }
+
+                    sink.accept(hash, (int) Math.min(Integer.MAX_VALUE, count));
+                }
+            } finally {
+                for (Cursor cursor : cursors) {
+                    cursor.input.close();
+                }
+            }
+        }
+
+        private static DataOutputStream runOutput(Path file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        }
+
+        private static void delete(List<Path> files) {
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Represents the receiver of merged records.
+     */
+    private interface Sink {
+
+        void accept(byte[] hash, int count) throws IOException;
+    }
+
+    /**
+     * Represents the read position in a run file.
+     */
+    private static class Cursor {
+
+        private final DataInputStream input;
+        private final byte[] hash;
+        private int count;
+
+        Cursor(Path file, int length) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            this.hash = new byte[length];
+        }
+
+        boolean advance() throws IOException {
+            try {
+                input.readFully(hash);
+                count = input.readInt();
+                return true;
+            } catch (EOFException ex) {
+                return false;
+            }
+        }
+    }
+
+}
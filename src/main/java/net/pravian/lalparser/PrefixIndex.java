@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a sorted index over login prefixes and email domains.
+ *
+ * Logins are sorted by login, and by email domain with its labels reversed, so "mail.corp.example" is stored as
+ * "example.corp.mail.". All logins with a login prefix, a domain or a domain and its subdomains are then adjacent,
+ * and are found with two binary searches. The results are views of the index, which are created without copying.
+ *
+ * The index is built in parallel from a snapshot of the logins, so it does not reflect later modifications.
+ * Domains are compared case-insensitively, logins are not.
+ *
+ * @since 1.1
+ */
+public class PrefixIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing((Entry entry) -> entry.key).thenComparingInt(entry -> entry.position);
+    //
+    private final Login[] logins;
+    private final String[] loginKeys;
+    private final int[] loginPositions;
+    private final String[] domainKeys;
+    private final int[] domainPositions;
+
+    private PrefixIndex(Login[] logins, Entry[] byLogin, Entry[] byDomain) {
+        this.logins = logins;
+        this.loginKeys = new String[byLogin.length];
+        this.loginPositions = new int[byLogin.length];
+        this.domainKeys = new String[byDomain.length];
+        this.domainPositions = new int[byDomain.length];
+
+        for (int i = 0; i < byLogin.length; i++) {
+            loginKeys[i] = byLogin[i].key;
+            loginPositions[i] = byLogin[i].position;
+        }
+        for (int i = 0; i < byDomain.length; i++) {
+            domainKeys[i] = byDomain[i].key;
+            domainPositions[i] = byDomain[i].position;
+        }
+    }
+
+    /**
+     * Builds an index over a snapshot of logins, using all available processors.
+     *
+     * @param logins The logins to index.
+     * @return The index.
+     */
+    public static PrefixIndex build(List<Login> logins) {
+        Validate.notNull(logins, "Logins may not be null");
+
+        final Login[] snapshot = logins.toArray(new Login[0]);
+
+        final Entry[] byLogin = IntStream.range(0, snapshot.length).parallel()
+                .filter(i -> snapshot[i] != null && snapshot[i].getLogin() != null)
+                .mapToObj(i -> new Entry(snapshot[i].getLogin(), i))
+                .toArray(Entry[]::new);
+
+        final Entry[] byDomain = IntStream.range(0, snapshot.length).parallel()
+                .filter(i -> snapshot[i] != null && snapshot[i].getEmail() != null)
+                .mapToObj(i -> new Entry(domainKey(snapshot[i].getEmail()), i))
+                .filter(entry -> entry.key != null)
+                .toArray(Entry[]::new);
+
+        Arrays.parallelSort(byLogin, ORDER);
+        Arrays.parallelSort(byDomain, ORDER);
+
+        return new PrefixIndex(snapshot, byLogin, byDomain);
+    }
+
+    /**
+     * Returns all logins whose login starts with a prefix, ordered by login.
+     *
+     * @param prefix The prefix, such as "admin".
+     * @return The logins.
+     */
+    public List<Login> findByLoginPrefix(String prefix) {
+        Validate.notNull(prefix, "Prefix may not be null");
+
+        return range(loginKeys, loginPositions, prefix);
+    }
+
+    /**
+     * Returns all logins whose email is at a domain, excluding its subdomains.
+     *
+     * @param domain The domain, such as "corp.example".
+     * @return The logins.
+     */
+    public List<Login> findByDomain(String domain) {
+        Validate.notNull(domain, "Domain may not be null");
+
+        final String key = reverse(domain);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+
+        // The smallest String greater than the key is the key followed by '\0'
+        return new Range(domainPositions, lowerBound(domainKeys, key), lowerBound(domainKeys, key + '\0'));
+    }
+
+    /**
+     * Returns all logins whose email is at a domain or any of its subdomains, ordered by domain.
+     *
+     * @param domain The domain, such as "corp.example", which also matches "mail.corp.example".
+     * @return The logins.
+     */
+    public List<Login> findBySubdomain(String domain) {
+        Validate.notNull(domain, "Domain may not be null");
+
+        final String key = reverse(domain);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+
+        return range(domainKeys, domainPositions, key);
+    }
+
+    private List<Login> range(String[] keys, int[] positions, String prefix) {
+        final int from = lowerBound(keys, prefix);
+
+        // Keys starting with the prefix are adjacent and follow the lower bound
+        int low = from;
+        int high = keys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid].startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return new Range(positions, from, low);
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String domainKey(String email) {
+        final int at = email.lastIndexOf('@');
+        return at < 0 ? null : reverse(email.substring(at + 1));
+    }
+
+    private static String reverse(String domain) {
+        final String[] labels = domain.toLowerCase(Locale.ROOT).split("\\.");
+        final StringBuilder sb = new StringBuilder(domain.length() + 1);
+
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (!labels[i].isEmpty()) {
+                sb.append(labels[i]).append('.');
+            }
+        }
+
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * Represents a sort key and the position of its login.
+     */
+    private static class Entry {
+
+        private final String key;
+        private final int position;
+
+        Entry(String key, int position) {
+            this.key = key;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Represents the logins in a range of the index.
+     */
+    private class Range extends AbstractList<Login> implements RandomAccess {
+
+        private final int[] positions;
+        private final int from;
+        private final int to;
+
+        Range(int[] positions, int from, int to) {
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Login get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return logins[positions[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+}
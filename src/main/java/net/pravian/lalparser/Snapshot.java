@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Represents the binary snapshot format.
+ *
+ * A snapshot starts with a header of the magic number, the format version and the amount of logins. The logins follow
+ * in blocks of roughly {@link #BLOCK_SIZE} bytes. Every block starts with the amount of logins in it, its length in
+ * bytes and the CRC32 of those bytes, followed by the logins as encoded by {@link LoginCodec}.
+ *
+ * All numbers are big-endian. Blocks are memory-mapped one at a time when reading, so snapshots are not limited by the
+ * 2 GB mapping limit. When reading into a {@link LoginStore} or an {@link OffHeapStore}, the encoded fields are copied
+ * into the store as-is without creating any Login or String objects.
+ *
+ * @since 1.1
+ */
+final class Snapshot {
+
+    public static final int MAGIC = 0x4C414C53; // "LALS"
+    public static final int VERSION = 1;
+    public static final int BLOCK_SIZE = 1 << 22;
+    private static final int HEADER_SIZE = 16;
+    private static final int BLOCK_HEADER_SIZE = 12;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes logins to a snapshot file, replacing it if it exists.
+     *
+     * @param path The file to write to.
+     * @param logins The logins to write.
+     * @throws IOException if the file could not be written to.
+     */
+    public static void write(Path path, List<Login> logins) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(logins.size()).flip();
+            writeFully(channel, header);
+
+            final Block block = new Block();
+            final DataOutputStream output = new DataOutputStream(block);
+            int records = 0;
+
+            for (Login login : logins) {
+                LoginCodec.write(output, login);
+                records++;
+
+                if (block.size() >= BLOCK_SIZE) {
+                    block.writeTo(channel, records);
+                    records = 0;
+                }
+            }
+
+            if (records > 0) {
+                block.writeTo(channel, records);
+            }
+        }
+    }
+
+    /**
+     * Reads the logins from a snapshot file.
+     *
+     * @param path The file to read from.
+     * @param logins The list to add the logins to.
+     * @throws IOException if the file could not be read from.
+     * @throws IllegalStateException if the file is not a valid snapshot.
+     */
+    public static void read(Path path, List<Login> logins) throws IOException {
+        read(path, logins, null);
+    }
+
+    /**
+     * Reads the logins from a snapshot file, counting every login as a line.
+     *
+     * Mapping and verifying the blocks is timed as the read phase.
+     *
+     * @param path The file to read from.
+     * @param logins The list to add the logins to.
+     * @param meter The meter to count with, or null.
+     * @throws IOException if the file could not be read from.
+     * @throws IllegalStateException if the file is not a valid snapshot.
+     */
+    static void read(Path path, List<Login> logins, Meter meter) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+
+            Validate.not(header.getInt() != MAGIC, "File is not an LAL snapshot");
+            final int version = header.getInt();
+            Validate.not(version != VERSION, "Unsupported snapshot version: " + version);
+            final long count = header.getLong();
+            Validate.not(count < 0 || count > Integer.MAX_VALUE, "Corrupt snapshot: invalid login count");
+            if (meter != null) {
+                meter.bytes += HEADER_SIZE;
+            }
+
+            if (logins instanceof LoginStore) {
+                ((LoginStore) logins).ensureCapacity((int) count, (int) Math.min(Integer.MAX_VALUE - 8, size));
+            } else if (logins instanceof ArrayList) {
+                ((ArrayList<Login>) logins).ensureCapacity(logins.size() + (int) count);
+            }
+
+            final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            final byte[][] scratch = new byte[][]{new byte[256]};
+            final CRC32 crc = new CRC32();
+            long position = HEADER_SIZE;
+            long read = 0;
+
+            while (position < size) {
+                blockHeader.clear();
+                readFully(channel, blockHeader, position);
+                final int records = blockHeader.getInt();
+                final int length = blockHeader.getInt();
+                final int checksum = blockHeader.getInt();
+                position += BLOCK_HEADER_SIZE;
+
+                Validate.not(records < 0 || length < 0 || position + length > size, "Corrupt snapshot: truncated block");
+
+                final long begin = System.nanoTime();
+                final ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                crc.reset();
+                crc.update(block.duplicate());
+                Validate.not((int) crc.getValue() != checksum, "Corrupt snapshot: checksum mismatch at offset " + position);
+                if (meter != null) {
+                    meter.readNanos += System.nanoTime() - begin;
+                    meter.bytes += BLOCK_HEADER_SIZE + length;
+                }
+
+                if (logins instanceof LoginStore) {
+                    for (int i = 0; i < records; i++) {
+                        count(block, meter);
+                        ((LoginStore) logins).addEncoded(block);
+                    }
+                } else if (logins instanceof OffHeapStore) {
+                    for (int i = 0; i < records; i++) {
+                        count(block, meter);
+                        ((OffHeapStore) logins).addEncoded(block);
+                    }
+                } else {
+                    for (int i = 0; i < records; i++) {
+                        final Login login = LoginCodec.read(block, scratch);
+                        if (meter != null) {
+                            meter.line(login);
+                        }
+                        logins.add(login);
+                    }
+                }
+                Validate.not(block.hasRemaining(), "Corrupt snapshot: trailing bytes in block");
+
+                position += length;
+                read += records;
+            }
+
+            Validate.not(read != count, "Corrupt snapshot: expected " + count + " logins, found " + read);
+        }
+    }
+
+    private static void count(ByteBuffer block, Meter meter) {
+        if (meter == null) {
+            return;
+        }
+
+        // A comment is the first field, so an empty one is followed by a zero length
+        final int flags = block.get(block.position()) & 0xFF;
+        final boolean comment = LoginCodec.hasField(flags, LineScanner.COMMENT) && block.get(block.position() + 1) != 0;
+        meter.line(comment, LoginCodec.isInvalid(flags));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + buffer.position());
+            Validate.not(read < 0, "Corrupt snapshot: unexpected end of file");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Represents the buffer of the block being written.
+     */
+    private static class Block extends ByteArrayOutputStream {
+
+        private final CRC32 crc = new CRC32();
+
+        Block() {
+            super(BLOCK_SIZE + (BLOCK_SIZE >> 2));
+        }
+
+        void writeTo(FileChannel channel, int records) throws IOException {
+            crc.reset();
+            crc.update(buf, 0, count);
+
+            final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            header.putInt(records).putInt(count).putInt((int) crc.getValue()).flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(buf, 0, count));
+            reset();
+        }
+    }
+
+}
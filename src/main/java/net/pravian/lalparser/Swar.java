@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Represents byte scanning eight bytes at a time, using the lanes of a long as a vector (SIMD within a register).
+ *
+ * Words are read in the buffer's byte order, so the first byte of a word is its most significant lane in a big-endian
+ * buffer and its least significant lane in a little-endian buffer. The lane tests are exact: no carry or borrow
+ * crosses a lane, so a lane is only marked if its own byte matches, and the first marked lane is the first match.
+ *
+ * The scanners fall back to one byte at a time for the tail of a region shorter than a word. Word scanning is opt-in
+ * with the system property {@code net.pravian.lalparser.swar=true}: it pays off for long lines and comments, but most
+ * LAL lines are only a few words long, which leaves little to amortize the setup of each search.
+ *
+ * @since 1.1
+ */
+final class Swar {
+
+    /**
+     * If scanning uses words, read once from the system property {@code net.pravian.lalparser.swar}.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("net.pravian.lalparser.swar");
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEWLINE = '\n' * ONES;
+    private static final long RETURN = '\r' * ONES;
+    private static final long NEL_LEAD = 0xC2L * ONES;
+    private static final long SEPARATOR_LEAD = 0xE2L * ONES;
+
+    private Swar() {
+    }
+
+    /**
+     * Returns the offset of the first '\n' or '\r' in a region.
+     *
+     * @param buffer The buffer to scan.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @param words If words should be scanned, rather than one byte at a time.
+     * @return The offset, or {@code to} if the region contains neither.
+     */
+    static int indexOfLineBreak(ByteBuffer buffer, int from, int to, boolean words) {
+        int i = from;
+
+        if (words) {
+            final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+            for (; i <= to - 8; i += 8) {
+                final long word = buffer.getLong(i);
+                final long found = zeros(word ^ NEWLINE) | zeros(word ^ RETURN);
+                if (found != 0) {
+                    return i + firstLane(found, bigEndian);
+                }
+            }
+        }
+
+        for (; i < to; i++) {
+            final byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Returns the offset of the first byte in a region which may start a UTF-8 encoded line terminator.
+     *
+     * These are '\n', '\r', and the lead bytes of U+0085, U+2028 and U+2029. The caller verifies a candidate with
+     * {@link LineScanner#lineTerminatorLength(ByteBuffer, int, int)}.
+     *
+     * @param buffer The buffer to scan.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @param words If words should be scanned, rather than one byte at a time.
+     * @return The offset, or {@code to} if the region contains no candidate.
+     */
+    static int indexOfTerminatorCandidate(ByteBuffer buffer, int from, int to, boolean words) {
+        int i = from;
+
+        if (words) {
+            final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+            for (; i <= to - 8; i += 8) {
+                final long word = buffer.getLong(i);
+                final long found = zeros(word ^ NEWLINE) | zeros(word ^ RETURN) | zeros(word ^ NEL_LEAD) | zeros(word ^ SEPARATOR_LEAD);
+                if (found != 0) {
+                    return i + firstLane(found, bigEndian);
+                }
+            }
+        }
+
+        for (; i < to; i++) {
+            final byte b = buffer.get(i);
+            if (b == '\n' || b == '\r' || b == (byte) 0xC2 || b == (byte) 0xE2) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Returns the index of the first byte with a marked lane, in memory order.
+     */
+    private static int firstLane(long found, boolean bigEndian) {
+        return (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3;
+    }
+
+    /**
+     * Returns a word with the high bit set in every lane whose byte is zero.
+     */
+    private static long zeros(long word) {
+        return ~(((word & LOW) + LOW) | word | LOW);
+    }
+
+}
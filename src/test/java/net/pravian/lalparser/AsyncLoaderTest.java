@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private ExecutorService executor;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 150000; i++) {
+            if (i == 1000) {
+                // Longer than a batch
+                sb.append("// ");
+                for (int j = 0; j < AsyncLoader.BATCH_SIZE * 3 / 2; j++) {
+                    sb.append('x');
+                }
+            } else if (i % 10 == 0) {
+                sb.append("not a login");
+            } else {
+                sb.append(i % 3 == 0 ? "." : "").append("user").append(i).append(":pass").append(i % 50).append(" {mail\u00e9").append(i).append('}');
+            }
+            sb.append(i % 4 == 0 ? "\r\n" : "\n");
+        }
+
+        file = folder.newFile().toPath();
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        assertLoaded(file, LALParser.loadAsync(file, executor).get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSingleThread() throws Exception {
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            assertLoaded(file, LALParser.loadAsync(file, single).get(30, TimeUnit.SECONDS));
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        final LALParser expected = new LALParser();
+        expected.load(file);
+
+        final Path compressed = folder.newFile("logins.gz").toPath();
+        expected.write(compressed);
+
+        assertLoaded(file, LALParser.loadAsync(compressed, executor).get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        Assert.assertTrue(LALParser.loadAsync(folder.newFile().toPath(), executor).get(30, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void testEmptyLine() throws Exception {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, "user:pass\n\nuser:pass\n".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            LALParser.loadAsync(path, executor).get(30, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testMissingFile() throws Exception {
+        try {
+            LALParser.loadAsync(folder.getRoot().toPath().resolve("missing"), executor).get(30, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    private static void assertLoaded(Path path, LALParser loaded) {
+        final LALParser expected = new LALParser();
+        expected.load(path);
+
+        Assert.assertEquals(expected.size(), loaded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertTrue(expected.get(i).strictEquals(loaded.get(i)));
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BloomFilterTest {
+
+    private static final int LOGINS = 100000;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private LALParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new LALParser();
+        parser.add(new Login("// Comment"));
+        for (int i = 0; i < LOGINS; i++) {
+            parser.add(new Login("user" + i, "pass" + i, null, i % 2 == 0 ? "user" + i + "@example.com" : null, null, false));
+        }
+    }
+
+    @Test
+    public void testFalsePositives() {
+        final BloomFilter filter = parser.toFilter(0.01, LoginField.LOGIN, LoginField.PASSWORD);
+
+        Assert.assertEquals(LOGINS, filter.getCount());
+        Assert.assertFalse(filter.mightContain(parser.get(0)));
+
+        for (int i = 0; i < LOGINS; i++) {
+            Assert.assertTrue(filter.mightContain("user" + i, "pass" + i));
+        }
+
+        int positives = 0;
+        for (int i = 0; i < LOGINS; i++) {
+            if (filter.mightContain("user" + i, "pass" + (i + 1))) {
+                positives++;
+            }
+        }
+        Assert.assertTrue("False positive rate " + positives / (double) LOGINS, positives < LOGINS * 0.015);
+        Assert.assertEquals(0.01, filter.getFpp(), 0.002);
+
+        // About 9.6 bits per key for 1%
+        Assert.assertTrue(filter.getBits() < LOGINS * 10L);
+    }
+
+    @Test
+    public void testKeys() {
+        final BloomFilter filter = parser.toFilter(0.001, LoginField.EMAIL);
+
+        Assert.assertEquals(LOGINS / 2, filter.getCount());
+        Assert.assertTrue(filter.mightContain(parser.get(1)));
+        Assert.assertTrue(filter.mightContain("user0@example.com"));
+        Assert.assertFalse(filter.mightContain(new Login("user1", "pass1")));
+
+        // The fields of the key are not interchangeable
+        final BloomFilter split = new BloomFilter(10, 0.001, LoginField.LOGIN, LoginField.PASSWORD);
+        split.add(new Login("ab", "c"));
+        Assert.assertTrue(split.mightContain("ab", "c"));
+        Assert.assertFalse(split.mightContain("a", "bc"));
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        final BloomFilter filter = parser.toFilter(0.01, LoginField.LOGIN);
+        final Path path = folder.newFile().toPath();
+        filter.write(path);
+
+        final BloomFilter mapped = BloomFilter.map(path);
+        Assert.assertArrayEquals(new LoginField[]{LoginField.LOGIN}, mapped.getKeys());
+        Assert.assertEquals(filter.getBits(), mapped.getBits());
+        Assert.assertEquals(filter.getHashes(), mapped.getHashes());
+        Assert.assertEquals(filter.getCount(), mapped.getCount());
+
+        for (int i = 0; i < LOGINS * 2; i++) {
+            Assert.assertEquals(filter.mightContain("user" + i), mapped.mightContain("user" + i));
+        }
+
+        try {
+            mapped.add(new Login("user", "pass"));
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testBuild() throws IOException {
+        final Path path = folder.newFile("logins.lal.gz").toPath();
+        parser.write(path);
+
+        final BloomFilter filter = BloomFilter.build(path, 0.01, LoginField.LOGIN);
+        Assert.assertEquals(LOGINS, filter.getCount());
+        for (int i = 0; i < LOGINS; i++) {
+            Assert.assertTrue(filter.mightContain("user" + i));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCorrupt() throws IOException {
+        BloomFilter.map(folder.newFile().toPath());
+    }
+
+}
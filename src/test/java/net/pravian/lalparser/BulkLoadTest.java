@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkLoadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+
+        for (int i = 0; i < 200; i++) {
+            final Path directory = root.resolve("part" + (i % 7));
+            Files.createDirectories(directory);
+
+            final StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < i % 5; j++) {
+                sb.append("user").append(i).append('_').append(j).append(":pass\n");
+            }
+            Files.write(directory.resolve(String.format("file%03d.lal", i)), sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        Files.write(root.resolve("top.lal"), "top:pass\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("ignored.txt"), "ignored:pass\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLoadAll() {
+        final BulkLoad result = LALParser.loadAll(root, "*.lal", 8);
+
+        Assert.assertEquals(201, result.getFiles().size());
+        Assert.assertTrue(result.getFailures().isEmpty());
+
+        // 40 files of each size from 0 to 4, plus the top level file
+        final LALParser parser = result.getParser();
+        Assert.assertEquals(40 * (0 + 1 + 2 + 3 + 4) + 1, parser.size());
+
+        int index = 0;
+        for (BulkLoad.FileResult file : result.getFiles()) {
+            final List<Login> logins = result.getLogins().get(file.getPath());
+            Assert.assertEquals(file.getCount(), logins.size());
+            Assert.assertTrue(file.getNanos() > 0);
+
+            for (Login login : logins) {
+                Assert.assertSame(login, parser.get(index));
+                Assert.assertEquals(file.getPath(), result.getSource(index));
+                index++;
+            }
+        }
+    }
+
+    @Test
+    public void testRelativeGlob() {
+        final BulkLoad result = LALParser.loadAll(root, "part3/**");
+
+        Assert.assertEquals(29, result.getFiles().size());
+        for (BulkLoad.FileResult file : result.getFiles()) {
+            Assert.assertEquals("part3", file.getPath().getParent().getFileName().toString());
+        }
+    }
+
+    @Test
+    public void testFailure() throws IOException {
+        Files.write(root.resolve("part0").resolve("broken.lal"), "user:pass\n\nuser:pass\n".getBytes(StandardCharsets.UTF_8));
+
+        final BulkLoad result = LALParser.loadAll(root, "*.lal", 1);
+
+        Assert.assertEquals(202, result.getFiles().size());
+        Assert.assertEquals(1, result.getFailures().size());
+
+        final BulkLoad.FileResult failure = result.getFailures().get(0);
+        Assert.assertEquals("broken.lal", failure.getPath().getFileName().toString());
+        Assert.assertTrue(failure.getFailure() instanceof IllegalStateException);
+        Assert.assertTrue(result.getLogins().get(failure.getPath()).isEmpty());
+        Assert.assertEquals(40 * (0 + 1 + 2 + 3 + 4) + 1, result.getParser().size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingDirectory() {
+        LALParser.loadAll(root.resolve("missing"), "*.lal");
+    }
+
+}
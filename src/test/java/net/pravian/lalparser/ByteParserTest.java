@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ByteParserTest {
+
+    private static final String[] TOKENS = {
+        "user", "pass", ".", ":", "//", " ", "(", ")", "{", "}", "[", "]", " (display)", " {email}", " [oldpass]", "!", "\u2028", "\u0085", "\t",
+        "\u00e9", "\u20ac", "a:b"};
+    private static final String[] SEPARATORS = {"\n", "\r\n", "\r"};
+
+    @Test
+    public void testSameAsCharParser() {
+        final Random random = new Random(7);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 50000; i++) {
+            final int tokens = 1 + random.nextInt(10);
+            final int lineStart = sb.length();
+
+            for (int j = 0; j < tokens; j++) {
+                sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+
+            if (sb.toString().substring(lineStart).trim().isEmpty()) {
+                sb.append("x");
+            }
+            sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+
+        final LALParser expected = new LALParser();
+        expected.load(sb.toString());
+
+        final LALParser actual = new LALParser();
+        actual.load(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final Login login = expected.get(i);
+            Assert.assertEquals(login.isComment(), actual.get(i).isComment());
+            Assert.assertEquals(login.getComment(), actual.get(i).getComment());
+            Assert.assertTrue("Testing: " + login, login.strictEquals(actual.get(i)));
+            Assert.assertEquals(LALParser.compile(login), LALParser.compile(actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testLazyDecoding() {
+        final LALParser parser = new LALParser();
+        parser.load(ByteBuffer.wrap(".user:pass (display) {email} [oldpass]\n".getBytes(StandardCharsets.UTF_8)));
+
+        final LoginView view = (LoginView) parser.get(0);
+        Assert.assertEquals("user", view.getLogin());
+        Assert.assertEquals("email", view.getEmail());
+        Assert.assertTrue(view.isInvalid());
+        Assert.assertFalse(view.isComment());
+
+        Assert.assertFalse(view.isDecoded(LineScanner.PASSWORD));
+        Assert.assertFalse(view.isDecoded(LineScanner.DISPLAY_NAME));
+        Assert.assertFalse(view.isDecoded(LineScanner.OLD_PASSWORD));
+
+        view.setPassword("other");
+        Assert.assertEquals("other", view.getPassword());
+        Assert.assertEquals("oldpass", view.getOldPassword());
+    }
+
+    @Test
+    public void testConcurrentDecoding() throws InterruptedException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("user").append(i).append(":pass").append(i).append(" (name").append(i).append(") {mail").append(i).append("} [old").append(i).append("]\n");
+        }
+        final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (int round = 0; round < 20; round++) {
+            // Fresh views every round, shared by all readers
+            final LALParser parser = new LALParser();
+            parser.load(ByteBuffer.wrap(bytes));
+
+            final Thread[] readers = new Thread[4];
+            final CyclicBarrier start = new CyclicBarrier(readers.length);
+            for (int t = 0; t < readers.length; t++) {
+                final int offset = t;
+                readers[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < parser.size(); i++) {
+                            // Every reader decodes the fields in a different order
+                            final int index = (i + offset * 500) % parser.size();
+                            final Login login = parser.get(index);
+                            Assert.assertEquals("old" + index, login.getOldPassword());
+                            Assert.assertEquals("mail" + index, login.getEmail());
+                            Assert.assertEquals("name" + index, login.getDisplayName());
+                            Assert.assertEquals("pass" + index, login.getPassword());
+                            Assert.assertEquals("user" + index, login.getLogin());
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                });
+                readers[t].start();
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            for (Login login : parser) {
+                for (int field = LineScanner.LOGIN; field <= LineScanner.OLD_PASSWORD; field++) {
+                    Assert.assertTrue(((LoginView) login).isDecoded(field));
+                }
+            }
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testEmptyLine() {
+        new LALParser().load(ByteBuffer.wrap("user:pass\n \nuser:pass".getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
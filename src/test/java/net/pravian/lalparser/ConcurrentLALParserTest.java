@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentLALParserTest {
+
+    private ConcurrentLALParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new ConcurrentLALParser();
+    }
+
+    @Test
+    public void testListOperations() {
+        final Login a = new Login("a", "pass");
+        final Login b = new Login("b", "pass");
+        final Login c = new Login("c", "pass");
+
+        parser.add(a);
+        parser.add(0, b);
+        parser.addAll(1, Arrays.asList(c, c));
+        Assert.assertEquals(Arrays.asList(b, c, c, a), parser);
+
+        Assert.assertSame(c, parser.set(2, a));
+        Assert.assertTrue(parser.remove(c));
+        Assert.assertSame(b, parser.remove(0));
+        Assert.assertEquals(Arrays.asList(a, a), parser);
+
+        Assert.assertTrue(parser.retainAll(Arrays.asList(b)));
+        Assert.assertTrue(parser.isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsStable() {
+        parser.load("user1:pass\nuser2:pass");
+        final List<Login> snapshot = parser.snapshot();
+        final Iterator<Login> iterator = parser.iterator();
+
+        parser.clear();
+        parser.add(new Login("user3", "pass"));
+
+        Assert.assertEquals(2, snapshot.size());
+        Assert.assertEquals("user1", iterator.next().getLogin());
+        Assert.assertEquals("user2", iterator.next().getLogin());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testFailedReloadKeepsContents() {
+        parser.load("user1:pass\nuser2:pass");
+
+        try {
+            parser.load("user3:pass\n\nuser4:pass");
+            Assert.fail();
+        } catch (RuntimeException ex) {
+        }
+
+        Assert.assertEquals(2, parser.size());
+        Assert.assertEquals("user1", parser.get(0).getLogin());
+    }
+
+    @Test
+    public void testReadersNeverSeePartialLoads() throws InterruptedException {
+        final StringBuilder small = new StringBuilder();
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            small.append("user").append(i).append(":pass\n");
+            large.append("user").append(i).append(":pass\n").append("user").append(i).append(":pass\n");
+        }
+        parser.load(small.toString());
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final Thread[] readers = new Thread[2];
+
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (running.get()) {
+                    int count = 0;
+                    for (Login login : parser) {
+                        count++;
+                    }
+                    if (count != 1000 && count != 2000) {
+                        failure.set("Saw " + count + " logins");
+                    }
+                }
+            });
+            readers[i].start();
+        }
+
+        for (int i = 0; i < 50; i++) {
+            parser.load(i % 2 == 0 ? large.toString() : small.toString());
+        }
+
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        Assert.assertNull(failure.get());
+    }
+
+}
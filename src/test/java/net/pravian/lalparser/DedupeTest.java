@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DedupeTest {
+
+    @Test
+    public void testFingerprint() {
+        Assert.assertEquals(Dedupe.fingerprint(new Login("user", "pass", "display")), Dedupe.fingerprint(new Login("user", "pass", "display")));
+        Assert.assertNotEquals(Dedupe.fingerprint(new Login("user", "pass")), Dedupe.fingerprint(new Login("user", "pass", "display")));
+        Assert.assertNotEquals(Dedupe.fingerprint(new Login("user", "pass")), Dedupe.fingerprint(new Login("user", "pass", null, null, null, true)));
+        Assert.assertNotEquals(Dedupe.fingerprint(new Login("ab", "c")), Dedupe.fingerprint(new Login("a", "bc")));
+    }
+
+    @Test
+    public void testSameAsStrictEquals() {
+        final List<Login> logins = logins(20000);
+        final List<Login> expected = dedupeByScan(logins);
+
+        assertSame(expected, collect(new Dedupe().filter(logins.iterator())));
+    }
+
+    @Test
+    public void testSpill() {
+        final List<Login> logins = logins(5000);
+        final List<Login> expected = dedupeByScan(logins);
+
+        try (Dedupe dedupe = new Dedupe(4096)) {
+            final List<Login> actual = dedupe.filter(logins.stream()).collect(Collectors.toList());
+            Assert.assertTrue(dedupe.isSpilled());
+            Assert.assertEquals(logins.size() - expected.size(), dedupe.getDuplicates());
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSpillWindows() {
+        // Enough records to write many blocks, with collisions between written, windowed and unwritten records
+        final Random random = new Random(11);
+        final List<Login> logins = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            final int user = random.nextInt(12000);
+            logins.add(new Login("user" + user, "password" + (user % 7), "display name " + user, null, null, user % 5 == 0));
+        }
+
+        final Set<String> seen = new HashSet<>();
+        final List<Login> expected = new ArrayList<>();
+        for (Login login : logins) {
+            if (seen.add(LALParser.compile(login))) {
+                expected.add(login);
+            }
+        }
+
+        try (Dedupe dedupe = new Dedupe(4096, login -> login.getLogin().hashCode() & 255)) {
+            assertSame(expected, collect(dedupe.filter(logins.iterator())));
+            Assert.assertTrue(dedupe.isSpilled());
+        }
+    }
+
+    @Test
+    public void testCollisions() {
+        final List<Login> logins = logins(2000);
+        final List<Login> expected = dedupeByScan(logins);
+
+        try (Dedupe dedupe = new Dedupe(Long.MAX_VALUE, login -> login.isInvalid() ? 1 : 0)) {
+            assertSame(expected, collect(dedupe.filter(logins.iterator())));
+        }
+    }
+
+    @Test
+    public void testParserDedupe() {
+        final LALParser parser = new LALParser();
+        parser.index(LoginField.LOGIN);
+        parser.load("user:pass\nuser:pass\n.user:pass\nuser:pass (display)\n// Comment\n// Comment\nuser:pass\n");
+
+        Assert.assertEquals(3, parser.dedupe());
+        Assert.assertEquals(4, parser.size());
+        Assert.assertEquals(3, parser.findByLogin("user").size());
+        Assert.assertEquals(0, parser.dedupe());
+    }
+
+    @Test
+    public void testParserDedupeInPlace() {
+        final List<Login> logins = logins(5000);
+        final List<Login> expected = dedupeByScan(logins);
+
+        // The backing list itself is compacted, whichever list it is
+        try (OffHeapStore offHeap = new OffHeapStore()) {
+            for (List<Login> backing : Arrays.asList(new ArrayList<Login>(), new LoginStore(), offHeap)) {
+                backing.addAll(logins);
+                Assert.assertEquals(logins.size() - expected.size(), new LALParser(backing).dedupe());
+                Assert.assertEquals(expected.size(), backing.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertTrue(expected.get(i).strictEquals(backing.get(i)));
+                }
+            }
+        }
+    }
+
+    private static List<Login> logins(int amount) {
+        final Random random = new Random(amount);
+        final List<Login> logins = new ArrayList<>();
+
+        for (int i = 0; i < amount; i++) {
+            final String user = "user" + random.nextInt(amount / 4);
+            switch (random.nextInt(4)) {
+                case 0:
+                    logins.add(new Login("// " + user));
+                    break;
+                case 1:
+                    logins.add(new Login(user, "pass", null, null, null, random.nextBoolean()));
+                    break;
+                default:
+                    logins.add(new Login(user, "pass" + random.nextInt(2), "display", random.nextBoolean() ? null : "email"));
+                    break;
+            }
+        }
+        return logins;
+    }
+
+    private static List<Login> dedupeByScan(List<Login> logins) {
+        final List<Login> unique = new ArrayList<>();
+
+        outer:
+        for (Login login : logins) {
+            for (Login other : unique) {
+                if (other.strictEquals(login)) {
+                    continue outer;
+                }
+            }
+            unique.add(login);
+        }
+        return unique;
+    }
+
+    private static List<Login> collect(Iterator<Login> it) {
+        final List<Login> logins = new ArrayList<>();
+        while (it.hasNext()) {
+            logins.add(it.next());
+        }
+        return logins;
+    }
+
+    private static void assertSame(List<Login> expected, List<Login> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+}
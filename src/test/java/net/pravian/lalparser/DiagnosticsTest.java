@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DiagnosticsTest {
+
+    private static final String DOCUMENT = ""
+            + "// Comment\n"
+            + "user:pass\n"
+            + "\n"
+            + "no separator\n"
+            + ":pass\n"
+            + "user:\n"
+            + "user:pass (display\n"
+            + "  \n"
+            + ".user:pass {email}\n"
+            + "us er:pa ss\n";
+
+    @Test
+    public void testLoad() {
+        final LALParser parser = new LALParser();
+        final Diagnostics diagnostics = new Diagnostics();
+
+        parser.load(DOCUMENT, diagnostics);
+
+        Assert.assertEquals(3, parser.size());
+        Assert.assertArrayEquals(new int[]{3, 4, 5, 6, 7, 8, 10}, diagnostics.getLines());
+        Assert.assertArrayEquals(new byte[]{
+            Diagnostics.EMPTY_LINE,
+            Diagnostics.MISSING_SEPARATOR,
+            Diagnostics.MISSING_LOGIN,
+            Diagnostics.MISSING_PASSWORD,
+            Diagnostics.MALFORMED_FIELDS,
+            Diagnostics.EMPTY_LINE,
+            Diagnostics.MALFORMED_FIELDS}, diagnostics.getReasons());
+        Assert.assertEquals(7, diagnostics.getCount());
+        Assert.assertEquals(2, diagnostics.getCount(Diagnostics.EMPTY_LINE));
+        Assert.assertFalse(diagnostics.isTruncated());
+    }
+
+    @Test
+    public void testMatchesLoad() {
+        final LALParser plain = new LALParser();
+        plain.load(DOCUMENT.replace("\n\n", "\n").replace("  \n", ""));
+
+        final LALParser diagnosed = new LALParser();
+        diagnosed.load(DOCUMENT, new Diagnostics());
+
+        Assert.assertEquals(plain.size(), diagnosed.size());
+        for (int i = 0; i < plain.size(); i++) {
+            Assert.assertTrue(plain.get(i).strictEquals(diagnosed.get(i)));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testLoadWithoutDiagnostics() {
+        new LALParser().load(DOCUMENT);
+    }
+
+    @Test
+    public void testLimit() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i % 2 == 0 ? "user:pass\n" : "bad\n");
+        }
+
+        final Diagnostics diagnostics = new Diagnostics(10);
+        new LALParser().load(sb.toString(), diagnostics);
+
+        Assert.assertEquals(10, diagnostics.size());
+        Assert.assertEquals(500, diagnostics.getCount());
+        Assert.assertEquals(500, diagnostics.getCount(Diagnostics.MISSING_SEPARATOR));
+        Assert.assertTrue(diagnostics.isTruncated());
+        Assert.assertEquals(20, diagnostics.getLine(9));
+
+        diagnostics.clear();
+        Assert.assertEquals(0, diagnostics.size());
+        Assert.assertEquals(0, diagnostics.getCount());
+    }
+
+    @Test
+    public void testValidate() {
+        final LALParser parser = new LALParser(Arrays.asList(
+                new Login("user", "pass"),
+                new Login("", "pass"),
+                new Login("user", ""),
+                null,
+                new Login("// Comment")));
+
+        Assert.assertEquals(Diagnostics.NONE, LALParser.check(parser.get(0)));
+        Assert.assertEquals(Diagnostics.NONE, LALParser.check(parser.get(4)));
+
+        final Diagnostics diagnostics = new Diagnostics();
+        Assert.assertEquals(3, parser.validate(diagnostics));
+        Assert.assertArrayEquals(new int[]{2, 3, 4}, diagnostics.getLines());
+        Assert.assertArrayEquals(new byte[]{Diagnostics.MISSING_LOGIN, Diagnostics.MISSING_PASSWORD, Diagnostics.NULL_LOGIN}, diagnostics.getReasons());
+
+        // Every login check accepts can be compiled
+        for (Login login : parser) {
+            if (LALParser.check(login) == Diagnostics.NONE) {
+                Assert.assertNotNull(LALParser.compile(login));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiffTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path oldFile;
+    private Path newFile;
+
+    @Before
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final StringBuilder before = new StringBuilder();
+        final StringBuilder after = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++) {
+            final String line = line(random, i);
+            switch (random.nextInt(8)) {
+                case 0:
+                    before.append(line).append('\n');
+                    break;
+                case 1:
+                    after.append(line).append('\n');
+                    break;
+                case 2:
+                    before.append(line).append('\n');
+                    after.append(line(random, i)).append('\n');
+                    break;
+                case 3:
+                    before.append(line).append('\n').append(line).append('\n');
+                    after.append(line).append('\n');
+                    break;
+                default:
+                    before.append(line).append('\n');
+                    after.append(line).append('\n');
+            }
+            if (random.nextInt(50) == 0) {
+                after.append("// Comment ").append(i).append('\n');
+            }
+        }
+
+        oldFile = folder.newFile("old.txt").toPath();
+        newFile = folder.newFile("new.txt").toPath();
+        Files.write(oldFile, before.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(newFile, after.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPatchReproducesNewFile() throws IOException {
+        final Diff diff = new Diff();
+        final List<Diff.Change> changes = new ArrayList<>();
+        diff.diff(oldFile, newFile, changes::add);
+
+        Assert.assertEquals(changes.size(), diff.getAdded() + diff.getRemoved() + diff.getChanged());
+        Assert.assertTrue(diff.getAdded() > 0);
+        Assert.assertTrue(diff.getRemoved() > 0);
+        Assert.assertTrue(diff.getChanged() > 0);
+        Assert.assertEquals(0, diff.getPartitions());
+
+        final List<String> patched = lines(oldFile);
+        for (Diff.Change change : changes) {
+            if (change.getOldLogin() != null) {
+                Assert.assertTrue(patched.remove(LALParser.compile(change.getOldLogin())));
+            }
+            if (change.getNewLogin() != null) {
+                patched.add(LALParser.compile(change.getNewLogin()));
+            }
+        }
+
+        final List<String> expected = lines(newFile);
+        Collections.sort(patched);
+        Collections.sort(expected);
+        Assert.assertEquals(expected, patched);
+    }
+
+    @Test
+    public void testStrategiesAgree() throws IOException {
+        final List<String> expected = changes(new Diff(), oldFile, newFile);
+
+        final Path temp = folder.newFolder().toPath();
+        final Diff partitioned = new Diff();
+        partitioned.setMemoryBudget(4096);
+        partitioned.setTempDirectory(temp);
+        Assert.assertEquals(expected, changes(partitioned, oldFile, newFile));
+        Assert.assertTrue(partitioned.getPartitions() > 2);
+        Assert.assertEquals(0, temp.toFile().list().length);
+
+        final Path sortedOld = folder.newFile().toPath();
+        final Path sortedNew = folder.newFile().toPath();
+        new ExternalSort(LoginField.LOGIN).sort(oldFile, sortedOld);
+        new ExternalSort(LoginField.LOGIN).sort(newFile, sortedNew);
+
+        final Diff merged = new Diff();
+        merged.setSorted(true);
+        Assert.assertEquals(expected, changes(merged, sortedOld, sortedNew));
+        Assert.assertEquals(0, merged.getPartitions());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnsortedInput() {
+        final Diff diff = new Diff();
+        diff.setSorted(true);
+        diff.diff(oldFile, newFile, change -> {
+        });
+    }
+
+    @Test
+    public void testPatchFile() throws IOException {
+        final Path before = folder.newFile().toPath();
+        final Path after = folder.newFile().toPath();
+        final Path patch = folder.newFile().toPath();
+        Files.write(before, "alice:one\nbob:two (Bob)\ncarol:three\n// Comment\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(after, "bob:two (Robert) {bob@example.com}\ncarol:three\ndave:four\n".getBytes(StandardCharsets.UTF_8));
+
+        final Diff diff = new Diff();
+        final List<Diff.Change> changes = new ArrayList<>();
+        diff.diff(before, after, changes::add);
+
+        Assert.assertEquals(3, changes.size());
+        Assert.assertEquals(Diff.Type.REMOVED, changes.get(0).getType());
+        Assert.assertEquals("alice", changes.get(0).getKey());
+        Assert.assertEquals(Diff.Type.CHANGED, changes.get(1).getType());
+        Assert.assertEquals(EnumSet.of(LoginField.DISPLAY_NAME, LoginField.EMAIL), changes.get(1).getFields());
+        Assert.assertEquals(Diff.Type.ADDED, changes.get(2).getType());
+        Assert.assertTrue(changes.get(2).getFields().isEmpty());
+
+        Assert.assertEquals(3, diff.diff(before, after, patch));
+        Assert.assertEquals(Arrays.asList(
+                "- alice:one",
+                "< bob:two (Bob)",
+                "> bob:two (Robert) {bob@example.com}",
+                "+ dave:four"), Files.readAllLines(patch, StandardCharsets.UTF_8));
+    }
+
+    private static String line(Random random, int user) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "user" + user + ":pass" + random.nextInt(3);
+            case 1:
+                return ".user" + user + ":pass (display" + random.nextInt(2) + ")";
+            case 2:
+                return "user" + user + ":pass {user" + user + "@example.com} [old" + random.nextInt(2) + "]";
+            default:
+                return "user" + user + ":secret" + random.nextInt(2) + " (Name)";
+        }
+    }
+
+    private static List<String> lines(Path path) {
+        final LALParser parser = new LALParser();
+        parser.load(path);
+
+        final List<String> lines = new ArrayList<>();
+        for (Login login : parser) {
+            if (!login.isComment()) {
+                lines.add(LALParser.compile(login));
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> changes(Diff diff, Path before, Path after) {
+        final List<String> changes = new ArrayList<>();
+        diff.diff(before, after, change -> changes.add(change.getType() + " "
+                + (change.getOldLogin() == null ? "" : LALParser.compile(change.getOldLogin())) + " -> "
+                + (change.getNewLogin() == null ? "" : LALParser.compile(change.getNewLogin()))));
+        Collections.sort(changes);
+        return changes;
+    }
+
+}
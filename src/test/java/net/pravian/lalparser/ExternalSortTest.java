@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExternalSortTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path input;
+    private Path output;
+    private LALParser expected;
+
+    @Before
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 5000; i++) {
+            final int user = random.nextInt(1000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append("// Comment ").append(random.nextInt(10));
+                    break;
+                case 1:
+                    sb.append("user").append(user).append(":pass").append(random.nextInt(3));
+                    break;
+                case 2:
+                    sb.append(".user").append(user).append(":pass (display) {user").append(user % 7).append("@example.com}");
+                    break;
+                default:
+                    sb.append("user").append(user).append(":pass {user").append(user % 7).append("@example.com} [old]");
+            }
+            sb.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+
+        input = folder.newFile().toPath();
+        output = folder.newFile().toPath();
+        Files.write(input, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        expected = new LALParser();
+        expected.load(input.toFile());
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        final ExternalSort sort = new ExternalSort(LoginField.LOGIN);
+
+        Assert.assertEquals(expected.size(), sort.sort(input, output));
+        Assert.assertEquals(0, sort.getRuns());
+        assertSorted(LoginField.LOGIN, false);
+    }
+
+    @Test
+    public void testRuns() throws IOException {
+        final ExternalSort sort = new ExternalSort(LoginField.EMAIL, LoginField.LOGIN);
+        sort.setMemoryBudget(64 * 1024);
+        sort.setTempDirectory(folder.getRoot().toPath());
+
+        Assert.assertEquals(expected.size(), sort.sort(input, output));
+        Assert.assertTrue(sort.getRuns() > 1);
+        assertSorted(LoginField.EMAIL, false);
+    }
+
+    @Test
+    public void testMultiPass() throws IOException {
+        final ExternalSort sort = new ExternalSort(LoginField.LOGIN);
+        sort.setMemoryBudget(2 * 1024);
+        sort.setTempDirectory(folder.getRoot().toPath());
+        sort.setDistinct(true);
+
+        sort.sort(input, output);
+        Assert.assertTrue(sort.getRuns() > ExternalSort.MAX_FAN_IN);
+        assertSorted(LoginField.LOGIN, true);
+
+        // Every temporary run is removed
+        Assert.assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testDistinct() throws IOException {
+        for (long budget : new long[]{ExternalSort.DEFAULT_MEMORY_BUDGET, 32 * 1024}) {
+            final ExternalSort sort = new ExternalSort(LoginField.PASSWORD);
+            sort.setMemoryBudget(budget);
+            sort.setDistinct(true);
+
+            sort.sort(input, output);
+            assertSorted(LoginField.PASSWORD, true);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSameFile() {
+        new ExternalSort(LoginField.LOGIN).sort(input, input);
+    }
+
+    private void assertSorted(LoginField key, boolean distinct) throws IOException {
+        final List<Login> sorted = new ArrayList<>(expected);
+        sorted.sort(ExternalSort.comparator(key).thenComparing(ExternalSort.comparator(LoginField.values())).thenComparing(Login::isInvalid));
+
+        final List<String> lines = new ArrayList<>();
+        for (Login login : sorted) {
+            final String line = LALParser.compile(login);
+            if (!distinct || lines.isEmpty() || !lines.get(lines.size() - 1).equals(line)) {
+                lines.add(line);
+            }
+        }
+
+        Assert.assertEquals(lines, Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FollowerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private List<Login> logins;
+    private Follower follower;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile().toPath();
+        logins = new ArrayList<>();
+        follower = new Follower(file, logins::add);
+    }
+
+    @Test
+    public void testPartialLines() throws IOException {
+        append("user1:pass1\nuser2:pa");
+        Assert.assertEquals(1, follower.poll());
+        Assert.assertEquals(12, follower.getCheckpoint().getOffset());
+
+        append("ss2 (display)\r\n\n// Comment\n");
+        Assert.assertEquals(2, follower.poll());
+        Assert.assertEquals(0, follower.poll());
+
+        Assert.assertEquals(3, logins.size());
+        Assert.assertTrue(logins.get(0).strictEquals(new Login("user1", "pass1")));
+        Assert.assertTrue(logins.get(1).strictEquals(new Login("user2", "pass2", "display")));
+        Assert.assertTrue(logins.get(2).strictEquals(new Login("// Comment")));
+    }
+
+    @Test
+    public void testLongLine() throws IOException {
+        final StringBuilder sb = new StringBuilder("user:");
+        for (int i = 0; i < 100000; i++) {
+            sb.append('p');
+        }
+        final String password = sb.substring(5);
+        append(sb.append("\nuser:pass\n").toString());
+
+        Assert.assertEquals(2, follower.poll());
+        Assert.assertEquals(password, logins.get(0).getPassword());
+    }
+
+    @Test
+    public void testListenerFailure() throws IOException {
+        final boolean[] fail = {true};
+        final Follower failing = new Follower(file, login -> {
+            if (fail[0] && login.getLogin().equals("user2")) {
+                throw new IllegalArgumentException("Rejected");
+            }
+            logins.add(login);
+        });
+
+        append("user1:pass1\nuser2:pass2\r\nuser3:pass3\n");
+        try {
+            failing.poll();
+            Assert.fail("Listener exception was swallowed");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+        Assert.assertEquals(1, logins.size());
+        Assert.assertEquals(12, failing.getCheckpoint().getOffset());
+
+        fail[0] = false;
+        Assert.assertEquals(2, failing.poll());
+        Assert.assertEquals(3, logins.size());
+        Assert.assertTrue(logins.get(1).strictEquals(new Login("user2", "pass2")));
+        Assert.assertTrue(logins.get(2).strictEquals(new Login("user3", "pass3")));
+        Assert.assertEquals(37, failing.getCheckpoint().getOffset());
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        append("user1:pass1\n");
+        follower.poll();
+
+        final Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint");
+        follower.getCheckpoint().save(checkpointFile);
+        append("user2:pass2\n");
+
+        final Follower.Checkpoint checkpoint = Follower.Checkpoint.load(checkpointFile);
+        Assert.assertEquals(follower.getCheckpoint(), checkpoint);
+
+        logins.clear();
+        Assert.assertEquals(1, new Follower(file, logins::add, checkpoint).poll());
+        Assert.assertTrue(logins.get(0).strictEquals(new Login("user2", "pass2")));
+    }
+
+    @Test
+    public void testTruncate() throws IOException {
+        append("user1:pass1\nuser2:pass2\n");
+        follower.poll();
+
+        Files.write(file, "user3:pass3\n".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(1, follower.poll());
+        Assert.assertTrue(logins.get(2).strictEquals(new Login("user3", "pass3")));
+    }
+
+    @Test
+    public void testRotate() throws IOException {
+        append("user1:pass1\n");
+        follower.poll();
+
+        // Same size, different content
+        Files.delete(file);
+        append("user2:pass2\nuser3:pass3\n");
+        Assert.assertEquals(2, follower.poll());
+        Assert.assertTrue(logins.get(1).strictEquals(new Login("user2", "pass2")));
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+        Files.delete(file);
+        Assert.assertEquals(0, follower.poll());
+    }
+
+    @Test
+    public void testParser() throws IOException {
+        final LALParser parser = new LALParser();
+        final Follower parserFollower = parser.follow(file);
+
+        append("user1:pass1\n");
+        parserFollower.poll();
+        append("user2:pass2\n");
+        parserFollower.poll();
+
+        Assert.assertEquals(2, parser.size());
+    }
+
+    private void append(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GzipInputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final LALParser parser = new LALParser();
+        for (int i = 0; i < 100000; i++) {
+            parser.add(new Login("user" + i, "pass" + (i % 100), null, "user" + i + "@example.com", null, i % 7 == 0));
+        }
+
+        final Path plain = folder.newFile("logins.txt").toPath();
+        final Path compressed = folder.newFile("logins.txt.gz").toPath();
+        parser.write(plain);
+        parser.write(compressed);
+
+        Assert.assertTrue(GzipInput.isGzip(compressed));
+        Assert.assertTrue(Files.size(compressed) < Files.size(plain));
+        Assert.assertArrayEquals(Files.readAllBytes(plain), gunzip(compressed));
+
+        final LALParser loaded = new LALParser();
+        loaded.load(compressed);
+        Assert.assertEquals(parser.size(), loaded.size());
+        for (int i = 0; i < parser.size(); i++) {
+            Assert.assertTrue(parser.get(i).strictEquals(loaded.get(i)));
+        }
+
+        loaded.loadParallel(compressed.toFile());
+        Assert.assertEquals(parser.size(), loaded.size());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final Path compressed = folder.newFile("empty.gz").toPath();
+        new LALParser().write(compressed);
+
+        Assert.assertTrue(GzipInput.isGzip(compressed));
+
+        final LALParser loaded = new LALParser();
+        loaded.load(compressed);
+        Assert.assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void testMembers() throws IOException {
+        final Random random = new Random(7);
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        for (int member = 0; member < 20; member++) {
+            final byte[] data = new byte[random.nextInt(200000)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) ('a' + random.nextInt(26));
+            }
+            // Stored blocks copy the data verbatim, so these look like member headers
+            if (data.length > 100) {
+                System.arraycopy(new byte[]{0x1F, (byte) 0x8B, 8, 0}, 0, data, random.nextInt(data.length - 4), 4);
+            }
+
+            file.write(member(data, member % 2 == 0 ? Deflater.NO_COMPRESSION : Deflater.BEST_SPEED, member % 3 == 0));
+            expected.write(data);
+        }
+
+        final Path path = folder.newFile().toPath();
+        Files.write(path, file.toByteArray());
+
+        Assert.assertArrayEquals(expected.toByteArray(), gunzip(path));
+        Assert.assertArrayEquals(expected.toByteArray(), read(GzipInput.open(path)));
+    }
+
+    @Test
+    public void testSingleMemberNotScanned() throws IOException {
+        final Random random = new Random(3);
+        final byte[] data = new byte[4 * GzipInput.MEMBER_SIZE];
+        random.nextBytes(data);
+
+        final Path path = folder.newFile().toPath();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write(data);
+        }
+
+        try (GzipInput input = (GzipInput) GzipInput.open(path)) {
+            Assert.assertEquals(data[0] & 0xFF, input.read());
+            Assert.assertEquals(0, input.getScanned());
+
+            final byte[] rest = read(input);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), rest);
+            Assert.assertEquals(0, input.getScanned());
+        }
+    }
+
+    @Test
+    public void testSingleMemberInflatedAhead() throws IOException, InterruptedException {
+        final byte[] data = new byte[4 * GzipInput.MEMBER_SIZE];
+        new Random(4).nextBytes(data);
+
+        final Path path = folder.newFile().toPath();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write(data);
+        }
+
+        try (GzipInput input = (GzipInput) GzipInput.open(path)) {
+            // Nothing has been read, so only a pool thread can fill the queue, and only up to its bound
+            final long deadline = System.currentTimeMillis() + 10000;
+            final int bound = GzipInput.MEMBER_SIZE / GzipInput.BLOCK_SIZE + 1;
+            while (input.getBuffered() < bound && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+            Assert.assertEquals(bound, input.getBuffered());
+            Assert.assertArrayEquals(data, read(input));
+        }
+    }
+
+    @Test
+    public void testScanBounded() throws IOException {
+        final Path path = folder.newFile().toPath();
+        final byte[] data = new byte[(int) (GzipInput.LOOKAHEAD * 3)];
+        new Random(5).nextBytes(data);
+        try (OutputStream out = GzipInput.newOutputStream(path)) {
+            out.write(data);
+        }
+
+        try (GzipInput input = (GzipInput) GzipInput.open(path)) {
+            final byte[] buffer = new byte[GzipInput.MEMBER_SIZE];
+            int offset = 0;
+            while (offset < buffer.length) {
+                offset += input.read(buffer, offset, buffer.length - offset);
+            }
+            input.read();
+            // The second member is read, so at most one lookahead past it has been scanned
+            Assert.assertTrue(input.getScanned() <= GzipInput.LOOKAHEAD + GzipInput.MEMBER_SIZE);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 0, buffer.length), buffer);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, buffer.length + 1, data.length), read(input));
+        }
+    }
+
+    @Test
+    public void testManyStreams() throws IOException {
+        // More streams than pool threads, read in turns on one thread
+        final int count = GzipInput.WINDOW * 4;
+        final byte[][] expected = new byte[count][];
+        final InputStream[] inputs = new InputStream[count];
+        final ByteArrayOutputStream[] actual = new ByteArrayOutputStream[count];
+        final Random random = new Random(9);
+
+        for (int i = 0; i < count; i++) {
+            expected[i] = new byte[GzipInput.MEMBER_SIZE * 3 + random.nextInt(1000)];
+            for (int j = 0; j < expected[i].length; j++) {
+                expected[i][j] = (byte) ('a' + random.nextInt(4));
+            }
+
+            final Path path = folder.newFile().toPath();
+            try (OutputStream out = GzipInput.newOutputStream(path)) {
+                out.write(expected[i]);
+            }
+            inputs[i] = GzipInput.open(path);
+            actual[i] = new ByteArrayOutputStream();
+        }
+
+        try {
+            final byte[] buffer = new byte[10000];
+            boolean reading = true;
+            while (reading) {
+                reading = false;
+                for (int i = 0; i < count; i++) {
+                    final int read = inputs[i].read(buffer);
+                    if (read > 0) {
+                        actual[i].write(buffer, 0, read);
+                        reading = true;
+                    }
+                }
+            }
+        } finally {
+            for (InputStream input : inputs) {
+                input.close();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Assert.assertArrayEquals(expected[i], actual[i].toByteArray());
+        }
+    }
+
+    @Test
+    public void testCloseEarly() throws IOException {
+        final Path path = folder.newFile().toPath();
+        try (OutputStream out = GzipInput.newOutputStream(path)) {
+            out.write(new byte[GzipInput.MEMBER_SIZE * 8]);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            try (InputStream input = GzipInput.open(path)) {
+                input.read(new byte[GzipInput.BLOCK_SIZE * i]);
+            }
+        }
+    }
+
+    @Test
+    public void testTrailingGarbage() throws IOException {
+        final byte[] data = "user:pass\n".getBytes("UTF-8");
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(member(data, Deflater.DEFAULT_COMPRESSION, false));
+        file.write(new byte[100]);
+
+        final Path path = folder.newFile().toPath();
+        Files.write(path, file.toByteArray());
+
+        Assert.assertArrayEquals(data, read(GzipInput.open(path)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorrupt() throws IOException {
+        final byte[] file = member("user:pass\n".getBytes("UTF-8"), Deflater.DEFAULT_COMPRESSION, false);
+        file[file.length - 8] ^= 1; // CRC32
+
+        final Path path = folder.newFile().toPath();
+        Files.write(path, file);
+
+        read(GzipInput.open(path));
+    }
+
+    @Test
+    public void testPlain() throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, "user:pass\n".getBytes("UTF-8"));
+
+        Assert.assertFalse(GzipInput.isGzip(path));
+
+        final LALParser loaded = new LALParser();
+        loaded.load(path);
+        Assert.assertEquals(1, loaded.size());
+    }
+
+    private static byte[] member(byte[] data, int level, boolean headerFields) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        if (headerFields) {
+            // FEXTRA, FNAME and FCOMMENT
+            out.write(new byte[]{0x1F, (byte) 0x8B, 8, 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 0xFF, 3, 0, 1, 2, 3});
+            out.write("name\0comment\0".getBytes("UTF-8"));
+        } else {
+            out.write(new byte[]{0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, (byte) 0xFF});
+        }
+
+        final Deflater deflater = new Deflater(level, true);
+        deflater.setInput(data);
+        deflater.finish();
+        final byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, data.length);
+        return out.toByteArray();
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static byte[] gunzip(Path path) throws IOException {
+        return read(new GZIPInputStream(Files.newInputStream(path)));
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        try (InputStream input = stream) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InternerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIntern() {
+        final Interner interner = new Interner();
+        final String first = interner.intern("xx123456xx", 2, 8);
+
+        Assert.assertEquals("123456", first);
+        Assert.assertSame(first, interner.intern("--123456", 2, 8));
+        Assert.assertSame(first, interner.intern(new String("123456")));
+        Assert.assertNotSame(first, interner.intern("1234567", 0, 7));
+
+        Assert.assertEquals(2, interner.getHits());
+        Assert.assertEquals(2, interner.getMisses());
+        Assert.assertEquals(0.5, interner.getHitRate(), 0);
+        Assert.assertTrue(interner.getBytesSaved() > 0);
+    }
+
+    @Test
+    public void testBounded() {
+        final Interner interner = new Interner(64, Interner.DEFAULT_MAX_LENGTH);
+
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals("value" + i, interner.intern("value" + i));
+        }
+
+        Assert.assertEquals(64, interner.getCapacity());
+        Assert.assertEquals(10000 - 64, interner.getEvictions(), 64);
+    }
+
+    @Test
+    public void testHotValuesSurvive() {
+        final Interner interner = new Interner(Interner.WAYS, Interner.DEFAULT_MAX_LENGTH);
+        final String hot = interner.intern(new String("hot"));
+
+        for (int i = 0; i < 1000; i++) {
+            interner.intern("cold" + i);
+            Assert.assertSame(hot, interner.intern(new String("hot")));
+        }
+    }
+
+    @Test
+    public void testMaxLength() {
+        final Interner interner = new Interner(16, 4);
+        final String first = interner.intern(new String("12345"));
+
+        Assert.assertNotSame(first, interner.intern(new String("12345")));
+        Assert.assertEquals(0, interner.getHits());
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("// Comment\n");
+            sb.append("user").append(i).append(":123456 (display) {email} [oldpass]\n");
+        }
+
+        final File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        final LALParser plain = new LALParser();
+        plain.load(file);
+
+        final Interner interner = new Interner();
+        final LALParser parser = new LALParser();
+        parser.setInterner(interner);
+        parser.load(file);
+
+        Assert.assertEquals(plain.size(), parser.size());
+        for (int i = 0; i < parser.size(); i++) {
+            Assert.assertTrue(parser.get(i).strictEquals(plain.get(i)));
+        }
+
+        Assert.assertSame(parser.get(1).getPassword(), parser.get(3).getPassword());
+        Assert.assertSame(parser.get(1).getEmail(), parser.get(3).getEmail());
+        Assert.assertNotSame(plain.get(1).getPassword(), plain.get(3).getPassword());
+        Assert.assertEquals(4 * 999, interner.getHits());
+
+        final LALParser parallel = new LALParser();
+        parallel.setInterner(new Interner());
+        parallel.loadParallel(file, 2, 1024);
+
+        Assert.assertEquals(plain.size(), parallel.size());
+        Assert.assertSame(parallel.get(1).getPassword(), parallel.get(1999).getPassword());
+    }
+
+}
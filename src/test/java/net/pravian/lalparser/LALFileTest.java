@@ -15,13 +15,32 @@
  */
 package net.pravian.lalparser;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class LALFileTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private LALParser parser;
     private Login simpleLogin;
     private File simpleFile;
@@ -72,6 +91,149 @@ public class LALFileTest {
         }
     }
 
+    @Test
+    public void testFileStream() {
+        final List<Login> logins;
+
+        try (Stream<Login> stream = LALParser.stream(complexFile.toPath())) {
+            logins = stream.collect(Collectors.toList());
+        }
+
+        Assert.assertTrue(logins.size() == complexLogins.length);
+        for (int i = 0; i < logins.size(); i++) {
+            Assert.assertTrue("Testing: " + logins.get(i).toString(), logins.get(i).strictEquals(complexLogins[i]));
+        }
+    }
+
+    @Test
+    public void testIteratorClosesReader() {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Reader reader = new StringReader("user:pass\nnot a login\nuser:pass (display)\n") {
+            @Override
+            public void close() {
+                closed.set(true);
+                super.close();
+            }
+        };
+
+        final LoginIterator iterator = LALParser.iterate(reader);
+        Assert.assertTrue(iterator.next().strictEquals(new Login("user", "pass")));
+        Assert.assertFalse(closed.get());
+        Assert.assertTrue(iterator.next().strictEquals(new Login("user", "pass", "display")));
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertTrue(closed.get());
+    }
+
+    @Test
+    public void testStreamClosesReader() {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Reader reader = new StringReader("user:pass\nuser:pass\n") {
+            @Override
+            public void close() {
+                closed.set(true);
+                super.close();
+            }
+        };
+
+        try (Stream<Login> stream = LALParser.stream(reader)) {
+            Assert.assertTrue(stream.findFirst().isPresent());
+            Assert.assertFalse(closed.get());
+        }
+        Assert.assertTrue(closed.get());
+    }
+
+    @Test
+    public void testFileParseMapped() {
+        parser.loadMapped(complexFile);
+
+        Assert.assertTrue(parser.size() == complexLogins.length);
+        for (int i = 0; i < parser.size(); i++) {
+            Assert.assertTrue("Testing: " + parser.get(i).toString(), parser.get(i).strictEquals(complexLogins[i]));
+        }
+    }
+
+    @Test
+    public void testFileParseParallel() {
+        parser.loadParallel(complexFile, 4, 1);
+
+        Assert.assertTrue(parser.size() == complexLogins.length);
+        for (int i = 0; i < parser.size(); i++) {
+            Assert.assertTrue("Testing: " + parser.get(i).toString(), parser.get(i).strictEquals(complexLogins[i]));
+        }
+    }
+
+    @Test
+    public void testFileParseParallelGenerated() throws IOException {
+        final String[] lines = {
+            "// Comment", "user:pass", " .user:pass (display)", "user:pass (display) {email} [oldpass]", "not a login", "u\u00e9:p\u00e9"};
+        final String[] separators = {"\n", "\r\n", "\r"};
+        final Random random = new Random(42);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++) {
+            sb.append(lines[random.nextInt(lines.length)]).append(separators[random.nextInt(separators.length)]);
+        }
+
+        final File file = write(sb.toString());
+        final LALParser sequential = new LALParser();
+        sequential.load(file);
+
+        for (int chunkSize : new int[]{1, 7, 4096, 1 << 20}) {
+            parser.loadParallel(file, 3, chunkSize);
+
+            Assert.assertEquals(sequential.size(), parser.size());
+            for (int i = 0; i < parser.size(); i++) {
+                Assert.assertTrue("Testing: " + parser.get(i).toString(), parser.get(i).strictEquals(sequential.get(i)));
+            }
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testFileParseParallelEmptyLine() throws IOException {
+        parser.loadParallel(write("user:pass\n\nuser:pass\n"), 2, 4);
+    }
+
+    @Test
+    public void testFileWritePath() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            final Login login = i % 7 == 0
+                    ? new Login("// Comment \u00e9\u2603 " + i)
+                    : new Login("user" + i, "pass" + i, i % 2 == 0 ? "display" : null, i % 3 == 0 ? "email" : null, i % 5 == 0 ? "" : null, i % 4 == 0);
+            parser.add(login);
+            sb.append(LALParser.compile(login)).append("\n");
+        }
+
+        final byte[] expected = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final File file = folder.newFile();
+        parser.write(file.toPath());
+        Assert.assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        parser.write(stream);
+        Assert.assertArrayEquals(expected, stream.toByteArray());
+
+        final StringWriter writer = new StringWriter();
+        parser.write(writer);
+        Assert.assertArrayEquals(expected, writer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFileWriteEmptyPath() throws IOException {
+        final File file = write("user:pass\n");
+        parser.write(file.toPath());
+
+        Assert.assertEquals(0, file.length());
+    }
+
+    private File write(String content) throws IOException {
+        final File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
     private File getResource(String fileName) {
         return new File(getClass().getClassLoader().getResource(fileName).getFile());
     }
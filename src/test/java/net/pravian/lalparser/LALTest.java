@@ -21,7 +21,28 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     LALParserTest.class,
-    LALFileTest.class
+    LALFileTest.class,
+    LineScannerTest.class,
+    ByteParserTest.class,
+    LoginStoreTest.class,
+    LoginIndexTest.class,
+    DedupeTest.class,
+    FollowerTest.class,
+    SnapshotTest.class,
+    InternerTest.class,
+    ConcurrentLALParserTest.class,
+    ExternalSortTest.class,
+    DiagnosticsTest.class,
+    GzipInputTest.class,
+    AsyncLoaderTest.class,
+    BulkLoadTest.class,
+    BloomFilterTest.class,
+    PrefixIndexTest.class,
+    PasswordIndexTest.class,
+    MetricsTest.class,
+    DiffTest.class,
+    OffHeapStoreTest.class,
+    SwarTest.class
 })
 public class LALTest {
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineScannerTest {
+
+    private static final String ALPHABET = "ab.:/ (){}[]!\t\u2028\u0085\u00e9";
+    private static final String[] TOKENS = {
+        "user", "pass", ".", ":", "//", " ", "(", ")", "{", "}", "[", "]", " (display)", " {email}", " [oldpass]", "!", "\u2028", "\n", "\u00e9", "a:b"};
+
+    @Test
+    public void testExhaustiveShortLines() {
+        final char[] line = new char[5];
+
+        for (int length = 1; length <= line.length; length++) {
+            final int[] digits = new int[length];
+
+            do {
+                for (int i = 0; i < length; i++) {
+                    line[i] = ALPHABET.charAt(digits[i]);
+                }
+                assertSameAsPattern(new String(line, 0, length));
+            } while (increment(digits, ALPHABET.length()));
+        }
+    }
+
+    @Test
+    public void testRandomLines() {
+        final Random random = new Random(1337);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 200000; i++) {
+            sb.setLength(0);
+            final int tokens = 1 + random.nextInt(12);
+
+            for (int j = 0; j < tokens; j++) {
+                sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            assertSameAsPattern(sb.toString());
+        }
+    }
+
+    @Test
+    public void testKnownLines() {
+        assertSameAsPattern(".user:pass (display) {email} [oldpass]");
+        assertSameAsPattern("user:pass [oldpass]");
+        assertSameAsPattern("user:pass (a)b) {e}");
+        assertSameAsPattern("garbage!! user:pass");
+        assertSameAsPattern("a:b:c");
+        assertSameAsPattern("u:p ()");
+        assertSameAsPattern("u:p {e} (d)");
+        assertSameAsPattern("//comment\u2028tail");
+        assertSameAsPattern("user:pass\u2028");
+        assertSameAsPattern("..user:pass");
+        assertSameAsPattern(" .user:pass");
+    }
+
+    @Test
+    public void testLinearTime() {
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 200000; i++) {
+            sb.append("a: ");
+        }
+
+        final long start = System.nanoTime();
+        Assert.assertNull(LALParser.parse(sb.toString()));
+        Assert.assertTrue(System.nanoTime() - start < 1000000000L);
+    }
+
+    private static boolean increment(int[] digits, int base) {
+        for (int i = digits.length - 1; i >= 0; i--) {
+            if (++digits[i] < base) {
+                return true;
+            }
+            digits[i] = 0;
+        }
+        return false;
+    }
+
+    private static void assertSameAsPattern(String line) {
+        final Login expected = parseWithPattern(line);
+        final Login actual = LALParser.parse(line);
+
+        if (expected == null) {
+            Assert.assertNull("Line: " + line, actual);
+            return;
+        }
+
+        Assert.assertNotNull("Line: " + line, actual);
+        Assert.assertTrue("Line: " + line, expected.strictEquals(actual));
+        Assert.assertEquals("Line: " + line, expected.isComment(), actual.isComment());
+        Assert.assertEquals("Line: " + line, expected.getComment(), actual.getComment());
+    }
+
+    private static Login parseWithPattern(String line) {
+        final boolean invalid = line.startsWith(".");
+        if (invalid) {
+            line = line.substring(1);
+        }
+
+        final Matcher matcher = LALParser.LOGIN_PATTERN.matcher(line.trim());
+
+        if (!matcher.find()) {
+            return null;
+        }
+
+        final String comment = matcher.group(1);
+
+        if (comment != null && !comment.isEmpty()) {
+            return new Login(comment);
+        }
+
+        return new Login(matcher.group(2), matcher.group(3), matcher.group(4), matcher.group(5), matcher.group(6), invalid);
+    }
+
+}
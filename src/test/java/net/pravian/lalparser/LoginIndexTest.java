@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoginIndexTest {
+
+    private static final String DOCUMENT = "// Comment\nalice:pass {alice@example.com}\nbob:pass\n.alice:other (Alice)\n";
+    private LALParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new LALParser();
+        parser.index(LoginField.LOGIN);
+        parser.index(LoginField.EMAIL);
+    }
+
+    @Test
+    public void testLoad() {
+        parser.load(DOCUMENT);
+
+        Assert.assertEquals(2, parser.findByLogin("alice").size());
+        Assert.assertEquals(1, parser.findByLogin("bob").size());
+        Assert.assertTrue(parser.findByLogin("carol").isEmpty());
+        Assert.assertEquals(1, parser.findByEmail("alice@example.com").size());
+    }
+
+    @Test
+    public void testIndexAfterLoad() {
+        final LALParser unindexed = new LALParser();
+        unindexed.load(DOCUMENT);
+        Assert.assertEquals(2, unindexed.findByLogin("alice").size());
+
+        unindexed.index(LoginField.LOGIN);
+        Assert.assertTrue(unindexed.isIndexed(LoginField.LOGIN));
+        Assert.assertEquals(2, unindexed.findByLogin("alice").size());
+    }
+
+    @Test
+    public void testMutations() {
+        parser.load(DOCUMENT);
+
+        parser.set(2, new Login("carol", "pass"));
+        Assert.assertTrue(parser.findByLogin("bob").isEmpty());
+        Assert.assertEquals(1, parser.findByLogin("carol").size());
+        Assert.assertEquals("carol", parser.get(2).getLogin());
+
+        parser.remove(1);
+        Assert.assertEquals(1, parser.findByLogin("alice").size());
+        Assert.assertTrue(parser.findByEmail("alice@example.com").isEmpty());
+
+        parser.addAll(1, Arrays.asList(new Login("dave", "pass"), new Login("dave", "word")));
+        Assert.assertEquals(2, parser.findByLogin("dave").size());
+        Assert.assertEquals("dave", parser.get(1).getLogin());
+
+        final Iterator<Login> it = parser.iterator();
+        while (it.hasNext()) {
+            if ("dave".equals(it.next().getLogin())) {
+                it.remove();
+            }
+        }
+        Assert.assertTrue(parser.findByLogin("dave").isEmpty());
+
+        parser.subList(0, 1).add(new Login("erin", "pass"));
+        Assert.assertEquals("erin", parser.get(1).getLogin());
+        Assert.assertEquals(1, parser.findByLogin("erin").size());
+
+        parser.clear();
+        Assert.assertTrue(parser.findByLogin("alice").isEmpty());
+    }
+
+    @Test
+    public void testSameAsScan() {
+        final Random random = new Random(11);
+        final LALParser scanned = new LALParser(new LoginStore());
+        final String[] names = {"a", "b", "c", "d"};
+
+        for (int i = 0; i < 5000; i++) {
+            final Login login = new Login(names[random.nextInt(names.length)], "p" + random.nextInt(3));
+            final int operation = random.nextInt(4);
+
+            if (operation < 2 || parser.isEmpty()) {
+                parser.add(login);
+                scanned.add(login);
+            } else if (operation == 2) {
+                final int index = random.nextInt(parser.size());
+                parser.set(index, login);
+                scanned.set(index, login);
+            } else {
+                final int index = random.nextInt(parser.size());
+                parser.remove(index);
+                scanned.remove(index);
+            }
+        }
+
+        for (String name : names) {
+            final List<Login> expected = scanned.findByLogin(name);
+            final List<Login> actual = parser.findByLogin(name);
+            Assert.assertEquals(expected.size(), actual.size());
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoginStoreTest {
+
+    private static final Login[] LOGINS = new Login[]{
+        new Login("// Comment"),
+        new Login("user", "pass"),
+        new Login("user", "pass", "display"),
+        new Login("user", "pass", "display", "email", null, true),
+        new Login("user", "pass", "display", "email", "oldpass", false),
+        new Login("us\u00e9r", "p\u20acss", "display", "email", "oldpass", true),
+        new Login(null, null, null, null, null, false, null),
+        new Login()};
+
+    @Test
+    public void testSameAsArrayList() {
+        final Random random = new Random(3);
+        final List<Login> expected = new ArrayList<>();
+        final LoginStore actual = new LoginStore(0);
+
+        for (int i = 0; i < 20000; i++) {
+            final Login login = LOGINS[random.nextInt(LOGINS.length)];
+            final int operation = random.nextInt(10);
+
+            if (operation < 4 || expected.isEmpty()) {
+                expected.add(login);
+                actual.add(login);
+            } else if (operation < 6) {
+                final int index = random.nextInt(expected.size() + 1);
+                expected.add(index, login);
+                actual.add(index, login);
+            } else if (operation < 8) {
+                final int index = random.nextInt(expected.size());
+                assertSame(expected.set(index, login), actual.set(index, login));
+            } else {
+                final int index = random.nextInt(expected.size());
+                assertSame(expected.remove(index), actual.remove(index));
+            }
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+            Assert.assertEquals(expected.get(i).isComment(), actual.isComment(i));
+            Assert.assertEquals(expected.get(i).isInvalid(), actual.isInvalid(i));
+        }
+
+        actual.trimToSize();
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testParserBacking() {
+        final String document = "// Comment\nuser:pass\n.user:pass (display) {email}\nnot a login\n";
+        final LALParser expected = new LALParser();
+        final LALParser actual = new LALParser(new LoginStore());
+
+        expected.load(document);
+        actual.load(document);
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testHeapUsage() {
+        final Random random = new Random(5);
+        final LoginStore store = new LoginStore();
+        long listSize = 16 + 4L * 100000; // ArrayList element array
+
+        for (int i = 0; i < 100000; i++) {
+            final Login login = LALParser.parse("user" + i + ":" + Long.toHexString(random.nextLong())
+                    + " (Display_" + i + ") {user" + i + "@example.com}");
+            store.add(login);
+
+            listSize += 40; // Login header, six references and a flag
+            listSize += stringSize(login.getComment()) + stringSize(login.getLogin()) + stringSize(login.getPassword());
+            listSize += stringSize(login.getDisplayName()) + stringSize(login.getEmail()) + stringSize(login.getOldPassword());
+        }
+
+        store.trimToSize();
+        Assert.assertTrue(store.heapSize() * 2 < listSize);
+    }
+
+    private static long stringSize(String string) {
+        if (string == null) {
+            return 0;
+        }
+        return 24 + align(16 + string.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static void assertSame(Login expected, Login actual) {
+        Assert.assertEquals(expected.isComment(), actual.isComment());
+        Assert.assertEquals(expected.getComment(), actual.getComment());
+        Assert.assertTrue(expected.strictEquals(actual));
+    }
+
+}
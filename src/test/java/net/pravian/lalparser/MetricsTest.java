@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import net.pravian.lalparser.MetricsListener.Counter;
+import net.pravian.lalparser.MetricsListener.Phase;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetricsTest {
+
+    private static final String DOCUMENT = "// Comment\nuser:pass\n.invalid:pass\nnot a login\nuser2:pass2 (Name) {user2@example.com}\n";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoadCounters() {
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.load(DOCUMENT);
+
+        Assert.assertEquals(4, parser.size());
+        Assert.assertEquals(5, metrics.getLines());
+        Assert.assertEquals(4, metrics.getLogins());
+        Assert.assertEquals(1, metrics.getComments());
+        Assert.assertEquals(1, metrics.getInvalid());
+        Assert.assertEquals(1, metrics.getRejected());
+        Assert.assertEquals(0, metrics.getBytesRead());
+        Assert.assertTrue(metrics.getReadNanos() > 0);
+        Assert.assertTrue(metrics.getParseNanos() > 0);
+        Assert.assertTrue(metrics.getLinesPerSecond() > 0);
+    }
+
+    @Test
+    public void testDiagnosticsCountEmptyLines() {
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.load("user:pass\n\nnot a login\n", new Diagnostics());
+
+        Assert.assertEquals(3, metrics.getLines());
+        Assert.assertEquals(1, metrics.getLogins());
+        Assert.assertEquals(2, metrics.getRejected());
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("input.txt");
+        final byte[] bytes = DOCUMENT.getBytes("UTF-8");
+        Files.write(path, bytes);
+
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.load(path);
+
+        Assert.assertEquals(bytes.length, metrics.getBytesRead());
+        Assert.assertEquals(5, metrics.getLines());
+
+        metrics.reset();
+        parser.loadParallel(path.toFile(), 2, 16);
+        Assert.assertEquals(4, parser.size());
+        Assert.assertEquals(bytes.length, metrics.getBytesRead());
+        Assert.assertEquals(5, metrics.getLines());
+        Assert.assertEquals(4, metrics.getLogins());
+        Assert.assertEquals(1, metrics.getRejected());
+
+        final Path output = folder.getRoot().toPath().resolve("output.txt");
+        parser.write(output);
+        Assert.assertEquals(4, metrics.getLoginsWritten());
+        Assert.assertEquals(Files.size(output), metrics.getBytesWritten());
+        Assert.assertTrue(metrics.getWriteNanos() > 0);
+    }
+
+    @Test
+    public void testByteBuffer() throws IOException {
+        final byte[] bytes = DOCUMENT.getBytes("UTF-8");
+
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.load(ByteBuffer.wrap(bytes));
+
+        assertDocument(metrics, 5, 1);
+        Assert.assertEquals(bytes.length, metrics.getBytesRead());
+        Assert.assertTrue(metrics.getParseNanos() > 0);
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("input.txt");
+        final byte[] bytes = DOCUMENT.getBytes("UTF-8");
+        Files.write(path, bytes);
+
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.loadMapped(path.toFile());
+
+        assertDocument(metrics, 5, 1);
+        Assert.assertEquals(bytes.length, metrics.getBytesRead());
+        Assert.assertTrue(metrics.getReadNanos() > 0);
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("input.snapshot");
+        final LALParser source = new LALParser();
+        source.load(DOCUMENT);
+        source.add(new Login(""));
+        source.saveSnapshot(path);
+
+        final OffHeapStore offHeap = new OffHeapStore();
+        try {
+            for (LALParser parser : new LALParser[]{new LALParser(), new LALParser(new LoginStore()), new LALParser(offHeap)}) {
+                final Metrics metrics = new Metrics();
+                parser.setListener(metrics);
+                parser.loadSnapshot(path);
+
+                // Every login counts as a line, the empty comment is not a comment
+                Assert.assertEquals(5, parser.size());
+                assertDocument(metrics, 5, 0);
+                Assert.assertEquals(Files.size(path), metrics.getBytesRead());
+            }
+        } finally {
+            offHeap.close();
+        }
+    }
+
+    @Test
+    public void testGzipParallel() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("input.txt.gz");
+        final LALParser source = new LALParser();
+        source.load(DOCUMENT);
+        source.write(path);
+
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.loadParallel(path.toFile(), 2, 16);
+
+        Assert.assertEquals(4, parser.size());
+        assertDocument(metrics, 4, 0);
+        Assert.assertTrue(metrics.getBytesRead() > 0);
+    }
+
+    @Test
+    public void testNoListener() {
+        final Metrics metrics = new Metrics();
+        final LALParser parser = new LALParser();
+        parser.setListener(metrics);
+        parser.setListener(null);
+        parser.load(DOCUMENT);
+
+        Assert.assertNull(parser.getListener());
+        Assert.assertEquals(0, metrics.getLines());
+    }
+
+    @Test
+    public void testSampleToString() {
+        final Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            final Metrics metrics = new Metrics();
+            metrics.count(Counter.LINES, 1);
+            Assert.assertTrue(metrics.sample().toString().contains("lines=1"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testSamples() throws InterruptedException {
+        final Metrics metrics = new Metrics();
+        final Metrics.Sample first = metrics.sample();
+        metrics.count(Counter.LINES, 10);
+        metrics.time(Phase.PARSE, 1000000000L);
+
+        final Metrics.Sample delta = metrics.sample().since(first);
+        Assert.assertEquals(10, delta.getCount(Counter.LINES));
+        Assert.assertEquals(10.0, delta.getLinesPerSecond(), 0.001);
+        Assert.assertTrue(delta.getElapsedNanos() >= 0);
+
+        final BlockingQueue<Metrics.Sample> samples = new ArrayBlockingQueue<>(16);
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            metrics.schedule(executor, 10, TimeUnit.MILLISECONDS, samples::offer);
+            metrics.count(Counter.LINES, 5);
+
+            long lines = 0;
+            while (lines < 5) {
+                final Metrics.Sample sample = samples.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(sample);
+                lines += sample.getCount(Counter.LINES);
+            }
+            Assert.assertEquals(5, lines);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testJmx() throws JMException {
+        final Metrics metrics = new Metrics();
+        final ObjectName name = metrics.register("net.pravian.lalparser:type=Metrics,name=MetricsTest");
+        try {
+            metrics.count(Counter.LINES, 42);
+            Assert.assertEquals(42L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Lines"));
+        } finally {
+            Metrics.unregister(name);
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    private static void assertDocument(Metrics metrics, int lines, int rejected) {
+        Assert.assertEquals(lines, metrics.getLines());
+        Assert.assertEquals(1, metrics.getComments());
+        Assert.assertEquals(1, metrics.getInvalid());
+        Assert.assertEquals(rejected, metrics.getRejected());
+        Assert.assertEquals(lines - rejected, metrics.getLogins());
+    }
+
+}
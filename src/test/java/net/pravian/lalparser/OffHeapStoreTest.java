@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapStoreTest {
+
+    private static final Login[] LOGINS = new Login[]{
+        new Login("// Comment"),
+        new Login("user", "pass"),
+        new Login("user", "pass", "display"),
+        new Login("user", "pass", "display", "email", null, true),
+        new Login("user", "pass", "display", "email", "oldpass", false),
+        new Login("us\u00e9r", "p\u20acss", "display", "email", "oldpass", true),
+        new Login(null, null, null, null, null, false, null),
+        new Login()};
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameAsArrayList() {
+        try (OffHeapStore store = new OffHeapStore(null, 4096)) {
+            assertSameAsArrayList(store);
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        final Path directory = folder.newFolder().toPath();
+
+        try (OffHeapStore store = new OffHeapStore(directory, 4096)) {
+            assertSameAsArrayList(store);
+            Assert.assertEquals(2, directory.toFile().list().length);
+        }
+        Assert.assertEquals(0, directory.toFile().list().length);
+    }
+
+    @Test
+    public void testSegments() {
+        final Random random = new Random(7);
+        final List<Login> expected = new ArrayList<>();
+
+        try (OffHeapStore store = new OffHeapStore(null, 4096)) {
+            for (int i = 0; i < 5000; i++) {
+                final char[] password = new char[random.nextInt(1500) + 1];
+                for (int j = 0; j < password.length; j++) {
+                    password[j] = (char) ('a' + random.nextInt(26));
+                }
+
+                final Login login = new Login("user" + i, new String(password));
+                expected.add(login);
+                store.add(login);
+            }
+
+            Assert.assertEquals(expected.size(), store.longSize());
+            Assert.assertTrue(store.offHeapSize() > 5000L * 750);
+            for (int i = 0; i < expected.size(); i++) {
+                assertSame(expected.get(i), store.get((long) i));
+            }
+
+            int i = 0;
+            for (Login login : store) {
+                assertSame(expected.get(i++), login);
+            }
+            Assert.assertEquals(expected.size(), i);
+
+            try {
+                store.add(new Login("user", new String(new char[4096])));
+                Assert.fail("Expected exception");
+            } catch (IllegalStateException ex) {
+            }
+
+            store.clear();
+            Assert.assertTrue(store.isEmpty());
+            Assert.assertTrue(store.offHeapSize() > 0);
+        }
+    }
+
+    @Test
+    public void testClose() {
+        final OffHeapStore store = new OffHeapStore();
+        store.add(LOGINS[1]);
+        store.close();
+        store.close();
+
+        Assert.assertTrue(store.isClosed());
+        Assert.assertEquals(0, store.offHeapSize());
+        try {
+            store.get(0);
+            Assert.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            store.add(LOGINS[1]);
+            Assert.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testParserBacking() throws IOException {
+        final String document = "// Comment\nuser:pass\n.user:pass (display) {email}\nnot a login\nus\u00e9r:p\u20acss\n";
+        final LALParser expected = new LALParser();
+        expected.load(document);
+
+        try (OffHeapStore store = new OffHeapStore()) {
+            final LALParser actual = new LALParser(store);
+            actual.load(document);
+            assertSame(expected, actual);
+
+            final Path snapshot = folder.newFile().toPath();
+            expected.saveSnapshot(snapshot);
+            actual.loadSnapshot(snapshot);
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void testBeyondHeap() throws IOException, InterruptedException {
+        // Both modes grow to four times the heap of a separate JVM, direct memory only with a raised limit
+        assertBeyondHeap("-XX:MaxDirectMemorySize=256m", "direct");
+        assertBeyondHeap("-XX:MaxDirectMemorySize=16m", folder.newFolder().getPath());
+    }
+
+    private static void assertBeyondHeap(String limit, String mode) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx32m",
+                limit,
+                "-cp", System.getProperty("java.class.path"),
+                Fill.class.getName(),
+                mode)
+                .redirectErrorStream(true)
+                .start();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = process.getInputStream().read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+
+        Assert.assertEquals(output.toString("UTF-8"), 0, process.waitFor());
+    }
+
+    private static void assertSameAsArrayList(OffHeapStore actual) {
+        final Random random = new Random(3);
+        final List<Login> expected = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++) {
+            final Login login = LOGINS[random.nextInt(LOGINS.length)];
+            final int operation = random.nextInt(10);
+
+            if (operation < 4 || expected.isEmpty()) {
+                expected.add(login);
+                actual.add(login);
+            } else if (operation < 6) {
+                final int index = random.nextInt(expected.size() + 1);
+                expected.add(index, login);
+                actual.add(index, login);
+            } else if (operation < 8) {
+                final int index = random.nextInt(expected.size());
+                assertSame(expected.set(index, login), actual.set(index, login));
+            } else {
+                final int index = random.nextInt(expected.size());
+                assertSame(expected.remove(index), actual.remove(index));
+            }
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+            Assert.assertEquals(expected.get(i).isComment(), actual.isComment(i));
+            Assert.assertEquals(expected.get(i).isInvalid(), actual.isInvalid(i));
+        }
+    }
+
+    private static void assertSame(List<Login> expected, List<Login> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertSame(Login expected, Login actual) {
+        Assert.assertEquals(expected.isComment(), actual.isComment());
+        Assert.assertEquals(expected.getComment(), actual.getComment());
+        Assert.assertTrue(expected.strictEquals(actual));
+    }
+
+    /**
+     * Represents the program which fills a store to four times the maximum heap size.
+     */
+    public static class Fill {
+
+        public static void main(String[] args) {
+            final long target = Runtime.getRuntime().maxMemory() * 4;
+            final char[] password = new char[1000];
+            Arrays.fill(password, 'p');
+
+            try (OffHeapStore store = args[0].equals("direct") ? new OffHeapStore() : new OffHeapStore(Paths.get(args[0]))) {
+                final Login login = new Login("user", new String(password));
+                while (store.offHeapSize() < target) {
+                    store.add(login);
+                }
+
+                if (!store.get(store.longSize() - 1).strictEquals(login)) {
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PasswordIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCountsAcrossRuns() throws IOException {
+        final LALParser parser = new LALParser();
+        parser.add(new Login("// Comment"));
+        final Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            final String password = "pass" + (i % 1700);
+            parser.add(new Login("user" + i, password, null, null, null, false));
+            expected.merge(password, 1, Integer::sum);
+        }
+        parser.add(new Login("user\u00e9", "p\u00e4ss", null, null, null, false));
+        expected.put("p\u00e4ss", 1);
+
+        final Path output = folder.getRoot().toPath().resolve("passwords.idx");
+        final long written = new PasswordIndex.Builder(PasswordIndex.Algorithm.SHA1)
+                .setRunSize(256)
+                .setTempDirectory(folder.getRoot().toPath())
+                .build(parser.iterator(), output);
+
+        Assert.assertEquals(expected.size(), written);
+        Assert.assertEquals(1, folder.getRoot().list().length);
+
+        final PasswordIndex index = PasswordIndex.map(output);
+        Assert.assertEquals(PasswordIndex.Algorithm.SHA1, index.getAlgorithm());
+        Assert.assertEquals(expected.size(), index.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getKey(), (int) entry.getValue(), index.getCount(entry.getKey()));
+        }
+        Assert.assertEquals(0, index.getCount("missing"));
+    }
+
+    @Test
+    public void testRange() {
+        final LALParser parser = new LALParser();
+        parser.add(new Login("user1", "password", null, null, null, false));
+        parser.add(new Login("user2", "password", null, null, null, false));
+        parser.add(new Login("user3", "letmein", null, null, null, false));
+
+        final Path output = folder.getRoot().toPath().resolve("passwords.idx");
+        new PasswordIndex.Builder(PasswordIndex.Algorithm.SHA1).build(parser.iterator(), output);
+        final PasswordIndex index = PasswordIndex.map(output);
+
+        // SHA-1 of "password" is 5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8
+        final List<PasswordIndex.Entry> range = index.range("5baa6");
+        Assert.assertEquals(1, range.size());
+        Assert.assertEquals("1E4C9B93F3F0682250B6CF8331B7EE68FD8", range.get(0).getSuffix());
+        Assert.assertEquals(2, range.get(0).getCount());
+        Assert.assertEquals("1E4C9B93F3F0682250B6CF8331B7EE68FD8:2", range.get(0).toString());
+
+        Assert.assertTrue(index.range("00000").isEmpty());
+        Assert.assertEquals(1, index.range("5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8").size());
+
+        try {
+            index.range("5BAAG");
+            Assert.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testSha256FromFile() throws IOException {
+        final Path input = folder.getRoot().toPath().resolve("input.txt");
+        Files.write(input, "a:secret\nb:secret\n// Comment\nc:other\n".getBytes("UTF-8"));
+
+        final Path output = folder.getRoot().toPath().resolve("passwords.idx");
+        Assert.assertEquals(2, new PasswordIndex.Builder(PasswordIndex.Algorithm.SHA256).build(input, output));
+
+        final PasswordIndex index = PasswordIndex.map(output);
+        Assert.assertEquals(PasswordIndex.Algorithm.SHA256, index.getAlgorithm());
+        Assert.assertEquals(2, index.getCount("secret"));
+        Assert.assertEquals(1, index.getCount("other"));
+
+        // SHA-256 of "secret" is 2BB80D537B1DA3E38BD30361AA855686BDE0EACD7162FEF6A25FE97BF527A25B
+        final List<PasswordIndex.Entry> range = index.range("2BB80");
+        Assert.assertEquals(1, range.size());
+        Assert.assertEquals(59, range.get(0).getSuffix().length());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidFile() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("invalid.idx");
+        Files.write(file, new byte[64]);
+        PasswordIndex.map(file);
+    }
+
+}
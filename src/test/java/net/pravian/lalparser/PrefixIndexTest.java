@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefixIndexTest {
+
+    private static final String[] DOMAINS = {"corp.example", "mail.corp.example", "corp.example.org", "example", "xcorp.example", "CORP.Example"};
+    private LALParser parser;
+    private PrefixIndex index;
+
+    @Before
+    public void setUp() {
+        final Random random = new Random(3);
+        parser = new LALParser();
+
+        for (int i = 0; i < 20000; i++) {
+            final String login = (random.nextInt(4) == 0 ? "admin" : "user") + random.nextInt(500);
+            final String email = random.nextInt(5) == 0 ? null : login + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            parser.add(new Login(login, "pass", null, email, null, false));
+        }
+        parser.add(new Login("// Comment"));
+        parser.add(new Login("nomail", "pass", null, "no-domain", null, false));
+
+        index = parser.prefixIndex();
+    }
+
+    @Test
+    public void testLoginPrefix() {
+        for (String prefix : new String[]{"admin", "admin1", "user49", "", "zzz", "admin499"}) {
+            final List<Login> found = index.findByLoginPrefix(prefix);
+            assertSame(login -> login.getLogin() != null && login.getLogin().startsWith(prefix), found);
+
+            for (int i = 1; i < found.size(); i++) {
+                Assert.assertTrue(found.get(i - 1).getLogin().compareTo(found.get(i).getLogin()) <= 0);
+            }
+        }
+    }
+
+    @Test
+    public void testDomain() {
+        assertSame(login -> domain(login).equals("corp.example"), index.findByDomain("corp.example"));
+        assertSame(login -> domain(login).equals("corp.example"), index.findByDomain("Corp.Example."));
+        assertSame(login -> domain(login).equals("example"), index.findByDomain("example"));
+        Assert.assertTrue(index.findByDomain("missing.example").isEmpty());
+        Assert.assertTrue(index.findByDomain("").isEmpty());
+    }
+
+    @Test
+    public void testSubdomain() {
+        assertSame(login -> domain(login).equals("corp.example") || domain(login).endsWith(".corp.example"), index.findBySubdomain("corp.example"));
+        assertSame(login -> domain(login).equals("example") || domain(login).endsWith(".example"), index.findBySubdomain("example"));
+        Assert.assertTrue(index.findBySubdomain("org.example").isEmpty());
+    }
+
+    @Test
+    public void testSnapshot() {
+        final int admins = index.findByLoginPrefix("admin").size();
+        parser.add(new Login("admin", "pass"));
+
+        Assert.assertEquals(admins, index.findByLoginPrefix("admin").size());
+        Assert.assertEquals(admins + 1, parser.prefixIndex().findByLoginPrefix("admin").size());
+    }
+
+    private void assertSame(Predicate<Login> filter, List<Login> found) {
+        final List<Login> expected = new ArrayList<>();
+        for (Login login : parser) {
+            if (filter.test(login)) {
+                expected.add(login);
+            }
+        }
+
+        Assert.assertEquals(expected.size(), found.size());
+
+        final Set<Login> identities = Collections.newSetFromMap(new IdentityHashMap<>());
+        identities.addAll(expected);
+        for (Login login : found) {
+            Assert.assertTrue(identities.contains(login));
+        }
+    }
+
+    private static String domain(Login login) {
+        final String email = login.getEmail();
+        if (email == null || email.indexOf('@') < 0) {
+            return "";
+        }
+        return email.substring(email.lastIndexOf('@') + 1).toLowerCase();
+    }
+
+}
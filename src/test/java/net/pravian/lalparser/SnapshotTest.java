@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final LALParser parser = new LALParser();
+        final Random random = new Random(42);
+
+        // Enough logins to span several blocks
+        for (int i = 0; i < 250000; i++) {
+            parser.add(randomLogin(random, i));
+        }
+
+        final Path file = folder.newFile().toPath();
+        parser.saveSnapshot(file);
+
+        for (LALParser loaded : new LALParser[]{new LALParser(), new LALParser(new LoginStore())}) {
+            loaded.loadSnapshot(file);
+
+            Assert.assertEquals(parser.size(), loaded.size());
+            for (int i = 0; i < parser.size(); i++) {
+                Assert.assertTrue("Testing: " + i, loaded.get(i).strictEquals(parser.get(i)));
+                Assert.assertEquals(parser.get(i).isComment(), loaded.get(i).isComment());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTripStore() throws IOException {
+        final LALParser parser = new LALParser();
+        parser.load("// Comment\nuser:pass\n.user:pass (display) {email} [oldpass]");
+
+        final Path file = folder.newFile().toPath();
+        parser.saveSnapshot(file);
+
+        final LALParser loaded = new LALParser(new LoginStore());
+        loaded.index(LoginField.LOGIN);
+        loaded.loadSnapshot(file);
+
+        Assert.assertEquals(3, loaded.size());
+        for (int i = 0; i < parser.size(); i++) {
+            Assert.assertTrue(loaded.get(i).strictEquals(parser.get(i)));
+        }
+        Assert.assertEquals(2, loaded.findByLogin("user").size());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final Path file = folder.newFile().toPath();
+        new LALParser().saveSnapshot(file);
+
+        final LALParser loaded = new LALParser();
+        loaded.add(new Login("user", "pass"));
+        loaded.loadSnapshot(file);
+
+        Assert.assertTrue(loaded.isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCorrupt() throws IOException {
+        final LALParser parser = new LALParser();
+        parser.load("user:pass\nuser2:pass2");
+
+        final Path file = folder.newFile().toPath();
+        parser.saveSnapshot(file);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 2);
+            raf.write('x');
+        }
+
+        new LALParser().loadSnapshot(file);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testTruncated() throws IOException {
+        final LALParser parser = new LALParser();
+        parser.load("user:pass\nuser2:pass2");
+
+        final Path file = folder.newFile().toPath();
+        parser.saveSnapshot(file);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+
+        new LALParser().loadSnapshot(file);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotSnapshot() throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, "user:pass\nuser2:pass2\n".getBytes("UTF-8"));
+
+        new LALParser().loadSnapshot(file);
+    }
+
+    private static Login randomLogin(Random random, int i) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return new Login("// Comment \u00e9\u2603 " + i);
+            case 1:
+                return new Login("user" + i, "pass" + random.nextInt(100));
+            case 2:
+                return new Login("user" + i, "p", null, "", null, random.nextBoolean());
+            case 3:
+                return new Login("");
+            default:
+                return new Login("user" + i, "pass" + i, "display" + i, "email" + i, "oldpass" + i, random.nextBoolean());
+        }
+    }
+
+}
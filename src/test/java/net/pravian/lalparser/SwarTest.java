@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Jerom van der Sar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.pravian.lalparser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SwarTest {
+
+    private static final String[] TOKENS = {
+        "user", "Pass123", "abcdefghijklmnopqrstuvwxyz0123456789", "ABCDEFGHIJKLMNOPQRSTUVWXYZ", "0123456789", ".", ":", "//", " ",
+        "(", ")", "{", "}", "[", "]", " (display)", " {email@example.com}", " [oldpass]", "!", "@", "_", "-", "`", "/", " ",
+        "\u0085", " ", "\t", "\u00e9", "\u20ac", "a:b", "Zz09"};
+    private static final String[] SEPARATORS = {"\n", "\r\n", "\r"};
+
+    @Test
+    public void testSearches() {
+        final Random random = new Random(13);
+        final byte[] alphabet = {'a', 'Z', '5', ':', ' ', '\n', '\r', (byte) 0xC2, (byte) 0x85, (byte) 0xE2, (byte) 0x80, (byte) 0xA8, 0};
+        final byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = random.nextInt(4) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'x';
+        }
+
+        for (ByteBuffer buffer : buffers(bytes)) {
+            for (int i = 0; i < 20000; i++) {
+                final int from = random.nextInt(bytes.length);
+                final int to = from + random.nextInt(Math.min(64, bytes.length - from) + 1);
+
+                Assert.assertEquals(buffer.toString(), Swar.indexOfLineBreak(buffer, from, to, false), Swar.indexOfLineBreak(buffer, from, to, true));
+                Assert.assertEquals(buffer.toString(), Swar.indexOfTerminatorCandidate(buffer, from, to, false), Swar.indexOfTerminatorCandidate(buffer, from, to, true));
+            }
+        }
+    }
+
+    @Test
+    public void testByteOrder() {
+        final byte[] bytes = "alice1:pass1\nbob22:pass2\n".getBytes(StandardCharsets.UTF_8);
+
+        for (ByteBuffer buffer : buffers(bytes)) {
+            Assert.assertEquals(buffer.toString(), 12, Swar.indexOfLineBreak(buffer, 0, bytes.length, true));
+
+            final List<Login> logins = new ArrayList<>();
+            ByteParser.parse(buffer, logins, true, null);
+            Assert.assertEquals(buffer.toString(), 2, logins.size());
+            Assert.assertTrue(new Login("alice1", "pass1").strictEquals(logins.get(0)));
+            Assert.assertTrue(new Login("bob22", "pass2").strictEquals(logins.get(1)));
+        }
+    }
+
+    @Test
+    public void testSameRecords() {
+        final Random random = new Random(17);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 50000; i++) {
+            final StringBuilder line = new StringBuilder();
+            final int tokens = 1 + random.nextInt(8);
+            for (int j = 0; j < tokens; j++) {
+                line.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+
+            if (line.toString().trim().isEmpty()) {
+                line.append("x");
+            }
+            sb.append(line).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+
+        final LALParser expected = new LALParser();
+        expected.load(sb.toString());
+
+        for (ByteBuffer buffer : buffers(sb.toString().getBytes(StandardCharsets.UTF_8))) {
+            final List<Login> scalar = new ArrayList<>();
+            final List<Login> words = new ArrayList<>();
+            ByteParser.parse(buffer, scalar, false, null);
+            ByteParser.parse(buffer, words, true, null);
+
+            Assert.assertEquals(expected.size(), scalar.size());
+            Assert.assertEquals(expected.size(), words.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSame(expected.get(i), scalar.get(i));
+                assertSame(expected.get(i), words.get(i));
+            }
+        }
+    }
+
+    private static List<ByteBuffer> buffers(byte[] bytes) {
+        // Heap and direct buffers in both byte orders, as the word reads follow the buffer's order
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            buffers.add(ByteBuffer.wrap(bytes).order(order));
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            buffers.add(direct.order(order));
+        }
+        return buffers;
+    }
+
+    private static void assertSame(Login expected, Login actual) {
+        Assert.assertEquals(expected.isComment(), actual.isComment());
+        Assert.assertEquals(expected.getComment(), actual.getComment());
+        Assert.assertTrue("Testing: " + expected, expected.strictEquals(actual));
+        Assert.assertEquals(LALParser.compile(expected), LALParser.compile(actual));
+    }
+
+}